@@ -0,0 +1,32 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//
+// Запуск JMH с параметрами командной строки, но по умолчанию с результатами в JSON (jmh-result.json),
+// чтобы прогоны разных версий можно было сравнивать. -rf / -rff переопределяют формат и файл.
+//
+public class BenchmarkMain {
+
+    public static void main( String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions( args);
+        if( commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()){
+            org.openjdk.jmh.Main.main( args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent( commandLine);
+        if( !commandLine.getResultFormat().hasValue()){
+            options.resultFormat( ResultFormatType.JSON);
+        }
+        if( !commandLine.getResult().hasValue()){
+            options.result( "jmh-result.json");
+        }
+        new Runner( options.build()).run();
+    }
+}
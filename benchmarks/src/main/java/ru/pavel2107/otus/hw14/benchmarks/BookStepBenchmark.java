@@ -0,0 +1,119 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.Hw14Application;
+
+//
+// Шаг книг целиком - чтение из H2, кэши, обработка, запись в Mongo - в контексте приложения.
+// База генерируется в файл один раз, job запускается только с stepBook;
+// кэши авторов и жанров пусты, поэтому в замер входят и их промахи.
+// Один запуск job - одна операция, коллекция книг перед запуском удаляется.
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.SingleShotTime)
+@OutputTimeUnit( TimeUnit.MILLISECONDS)
+@Fork( 1)
+@Warmup( iterations = 2)
+@Measurement( iterations = 5)
+public class BookStepBenchmark {
+
+    @Param({ "10000"})
+    private long books;
+
+    @Param({ "geometric:3"})
+    private String fanOut;
+
+    @Param({ "DBREF", "EMBEDDED"})
+    private String layout;
+
+    @Param({ "1", "4"})
+    private int gridSize;
+
+    private File                           directory;
+    private ConfigurableApplicationContext context;
+    private JobLauncher                    jobLauncher;
+    private Job                            job;
+    private long                           run;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory( "hw14-bench").toFile();
+        String url = "jdbc:h2:file:" + new File( directory, "books").getAbsolutePath();
+        try( Connection connection = DriverManager.getConnection( url, "sa", "")){
+            new DatasetGenerator( books, books / 10, 50, FanOut.parse( fanOut)).generate( connection);
+        }
+
+        context = new SpringApplicationBuilder( Hw14Application.class)
+                .web( WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + url,
+                        "spring.datasource.initialization-mode=never",
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "spring.jpa.show-sql=false",
+                        "spring.batch.initialize-schema=always",
+                        "migration.batch.metadata.shared=true",
+                        "spring.batch.job.enabled=false",
+                        "spring.data.mongodb.port=0",
+                        "migration.job.stages=stepBook",
+                        "migration.batch.metadata.commit-every=1",
+                        "migration.book.layout=" + layout,
+                        "migration.step.book.grid-size=" + gridSize)
+                .run();
+        jobLauncher = context.getBean( JobLauncher.class);
+        job         = context.getBean( "migration", Job.class);
+    }
+
+    @Setup( Level.Invocation)
+    public void clean() {
+        context.getBean( MongoTemplate.class).dropCollection( "books");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        File[] files = directory.listFiles();
+        if( files != null){
+            for( File file : files){
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public JobExecution bookStep() throws Exception {
+        JobExecution execution = jobLauncher.run( job, new JobParametersBuilder().addLong( "run", ++run).toJobParameters());
+        if( execution.getStatus() != BatchStatus.COMPLETED){
+            throw new IllegalStateException( "Шаг книг завершился со статусом " + execution.getStatus());
+        }
+        return execution;
+    }
+}
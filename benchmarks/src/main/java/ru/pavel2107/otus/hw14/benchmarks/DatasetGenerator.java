@@ -0,0 +1,184 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.RunScript;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Random;
+
+//
+// Заполняет H2 базу по schema.sql приложения синтетическими данными заданного размера
+// (вместо трех книг из data.sql). Данные детерминированы - одинаковые параметры дают одинаковую базу.
+//
+//   DatasetGenerator <jdbc url> <книг> [распределение комментариев, по умолчанию geometric:3] [авторов] [жанров]
+//
+// Приложение на сгенерированной базе:
+//   --spring.datasource.url=<jdbc url> --spring.datasource.initialization-mode=never --spring.jpa.hibernate.ddl-auto=none
+//
+public class DatasetGenerator {
+
+    private static final int BATCH = 1000;
+
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipisicing", "elit", "sed", "do",
+            "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua", "veniam"};
+
+    private final long   books;
+    private final long   authors;
+    private final long   genres;
+    private final FanOut fanOut;
+
+    public DatasetGenerator( long books, long authors, long genres, FanOut fanOut){
+        this.books   = books;
+        this.authors = Math.max( 1, authors);
+        this.genres  = Math.max( 1, genres);
+        this.fanOut  = fanOut;
+    }
+
+    public static void main( String[] args) throws Exception {
+        if( args.length < 2){
+            System.err.println( "DatasetGenerator <jdbc url> <книг> [распределение комментариев] [авторов] [жанров]");
+            System.exit( 1);
+        }
+        long   books   = Long.parseLong( args[ 1]);
+        FanOut fanOut  = FanOut.parse( args.length > 2 ? args[ 2] : "geometric:3");
+        long   authors = args.length > 3 ? Long.parseLong( args[ 3]) : books / 10;
+        long   genres  = args.length > 4 ? Long.parseLong( args[ 4]) : 50;
+
+        try( Connection connection = DriverManager.getConnection( args[ 0], "sa", "")){
+            long comments = new DatasetGenerator( books, authors, genres, fanOut).generate( connection);
+            System.out.println( "Книг: " + books + ", авторов: " + Math.max( 1, authors) + ", жанров: " + Math.max( 1, genres)
+                    + ", комментариев: " + comments + " (" + fanOut + ")");
+        }
+    }
+
+    // база в памяти для бенчмарков: авторов - десятая часть книг, жанров - 50
+    public static JdbcDataSource inMemory( String name, long books, String fanOut) throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL( "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser( "sa");
+        try( Connection connection = dataSource.getConnection()){
+            new DatasetGenerator( books, books / 10, 50, FanOut.parse( fanOut)).generate( connection);
+        }
+        return dataSource;
+    }
+
+    // пересоздает таблицы и заполняет их, возвращает число комментариев
+    public long generate( Connection connection) throws SQLException {
+        try( Reader schema = new InputStreamReader( DatasetGenerator.class.getResourceAsStream( "/schema.sql"), StandardCharsets.UTF_8)){
+            RunScript.execute( connection, schema);
+        } catch( IOException e){
+            throw new IllegalStateException( "schema.sql не прочитан", e);
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit( false);
+        try{
+            Random random = new Random( 42);
+            genres( connection);
+            authors( connection, random);
+            long comments = books( connection, random);
+            connection.commit();
+            return comments;
+        } finally {
+            connection.setAutoCommit( autoCommit);
+        }
+    }
+
+    private void genres( Connection connection) throws SQLException {
+        try( PreparedStatement insert = connection.prepareStatement( "insert into genre( id, name) values( ?, ?)")){
+            for( long id = 1; id <= genres; id++){
+                insert.setLong(   1, id);
+                insert.setString( 2, "genre " + id);
+                batch( insert, id);
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private void authors( Connection connection, Random random) throws SQLException {
+        try( PreparedStatement insert = connection.prepareStatement(
+                "insert into authors( id, name, birthdate, email, phone, address) values( ?, ?, ?, ?, ?, ?)")){
+            for( long id = 1; id <= authors; id++){
+                insert.setLong(   1, id);
+                insert.setString( 2, "author " + id);
+                insert.setDate(   3, Date.valueOf( ( 1900 + random.nextInt( 100)) + "-0" + ( 1 + random.nextInt( 9)) + "-1" + random.nextInt( 10)));
+                insert.setString( 4, "author" + id + "@mail.ru");
+                insert.setString( 5, String.valueOf( 10000000 + random.nextInt( 90000000)));
+                insert.setString( 6, text( random, 4));
+                batch( insert, id);
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private long books( Connection connection, Random random) throws SQLException {
+        long commentId = 0;
+        try( PreparedStatement book = connection.prepareStatement(
+                "insert into books( id, name, isbn, pub_place, pub_house, pub_year, genre_id, author_id) values( ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement comment = connection.prepareStatement(
+                "insert into comments( id, name, datetime, comment, book_id) values( ?, ?, ?, ?, ?)")){
+            long start = Timestamp.valueOf( "2015-01-01 00:00:00").getTime();
+
+            for( long id = 1; id <= books; id++){
+                book.setLong(   1, id);
+                book.setString( 2, "book " + id);
+                book.setString( 3, String.valueOf( 1000000000L + id));
+                book.setString( 4, text( random, 1));
+                book.setString( 5, text( random, 2));
+                book.setInt(    6, 1950 + random.nextInt( 70));
+                book.setLong(   7, 1 + (long) ( random.nextDouble() * genres));
+                book.setLong(   8, 1 + (long) ( random.nextDouble() * authors));
+                book.addBatch();
+
+                for( int i = fanOut.next( random); i > 0; i--){
+                    commentId++;
+                    comment.setLong(      1, commentId);
+                    comment.setString(    2, "user" + random.nextInt( 10000));
+                    comment.setTimestamp( 3, new Timestamp( start + (long) ( random.nextDouble() * 3e11)));
+                    comment.setString(    4, text( random, 20 + random.nextInt( 60)));
+                    comment.setLong(      5, id);
+                    comment.addBatch();
+                }
+                if( id % BATCH == 0){
+                    // комментарии ссылаются на книги - книги пачки уходят первыми
+                    book.executeBatch();
+                    comment.executeBatch();
+                }
+                if( id % ( BATCH * 100) == 0){
+                    connection.commit();
+                }
+            }
+            book.executeBatch();
+            comment.executeBatch();
+        }
+        return commentId;
+    }
+
+    private static void batch( PreparedStatement insert, long n) throws SQLException {
+        insert.addBatch();
+        if( n % BATCH == 0){
+            insert.executeBatch();
+        }
+    }
+
+    private static String text( Random random, int words){
+        StringBuilder text = new StringBuilder();
+        for( int i = 0; i < words; i++){
+            if( i > 0){
+                text.append( ' ');
+            }
+            text.append( WORDS[ random.nextInt( WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
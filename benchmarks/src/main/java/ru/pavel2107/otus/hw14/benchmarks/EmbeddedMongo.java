@@ -0,0 +1,44 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import com.mongodb.MongoClient;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+
+//
+// встроенный mongod на свободном порту для бенчмарков записи
+//
+public class EmbeddedMongo implements AutoCloseable {
+
+    private final MongodExecutable executable;
+    private final MongoClient      client;
+    private final MongoTemplate    mongoTemplate;
+
+    public EmbeddedMongo( String database) throws IOException {
+        int port = Network.getFreeServerPort();
+        executable = MongodStarter.getDefaultInstance().prepare( new MongodConfigBuilder()
+                .version( Version.Main.PRODUCTION)
+                .net( new Net( "localhost", port, Network.localhostIsIPv6()))
+                .build());
+        executable.start();
+
+        client        = new MongoClient( "localhost", port);
+        mongoTemplate = new MongoTemplate( client, database);
+    }
+
+    public MongoTemplate getMongoTemplate() {
+        return mongoTemplate;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executable.stop();
+    }
+}
@@ -0,0 +1,117 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import com.mongodb.MongoClient;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.batch.EmbeddedProjection;
+import ru.pavel2107.otus.hw14.batch.processor.BookItemProcessor;
+import ru.pavel2107.otus.hw14.batch.writer.MongoDocumentEncoder;
+import ru.pavel2107.otus.hw14.batch.writer.MongoDocumentEncoders;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Объект -> org.bson.Document: MappingMongoConverter против MongoDocumentEncoders, без mongod.
+// Операция - все документы таблицы. Перед замером каждый документ кодируется обоими способами
+// и сравнивается побайтно в BSON - при расхождении бенчмарк падает, так что прогон заодно проверяет совместимость.
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.AverageTime)
+@OutputTimeUnit( TimeUnit.MICROSECONDS)
+@Fork( 1)
+@Warmup( iterations = 3)
+@Measurement( iterations = 5)
+public class EncoderBenchmark {
+
+    @Param({ "genre", "author", "book", "embeddedBook"})
+    private String document;
+
+    @Param({ "converter", "direct"})
+    private String encoding;
+
+    @Param({ "10000"})
+    private long books;
+
+    private List<Object>                 items;
+    private MongoDocumentEncoder<Object> encoder;
+
+    @Setup
+    @SuppressWarnings( "unchecked")
+    public void setUp() throws Exception {
+        SourceData data = new SourceData( "encoder", books, "geometric:3");
+        Class<?> type;
+        switch( document){
+            case "genre":
+                type  = MongoGenre.class;
+                items = new ArrayList<>( data.getGenres());
+                break;
+            case "author":
+                type  = MongoAuthor.class;
+                items = new ArrayList<>( data.getAuthors());
+                break;
+            default:
+                BookLayout layout = document.equals( "book") ? BookLayout.DBREF : BookLayout.EMBEDDED;
+                type  = layout.getDocumentType();
+                items = new ArrayList<>( data.getBooks().size());
+                BookItemProcessor processor = new BookItemProcessor( layout,
+                        new EmbeddedProjection( Collections.singletonList( "name"), Collections.singletonList( "name")));
+                for( MongoBook book : data.getBooks()){
+                    items.add( processor.process( book));
+                }
+        }
+
+        MappingMongoConverter converter = new MappingMongoConverter( NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        MongoDocumentEncoder<Object> direct = MongoDocumentEncoders.forType( (Class<Object>) type, converter);
+        MongoDocumentEncoder<Object> mapped = item -> {
+            Document result = new Document();
+            converter.write( item, result);
+            return result;
+        };
+
+        Codec<Document> codec = MongoClient.getDefaultCodecRegistry().get( Document.class);
+        for( Object item : items){
+            Document expected = mapped.encode( item);
+            Document actual   = direct.encode( item);
+            if( !new RawBsonDocument( actual, codec).getByteBuffer().asNIO()
+                    .equals( new RawBsonDocument( expected, codec).getByteBuffer().asNIO())){
+                throw new IllegalStateException( "Encoder расходится с converter'ом:\n"
+                        + "encoder:   " + actual.toJson() + "\n"
+                        + "converter: " + expected.toJson());
+            }
+        }
+
+        encoder = encoding.equals( "direct") ? direct : mapped;
+    }
+
+    @Benchmark
+    public void encode( Blackhole blackhole) {
+        for( Object item : items){
+            blackhole.consume( encoder.encode( item));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import java.util.Random;
+
+//
+// Распределение числа комментариев на книгу:
+//   fixed:N      - ровно N
+//   uniform:A-B  - равномерно от A до B
+//   geometric:M  - геометрическое со средним M (много книг без комментариев и длинный хвост)
+//
+public class FanOut {
+
+    private final String kind;
+    private final double a;
+    private final double b;
+
+    private FanOut( String kind, double a, double b){
+        this.kind = kind;
+        this.a    = a;
+        this.b    = b;
+    }
+
+    public static FanOut parse( String spec){
+        String[] parts = spec.split( ":", 2);
+        if( parts.length != 2){
+            throw new IllegalArgumentException( "Распределение задается как вид:параметры, получено " + spec);
+        }
+        switch( parts[ 0]){
+            case "fixed":
+                return new FanOut( "fixed", Integer.parseInt( parts[ 1]), 0);
+            case "uniform":
+                String[] range = parts[ 1].split( "-");
+                return new FanOut( "uniform", Integer.parseInt( range[ 0]), Integer.parseInt( range[ 1]));
+            case "geometric":
+                return new FanOut( "geometric", Double.parseDouble( parts[ 1]), 0);
+            default:
+                throw new IllegalArgumentException( "Неизвестное распределение " + parts[ 0]);
+        }
+    }
+
+    public int next( Random random){
+        switch( kind){
+            case "fixed":
+                return (int) a;
+            case "uniform":
+                return (int) a + random.nextInt( (int) ( b - a) + 1);
+            default:
+                // число неудач до успеха с p = 1 / (M + 1)
+                double p = 1 / ( a + 1);
+                return (int) ( Math.log( 1 - random.nextDouble()) / Math.log( 1 - p));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return kind.equals( "uniform") ? kind + ":" + (int) a + "-" + (int) b : kind + ":" + a;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.batch.index.IndexDefinition;
+import ru.pavel2107.otus.hw14.batch.writer.MongoBulkItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+
+//
+// Загрузка книг пачками MongoBulkItemWriter'а во встроенный mongod с индексами migration.index.definitions:
+// none   - без вторичных индексов,
+// during - индексы созданы до загрузки и поддерживаются на каждой вставке (как при индексах в @Document),
+// after  - загрузка без индексов, затем построение (stepCreateIndexes).
+// Операция - вся загрузка вместе с построением индексов, коллекция перед каждой операцией удаляется.
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.SingleShotTime)
+@OutputTimeUnit( TimeUnit.MILLISECONDS)
+@Fork( 1)
+@Warmup( iterations = 2)
+@Measurement( iterations = 5)
+public class IndexLoadBenchmark {
+
+    private static final List<String> DEFINITIONS =
+            Arrays.asList( "books:isbn:sparse", "books:genre", "books:author", "books:comments.dateTime");
+
+    @Param({ "100000"})
+    private long books;
+
+    @Param({ "none", "during", "after"})
+    private String indexes;
+
+    @Param({ "500"})
+    private int chunkSize;
+
+    private EmbeddedMongo                  mongo;
+    private MongoBulkItemWriter<MongoBook> writer;
+    private List<List<MongoBook>>          chunks;
+    private List<IndexDefinition>          definitions;
+
+    @Setup
+    public void setUp() throws Exception {
+        SourceData data = new SourceData( "indexes", books, "geometric:3");
+        chunks = new ArrayList<>();
+        List<MongoBook> all = data.getBooks();
+        for( int i = 0; i < all.size(); i += chunkSize){
+            chunks.add( all.subList( i, Math.min( all.size(), i + chunkSize)));
+        }
+        definitions = new ArrayList<>();
+        for( String definition : DEFINITIONS){
+            definitions.add( IndexDefinition.parse( definition));
+        }
+
+        mongo  = new EmbeddedMongo( "benchmarks");
+        writer = new MongoBulkItemWriter<>( mongo.getMongoTemplate(), MongoBook.class, MongoWriteMode.INSERT);
+    }
+
+    @Setup( Level.Invocation)
+    public void clean() {
+        MongoTemplate mongoTemplate = mongo.getMongoTemplate();
+        mongoTemplate.dropCollection( MongoBook.class);
+        if( indexes.equals( "during")){
+            createIndexes( mongoTemplate);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongo.close();
+    }
+
+    @Benchmark
+    public void load() {
+        for( List<MongoBook> chunk : chunks){
+            writer.write( chunk);
+        }
+        if( indexes.equals( "after")){
+            createIndexes( mongo.getMongoTemplate());
+        }
+    }
+
+    private void createIndexes( MongoTemplate mongoTemplate){
+        for( IndexDefinition definition : definitions){
+            MongoCollection<Document> collection = mongoTemplate.getCollection( definition.getCollection());
+            collection.createIndex( definition.getKeys(), definition.options( false));
+        }
+    }
+}
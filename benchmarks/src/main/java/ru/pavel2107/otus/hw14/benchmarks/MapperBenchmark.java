@@ -0,0 +1,111 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.batch.cache.LongObjectMap;
+import ru.pavel2107.otus.hw14.batch.mapper.AuthorRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.BookRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.CommentRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.GenreRowMapper;
+import ru.pavel2107.otus.hw14.benchmarks.baseline.EntityMapping;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Строки таблицы в документы Mongo на уже выбранном результате: ResultSet прокручиваемый,
+// H2 держит его в памяти, так что замер - только разбор строк, без выполнения запроса. Операция - вся таблица.
+//
+// path = direct - row mapper'ы шагов (номера колонок один раз, сразу документ Mongo),
+// path = entity - прежний путь через JPA сущность (baseline.EntityMapping).
+// Выделение памяти на строку: -prof gc, метрика gc.alloc.rate.norm
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.AverageTime)
+@OutputTimeUnit( TimeUnit.MICROSECONDS)
+@Fork( 1)
+@Warmup( iterations = 3)
+@Measurement( iterations = 5)
+public class MapperBenchmark {
+
+    @Param({ "genre", "authors", "books", "comments"})
+    private String table;
+
+    @Param({ "direct", "entity"})
+    private String path;
+
+    @Param({ "10000"})
+    private long books;
+
+    private Connection   connection;
+    private Statement    statement;
+    private ResultSet    resultSet;
+    private RowMapper<?> mapper;
+
+    @Setup
+    public void setUp() throws SQLException {
+        JdbcDataSource dataSource = DatasetGenerator.inMemory( "mapper", books, "geometric:3");
+        JdbcTemplate   jdbc       = new JdbcTemplate( dataSource);
+        LongObjectMap<MongoGenre>  genres  = new LongObjectMap<>( 64);
+        LongObjectMap<MongoAuthor> authors = new LongObjectMap<>( (int) books / 10);
+        jdbc.query( "select * from genre",   new GenreRowMapper()).forEach(  genre  -> genres.put(  Long.parseLong( genre.getId()),  genre));
+        jdbc.query( "select * from authors", new AuthorRowMapper()).forEach( author -> authors.put( Long.parseLong( author.getId()), author));
+
+        connection = dataSource.getConnection();
+        statement  = connection.createStatement( ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        resultSet  = statement.executeQuery( "select * from " + table + " order by id");
+        boolean direct = path.equals( "direct");
+        switch( table){
+            case "genre":
+                mapper = direct ? new GenreRowMapper() : ( RowMapper<MongoGenre>) ( rs, i) -> EntityMapping.genre( rs);
+                break;
+            case "authors":
+                mapper = direct ? new AuthorRowMapper() : ( RowMapper<MongoAuthor>) ( rs, i) -> EntityMapping.author( rs);
+                break;
+            case "books":
+                mapper = direct ? new BookRowMapper( authors::get, genres::get)
+                                : ( RowMapper<MongoBook>) ( rs, i) -> EntityMapping.book( rs, authors::get, genres::get);
+                break;
+            default:
+                mapper = direct ? new CommentRowMapper() : ( RowMapper<MongoComment>) ( rs, i) -> EntityMapping.comment( rs);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        resultSet.close();
+        statement.execute( "shutdown");
+        connection.close();
+    }
+
+    @Benchmark
+    public void mapTable( Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int row = 0;
+        while( resultSet.next()){
+            blackhole.consume( mapper.mapRow( resultSet, row++));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.batch.EmbeddedProjection;
+import ru.pavel2107.otus.hw14.batch.processor.BookItemProcessor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+
+//
+// Processor книг (раскладка документа) на прочитанных в память книгах; операция - все книги.
+// Жанры и авторы processor'ов не имеют - документ собирает row mapper (см. MapperBenchmark).
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.AverageTime)
+@OutputTimeUnit( TimeUnit.MICROSECONDS)
+@Fork( 1)
+@Warmup( iterations = 3)
+@Measurement( iterations = 5)
+public class ProcessorBenchmark {
+
+    @Param({ "10000"})
+    private long books;
+
+    @Param({ "DBREF", "EMBEDDED"})
+    private BookLayout layout;
+
+    private SourceData        data;
+    private BookItemProcessor processor;
+
+    @Setup
+    public void setUp() throws Exception {
+        data      = new SourceData( "processor", books, "geometric:3");
+        processor = new BookItemProcessor( layout,
+                new EmbeddedProjection( Collections.singletonList( "name"), Collections.singletonList( "name")));
+    }
+
+    @Benchmark
+    public void books( Blackhole blackhole) {
+        for( MongoBook book : data.getBooks()){
+            blackhole.consume( processor.process( book));
+        }
+    }
+}
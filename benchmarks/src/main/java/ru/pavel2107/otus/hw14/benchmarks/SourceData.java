@@ -0,0 +1,86 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import ru.pavel2107.otus.hw14.batch.cache.LongObjectMap;
+import ru.pavel2107.otus.hw14.batch.mapper.AuthorRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.GenreRowMapper;
+import ru.pavel2107.otus.hw14.batch.reader.BookCommentsItemReader;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Сгенерированные строки, прочитанные в память теми же mapper'ами и reader'ом, что и в шагах -
+// вход для бенчмарков processor'ов и writer'ов
+//
+public class SourceData {
+
+    private final List<MongoGenre>  genres;
+    private final List<MongoAuthor> authors;
+    private final List<MongoBook>   books  = new ArrayList<>();
+
+    private final LongObjectMap<MongoGenre>  genresById;
+    private final LongObjectMap<MongoAuthor> authorsById;
+
+    public SourceData( String name, long books, String fanOut) throws Exception {
+        DataSource   dataSource   = DatasetGenerator.inMemory( name, books, fanOut);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate( dataSource);
+
+        genres      = jdbcTemplate.query( "select * from genre order by id",   new GenreRowMapper());
+        authors     = jdbcTemplate.query( "select * from authors order by id", new AuthorRowMapper());
+        genresById  = byId( genres,  MongoGenre::getId);
+        authorsById = byId( authors, MongoAuthor::getId);
+
+        BookCommentsItemReader reader = new BookCommentsItemReader( dataSource, 1, books, authorsById::get, genresById::get);
+        reader.afterPropertiesSet();
+        reader.open( new ExecutionContext());
+        try{
+            MongoBook book;
+            while( ( book = reader.read()) != null){
+                this.books.add( book);
+            }
+        } finally {
+            reader.close();
+        }
+        try( Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()){
+            statement.execute( "shutdown");
+        }
+    }
+
+    private static <T> LongObjectMap<T> byId( List<T> items, Function<T, String> id){
+        LongObjectMap<T> map = new LongObjectMap<>( items.size());
+        for( T item : items){
+            map.put( Long.parseLong( id.apply( item)), item);
+        }
+        return map;
+    }
+
+    public List<MongoGenre> getGenres() {
+        return genres;
+    }
+
+    public List<MongoAuthor> getAuthors() {
+        return authors;
+    }
+
+    public List<MongoBook> getBooks() {
+        return books;
+    }
+
+    public LongObjectMap<MongoGenre> getGenresById() {
+        return genresById;
+    }
+
+    public LongObjectMap<MongoAuthor> getAuthorsById() {
+        return authorsById;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.pavel2107.otus.hw14.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import ru.pavel2107.otus.hw14.batch.EmbeddedProjection;
+import ru.pavel2107.otus.hw14.batch.processor.BookItemProcessor;
+import ru.pavel2107.otus.hw14.batch.writer.MongoBulkItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoEmbeddedBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Запись одной пачки MongoBulkItemWriter'ом во встроенный mongod.
+// Документы готовятся заранее processor'ами, перед записью им выдаются новые id -
+// каждая пачка вставляет новые документы и в INSERT, и в UPSERT. Коллекция очищается на каждой итерации.
+// directEncoding - документы собирает MongoDocumentEncoders вместо converter'а (см. EncoderBenchmark).
+//
+@State( Scope.Benchmark)
+@BenchmarkMode( Mode.AverageTime)
+@OutputTimeUnit( TimeUnit.MILLISECONDS)
+@Fork( 1)
+@Warmup( iterations = 3)
+@Measurement( iterations = 5)
+public class WriterBenchmark {
+
+    @Param({ "genre", "author", "book", "embeddedBook"})
+    private String document;
+
+    @Param({ "INSERT", "UPSERT"})
+    private MongoWriteMode writeMode;
+
+    @Param({ "100", "1000"})
+    private int chunkSize;
+
+    @Param({ "false", "true"})
+    private boolean directEncoding;
+
+    private EmbeddedMongo               mongo;
+    private MongoBulkItemWriter<Object> writer;
+    private String                      collection;
+    private List<Object>                chunk;
+    private BiConsumer<Object, String>  setId;
+    private long                        nextId;
+
+    @Setup
+    @SuppressWarnings( "unchecked")
+    public void setUp() throws Exception {
+        SourceData data = new SourceData( "writer", chunkSize, "geometric:3");
+        mongo = new EmbeddedMongo( "benchmarks");
+        MongoTemplate mongoTemplate = mongo.getMongoTemplate();
+
+        chunk = new ArrayList<>( chunkSize);
+        Class<?> type;
+        switch( document){
+            case "genre":
+                type  = MongoGenre.class;
+                setId = ( item, id) -> ( (MongoGenre) item).setId( id);
+                for( int i = 0; i < chunkSize; i++){
+                    chunk.add( copy( data.getGenres().get( i % data.getGenres().size())));
+                }
+                break;
+            case "author":
+                type  = MongoAuthor.class;
+                setId = ( item, id) -> ( (MongoAuthor) item).setId( id);
+                for( int i = 0; i < chunkSize; i++){
+                    chunk.add( copy( data.getAuthors().get( i % data.getAuthors().size())));
+                }
+                break;
+            default:
+                BookLayout layout = document.equals( "book") ? BookLayout.DBREF : BookLayout.EMBEDDED;
+                type  = layout.getDocumentType();
+                setId = layout == BookLayout.DBREF ? ( item, id) -> ( (MongoBook) item).setId( id)
+                                                   : ( item, id) -> ( (MongoEmbeddedBook) item).setId( id);
+                BookItemProcessor processor = new BookItemProcessor( layout,
+                        new EmbeddedProjection( Collections.singletonList( "name"), Collections.singletonList( "name")));
+                for( MongoBook book : data.getBooks()){
+                    chunk.add( processor.process( book));
+                }
+        }
+
+        collection = mongoTemplate.getCollectionName( type);
+        writer     = new MongoBulkItemWriter<>( mongoTemplate, (Class<Object>) type, writeMode);
+        writer.setDirectEncoding( directEncoding);
+    }
+
+    // жанры и авторы повторяются по кругу, если пачка больше таблицы - каждому свой объект под свой id
+    private static MongoGenre copy( MongoGenre genre){
+        MongoGenre copy = new MongoGenre();
+        copy.setName( genre.getName());
+        return copy;
+    }
+
+    private static MongoAuthor copy( MongoAuthor author){
+        MongoAuthor copy = new MongoAuthor();
+        copy.setName(      author.getName());
+        copy.setBirthDate( author.getBirthDate());
+        copy.setEmail(     author.getEmail());
+        copy.setPhone(     author.getPhone());
+        copy.setAddress(   author.getAddress());
+        return copy;
+    }
+
+    @Setup( Level.Iteration)
+    public void clean() {
+        mongo.getMongoTemplate().dropCollection( collection);
+        nextId = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongo.close();
+    }
+
+    @Benchmark
+    public void writeChunk() {
+        for( Object item : chunk){
+            setId.accept( item, Long.toString( ++nextId));
+        }
+        writer.write( chunk);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.pavel2107.otus.hw14.benchmarks.baseline;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.LongFunction;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+import ru.pavel2107.otus.hw14.rdbms.domain.Author;
+import ru.pavel2107.otus.hw14.rdbms.domain.Book;
+import ru.pavel2107.otus.hw14.rdbms.domain.Comment;
+import ru.pavel2107.otus.hw14.rdbms.domain.Genre;
+
+//
+// Прежний путь строки до документа, для сравнения в MapperBenchmark:
+// колонки по имени на каждой строке, JPA сущность, затем отдельная копия в документ Mongo
+//
+public class EntityMapping {
+
+    public static MongoGenre genre( ResultSet resultSet) throws SQLException {
+        Genre genre = new Genre();
+        genre.setName( resultSet.getString( "name"));
+        genre.setId(   resultSet.getLong( "id"));
+
+        MongoGenre mongoGenre = new MongoGenre();
+        mongoGenre.setId(   genre.getId().toString());
+        mongoGenre.setName( genre.getName());
+        return mongoGenre;
+    }
+
+    public static MongoAuthor author( ResultSet resultSet) throws SQLException {
+        Date birthDate = resultSet.getDate( "birthdate");
+
+        Author author = new Author();
+        author.setId(        resultSet.getLong( "id"));
+        author.setName(      resultSet.getString( "name"));
+        author.setBirthDate( birthDate == null ? null : birthDate.toLocalDate());
+        author.setEmail(     resultSet.getString( "email"));
+        author.setPhone(     resultSet.getString( "phone"));
+        author.setAddress(   resultSet.getString( "address"));
+
+        MongoAuthor mongoAuthor = new MongoAuthor();
+        mongoAuthor.setId(        author.getId().toString());
+        mongoAuthor.setName(      author.getName());
+        mongoAuthor.setBirthDate( author.getBirthDate());
+        mongoAuthor.setEmail(     author.getEmail());
+        mongoAuthor.setPhone(     author.getPhone());
+        mongoAuthor.setAddress(   author.getAddress());
+        return mongoAuthor;
+    }
+
+    public static MongoBook book( ResultSet resultSet, LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres) throws SQLException {
+        Book book = new Book();
+        book.setId(               resultSet.getLong( "id"));
+        book.setName(             resultSet.getString( "name"));
+        book.setPublishingHouse(  resultSet.getString( "pub_house"));
+        book.setPublicationPlace( resultSet.getString( "pub_place"));
+        book.setIsbn(             resultSet.getString( "isbn"));
+
+        int year = resultSet.getInt( "pub_year");
+        book.setPublicationYear( resultSet.wasNull() ? null : year);
+
+        long authorId = resultSet.getLong( "author_id");
+        if( !resultSet.wasNull()){
+            Author author = new Author();
+            author.setId( authorId);
+            book.setAuthor( author);
+        }
+        long genreId = resultSet.getLong( "genre_id");
+        if( !resultSet.wasNull()){
+            Genre genre = new Genre();
+            genre.setId( genreId);
+            book.setGenre( genre);
+        }
+
+        MongoBook mongoBook = new MongoBook();
+        mongoBook.setId(               book.getId().toString());
+        mongoBook.setName(             book.getName());
+        mongoBook.setPublishingHouse(  book.getPublishingHouse());
+        mongoBook.setPublicationYear(  book.getPublicationYear());
+        mongoBook.setPublicationPlace( book.getPublicationPlace());
+        mongoBook.setIsbn(             book.getIsbn());
+        if( book.getAuthor() != null){
+            mongoBook.setAuthor( authors.apply( book.getAuthor().getId()));
+        }
+        if( book.getGenre() != null){
+            mongoBook.setGenre( genres.apply( book.getGenre().getId()));
+        }
+        return mongoBook;
+    }
+
+    public static MongoComment comment( ResultSet resultSet) throws SQLException {
+        Book owner = new Book();
+        owner.setId( resultSet.getLong( "book_id"));
+
+        Comment comment = new Comment();
+        comment.setId(      resultSet.getLong( "id"));
+        comment.setName(    resultSet.getString( "name"));
+        comment.setComment( resultSet.getString( "comment"));
+        comment.setDateTime( resultSet.getTimestamp( "datetime").toLocalDateTime());
+        comment.setBook( owner);
+
+        MongoComment mongoComment = new MongoComment();
+        mongoComment.setName(     comment.getName());
+        mongoComment.setDateTime( comment.getDateTime());
+        mongoComment.setComment(  comment.getComment());
+        return mongoComment;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.pavel2107.otus.hw14.batch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+
+import java.time.Duration;
+
+//
+// Размер пачки, подстраиваемый под целевое время пачки.
+// После каждой пачки время на запись (чтение + обработка + запись в Mongo) сглаживается
+// экспоненциальным средним, следующая пачка берется размером target / время_на_запись.
+// Один экземпляр на шаг: партиции шага работают параллельно и уточняют общую оценку,
+// счетчик записей текущей пачки у каждого потока свой.
+//
+public class AdaptiveChunkCompletionPolicy extends SimpleCompletionPolicy implements ChunkListener {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final double SMOOTHING = 0.3;
+
+    private final int  minChunkSize;
+    private final int  maxChunkSize;
+    private final long targetNanos;
+
+    private final ThreadLocal<long[]> current = new ThreadLocal<>();   // { начало пачки, записей в пачке}
+    private double nanosPerItem = -1;
+    private int    chunkSize;
+
+    public AdaptiveChunkCompletionPolicy( int initialChunkSize, int minChunkSize, int maxChunkSize, Duration target){
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetNanos  = target.toNanos();
+        this.chunkSize    = Math.max( minChunkSize, Math.min( maxChunkSize, initialChunkSize));
+        setChunkSize( chunkSize);
+    }
+
+    @Override
+    public void update( RepeatContext context) {
+        super.update( context);
+        long[] chunk = current.get();
+        if( chunk != null){
+            chunk[ 1]++;
+        }
+    }
+
+    @Override
+    public void beforeChunk( ChunkContext context) {
+        current.set( new long[]{ System.nanoTime(), 0});
+    }
+
+    @Override
+    public void afterChunk( ChunkContext context) {
+        long[] chunk = current.get();
+        current.remove();
+        // неполная последняя пачка и пустые пачки почти целиком - накладные расходы, оценку не портят
+        if( chunk == null || chunk[ 1] < minChunkSize){
+            return;
+        }
+
+        double sample = ( System.nanoTime() - chunk[ 0]) / (double) chunk[ 1];
+        synchronized( this){
+            nanosPerItem = nanosPerItem < 0 ? sample : SMOOTHING * sample + ( 1 - SMOOTHING) * nanosPerItem;
+            int size = (int) Math.max( minChunkSize, Math.min( maxChunkSize, targetNanos / nanosPerItem));
+            if( size != chunkSize){
+                logger.debug( "Размер пачки " + chunkSize + " -> " + size);
+                chunkSize = size;
+                setChunkSize( size);
+            }
+        }
+    }
+
+    @Override
+    public void afterChunkError( ChunkContext context) {
+        current.remove();
+    }
+}
@@ -1,101 +1,130 @@
 package ru.pavel2107.otus.hw14.batch;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
-import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
-import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
+import ru.pavel2107.otus.hw14.batch.cache.FileReferenceLoader;
+import ru.pavel2107.otus.hw14.batch.cache.ReferenceCache;
+import ru.pavel2107.otus.hw14.batch.delta.DeltaWindow;
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.mapper.AuthorRowMapper;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.ReaderSource;
+import ru.pavel2107.otus.hw14.batch.writer.MongoBulkItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
 import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
-import ru.pavel2107.otus.hw14.rdbms.domain.Author;
 
 @Configuration
 @EnableBatchProcessing
 public class AuthorStepConfig {
         private final Logger logger = LoggerFactory.getLogger("Batch");
 
-        final private String SELECT_SQL = "select * from authors";
+        final private String SELECT_BY_ID_SQL = "select * from authors where id = ?";
 
         @Autowired private StepBuilderFactory stepBuilderFactory;
         @Autowired private DataSource dataSource;
         @Autowired private MongoTemplate mongoTemplate;
+        @Autowired private JdbcTemplate jdbcTemplate;
+        @Autowired private TaskExecutor migrationTaskExecutor;
+        @Autowired private MetricsStepListener stepMetricsListener;
+        @Autowired private DeadLetterSkipListener deadLetterListener;
+        @Value( "${migration.mongo.write-mode}") private MongoWriteMode writeMode;
+        @Value( "${migration.mongo.direct-encoding}") private boolean directEncoding;
+        @Value( "${migration.cache.capacity}") private int cacheCapacity;
 
         @Bean
-        JdbcCursorItemReader<Author> readerAuthor(){
-            JdbcCursorItemReader<Author> reader = new JdbcCursorItemReader<>();
-            reader.setDataSource( dataSource);
-            reader.setSql( SELECT_SQL);
-            reader.setRowMapper((resultSet, i) -> {
-                Author Author = new Author();
-                Author.setName( resultSet.getString( "name"));
-                Author.setId(   resultSet.getLong( "id"));
-                return Author;
-            });
+        @ConfigurationProperties( "migration.step.author")
+        StepSettings authorStepSettings(){
+            return new StepSettings();
+        }
+
+        @Bean
+        @StepScope
+        ItemStreamReader<MongoAuthor> readerAuthor( @Value( "#{stepExecutionContext['minValue']}") Long minId,
+                                                    @Value( "#{stepExecutionContext['maxValue']}") Long maxId,
+                                                    @Value( "#{stepExecutionContext['readerAuthor.last.id']}") Long lastId,
+                                                    @Value( "#{jobExecutionContext['delta.authors.from']}") Long deltaFrom,
+                                                    @Value( "#{jobExecutionContext['delta.authors.to']}") Long deltaTo){
+            List<Object> args = new ArrayList<>();
+            DeltaWindow window = DeltaWindow.of( deltaFrom, deltaTo);
+            String filter = window == null ? null : window.condition( "last_modified", args);
+
+            ItemStreamReader<MongoAuthor> reader = authorStepSettings().source( dataSource, "authors", KeysetCheckpointItemReader.resumeFrom( minId, lastId), maxId,
+                    filter, args, new AuthorRowMapper());
 
-            return reader;
+            return authorStepSettings().reader( reader, "readerAuthor", author -> Long.parseLong( author.getId()));
         }
 
+        //
+        // Авторы для шага книг: заполняется по мере записи stepAuthor, промахи дочитываются из базы,
+        // при source=FILE - из выгрузки authors.csv по индексу id (база может быть пустой)
+        //
         @Bean
-        ItemWriter writerAuthor(){
-            return (ItemWriter<MongoAuthor>) list -> {
-                for( int i = 0; i < list.size(); i++){
-                    MongoAuthor mongoAuthor = list.get( i);
-                    logger.info( "Записываем Author.id=" + mongoAuthor.getId());
-                    mongoTemplate.save( mongoAuthor);
+        ReferenceCache<MongoAuthor> authorCache( MeterRegistry meterRegistry, FileReferenceLoader<MongoAuthor> authorFileLoader){
+            return new ReferenceCache<>( "author", cacheCapacity, author -> Long.parseLong( author.getId()), id -> {
+                if( authorStepSettings().getSource() == ReaderSource.FILE){
+                    return authorFileLoader.apply( id);
                 }
-            };
+                List<MongoAuthor> authors = jdbcTemplate.query( SELECT_BY_ID_SQL, new AuthorRowMapper(), id);
+                return authors.isEmpty() ? null : authors.get( 0);
+            }, meterRegistry);
         }
 
+        // выгрузка открывается и индексируется при первом промахе кэша
         @Bean
-        ItemProcessor processorAuthor(){
-            return ( ItemProcessor<Author, MongoAuthor>) Author ->{
-                MongoAuthor mongoAuthor = new MongoAuthor();
-                mongoAuthor.setId(   Author.getId().toString());
-                mongoAuthor.setName( Author.getName());
-                return mongoAuthor;
-            };
+        FileReferenceLoader<MongoAuthor> authorFileLoader(){
+            return new FileReferenceLoader<>( authorStepSettings().file( "authors"), new AuthorRowMapper());
         }
 
         @Bean
-        public Step stepAuthor( JdbcCursorItemReader<Author> readerAuthor, ItemWriter writerAuthor, ItemProcessor processorAuthor){
-            TaskletStep stepAuthor = stepBuilderFactory.get("stepAuthor")
-                    .chunk(5)
+        ItemWriter writerAuthor(){
+            MongoBulkItemWriter<MongoAuthor> writer = new MongoBulkItemWriter<>( mongoTemplate, MongoAuthor.class, writeMode);
+            writer.setDirectEncoding( directEncoding);
+            return writer;
+        }
+
+        @Bean
+        public Step stepAuthorWorker( ItemStreamReader<MongoAuthor> readerAuthor, ItemWriter writerAuthor,
+                                      ReferenceCache<MongoAuthor> authorCache){
+            TaskletStep stepAuthorWorker = authorStepSettings().chunk( stepBuilderFactory.get("stepAuthorWorker").listener( stepMetricsListener), deadLetterListener)
                     .reader(readerAuthor)
                     .writer( writerAuthor)
-                    .processor(processorAuthor)
-                    .listener(new ItemReadListener() {
-                        public void beforeRead() { logger.info("Начало чтения"); }
-                        public void afterRead(Object o) { logger.info("Конец чтения"); }
-                        public void onReadError(Exception e) { logger.info("Ошибка чтения"); }
-                    })
-                    .listener(new ItemWriteListener() {
-                        public void beforeWrite(List list) { logger.info("Начало записи"); }
-                        public void afterWrite(List list) { logger.info("Конец записи"); }
-                        public void onWriteError(Exception e, List list) { logger.info("Ошибка записи"); }
-                    })
-                    .listener(new ItemProcessListener() {
-                        public void beforeProcess(Object o) {logger.info("Начало обработки");}
-                        public void afterProcess(Object o, Object o2) {logger.info("Конец обработки");}
-                        public void onProcessError(Object o, Exception e) {logger.info("Ошбка обработки");}
-                    })
-                    .listener(new ChunkListener() {
-                        public void beforeChunk(ChunkContext chunkContext) {logger.info("Начало пачки");}
-                        public void afterChunk(ChunkContext chunkContext) {logger.info("Конец пачки");}
-                        public void afterChunkError(ChunkContext chunkContext) {logger.info("Ошибка пачки");}
-                    })
+                    .listener( (ItemWriteListener) authorCache)
+                    .listener( (ChunkListener) stepMetricsListener)
+                    .listener( (ItemReadListener) stepMetricsListener)
+                    .listener( (ItemWriteListener) stepMetricsListener)
+                    .build();
+            return stepAuthorWorker;
+        }
+
+        @Bean
+        public Step stepAuthor( Step stepAuthorWorker){
+            return stepBuilderFactory.get("stepAuthor")
+                    .partitioner( "stepAuthorWorker", authorStepSettings().partitioner( jdbcTemplate, "authors"))
+                    .step( stepAuthorWorker)
+                    .gridSize( authorStepSettings().getGridSize())
+                    .taskExecutor( migrationTaskExecutor)
                     .build();
-            return stepAuthor;
         }
 }
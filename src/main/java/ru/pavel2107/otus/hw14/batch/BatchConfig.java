@@ -1,6 +1,7 @@
 package ru.pavel2107.otus.hw14.batch;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.Job;
@@ -9,10 +10,31 @@ import org.springframework.batch.core.JobExecutionListener;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.job.builder.FlowBuilder;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.support.SimpleFlow;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import ru.pavel2107.otus.hw14.batch.delta.HighWaterMarkListener;
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.progress.MigrationEndpoint;
+import ru.pavel2107.otus.hw14.batch.progress.MigrationProgress;
+import ru.pavel2107.otus.hw14.batch.report.StorageReportListener;
+import ru.pavel2107.otus.hw14.batch.repository.RestartFailedIncrementer;
+import ru.pavel2107.otus.hw14.mongoDB.mapping.CommentTime;
 
 @Configuration
 @EnableBatchProcessing
@@ -21,14 +43,96 @@ public class BatchConfig {
     private final Logger logger = LoggerFactory.getLogger("Batch");
 
     @Autowired private JobBuilderFactory jobBuilderFactory;
+    @Autowired private JobExplorer jobExplorer;
+
+    //
+    // пул потоков для партиций шагов, poolSize <= 0 - по числу ядер
+    //
+    @Bean
+    public TaskExecutor migrationTaskExecutor( @Value( "${migration.partition.pool-size}") int poolSize){
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize( threads);
+        executor.setMaxPoolSize(  threads);
+        executor.setThreadNamePrefix( "migration-");
+        return executor;
+    }
+
+    //
+    // потоки для параллельных веток split, отдельно от пула партиций:
+    // ветка ждет свои партиции и не должна занимать их потоки
+    //
+    @Bean
+    public TaskExecutor flowTaskExecutor(){
+        return new SimpleAsyncTaskExecutor( "flow-");
+    }
+
+    //
+    // метрики шагов migration.step.*, построчный лог - только при migration.log.items=true
+    //
+    @Bean
+    public MetricsStepListener stepMetricsListener( MeterRegistry meterRegistry,
+                                                    @Value( "${migration.log.items}") boolean logItems){
+        return new MetricsStepListener( meterRegistry, logItems, migrationProgress());
+    }
 
     @Bean
-    public Job migration( Step stepGenre, Step stepAuthor, Step stepBook){
+    public MigrationProgress migrationProgress(){
+        return new MigrationProgress();
+    }
+
+    //
+    // прогресс, скорость, оценка окончания и задержки пачек по шагам и партициям: actuator endpoint migration
+    //
+    @Bean
+    public MigrationEndpoint migrationEndpoint(){
+        return new MigrationEndpoint( migrationProgress());
+    }
+
+    //
+    // пропущенные шагами записи - в коллекцию migration_dead_letters
+    //
+    @Bean
+    public DeadLetterSkipListener deadLetterListener( MongoTemplate mongoTemplate){
+        return new DeadLetterSkipListener( mongoTemplate);
+    }
+
+    //
+    // размер коллекций и время шагов после миграции - в migration_reports, сравнение с прошлой схемой документов в лог
+    //
+    @Bean
+    public StorageReportListener storageReportListener( MongoTemplate mongoTemplate,
+                                                        @Value( "${spring.data.mongodb.field-naming-strategy:}") String fieldNaming,
+                                                        @Value( "${migration.mongo.comment-time}") CommentTime commentTime,
+                                                        @Value( "${migration.report.enabled}") boolean enabled){
+        String names = fieldNaming.isEmpty() ? "default" : fieldNaming.substring( fieldNaming.lastIndexOf( '.') + 1);
+        StorageReportListener listener = new StorageReportListener( mongoTemplate, Arrays.asList( "genres", "authors", "books", "comments"), names + "/" + commentTime);
+        listener.setEnabled( enabled);
+        return listener;
+    }
+
+    //
+    // Топология job задается в migration.job.stages:
+    // этапы через запятую выполняются последовательно, шаги этапа через | - параллельно (split).
+    // migration.batch.restart-failed=true - упавший прошлый запуск продолжается, а не начинается заново
+    //
+    @Bean
+    public Job migration( Map<String, Step> steps, @Value( "${migration.job.stages}") String[] stages,
+                          @Value( "${migration.batch.restart-failed}") boolean restartFailed,
+                          HighWaterMarkListener highWaterMarkListener, StorageReportListener storageReportListener){
+        FlowBuilder<SimpleFlow> flow = new FlowBuilder<>( "migrationFlow");
+        for( int i = 0; i < stages.length; i++){
+            Flow stage = stageFlow( steps, stages[ i].trim());
+            if( i == 0){
+                flow.start( stage);
+            } else {
+                flow.next( stage);
+            }
+        }
+
         return jobBuilderFactory.get( "migration2Mongo")
-                .incrementer( new RunIdIncrementer())
-                .start(stepGenre)
-                .next(  stepAuthor)
-                .next(  stepBook)
+                .incrementer( restartFailed ? new RestartFailedIncrementer( jobExplorer, "migration2Mongo") : new RunIdIncrementer())
                 .listener(new JobExecutionListener() {
                     @Override
                     public void beforeJob(JobExecution jobExecution) {
@@ -39,7 +143,35 @@ public class BatchConfig {
                         logger.info("Конец job");
                     }
                 })
+                .listener( highWaterMarkListener)
+                .listener( storageReportListener)
+                .start( flow.build())
+                .end()
                 .build();
     }
 
+    private Flow stageFlow( Map<String, Step> steps, String stage){
+        String[] names = stage.split( "\\|");
+        if( names.length == 1){
+            return stepFlow( steps, names[ 0].trim());
+        }
+
+        Flow[] branches = new Flow[ names.length];
+        for( int i = 0; i < names.length; i++){
+            branches[ i] = stepFlow( steps, names[ i].trim());
+        }
+        return new FlowBuilder<SimpleFlow>( stage)
+                .split( flowTaskExecutor())
+                .add( branches)
+                .build();
+    }
+
+    private Flow stepFlow( Map<String, Step> steps, String name){
+        Step step = steps.get( name);
+        if( step == null){
+            throw new IllegalStateException( "Шаг " + name + " из migration.job.stages не найден");
+        }
+        return new FlowBuilder<SimpleFlow>( name + "Flow").start( step).build();
+    }
+
 }
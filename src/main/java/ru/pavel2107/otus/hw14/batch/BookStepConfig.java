@@ -5,24 +5,45 @@ import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
-import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.pavel2107.otus.hw14.batch.cache.ReferenceCache;
+import ru.pavel2107.otus.hw14.batch.delta.DeltaWindow;
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.processor.BookItemProcessor;
+import ru.pavel2107.otus.hw14.batch.reader.BookCommentsItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.ReaderSource;
+import ru.pavel2107.otus.hw14.batch.remote.ChunkChannel;
+import ru.pavel2107.otus.hw14.batch.remote.RemoteChunkItemWriter;
+import ru.pavel2107.otus.hw14.batch.remote.RemoteMode;
+import ru.pavel2107.otus.hw14.batch.writer.MongoBulkItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.CommentStorage;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
 import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
-import ru.pavel2107.otus.hw14.rdbms.domain.Book;
-import ru.pavel2107.otus.hw14.rdbms.domain.Comment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBookView;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
 
 
 @Configuration
@@ -30,93 +51,142 @@ import ru.pavel2107.otus.hw14.rdbms.domain.Comment;
 public class BookStepConfig {
     private final Logger logger = LoggerFactory.getLogger("Batch");
 
-    final private String SELECT_SQL = "select * from books";
-
     @Autowired private StepBuilderFactory stepBuilderFactory;
     @Autowired private DataSource dataSource;
     @Autowired private MongoTemplate mongoTemplate;
-    @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TaskExecutor migrationTaskExecutor;
+    @Autowired private MetricsStepListener stepMetricsListener;
+    @Autowired private DeadLetterSkipListener deadLetterListener;
+    @Autowired private ReferenceCache<MongoAuthor> authorCache;
+    @Autowired private ReferenceCache<MongoGenre> genreCache;
+    @Value( "${migration.mongo.write-mode}") private MongoWriteMode writeMode;
+    @Value( "${migration.mongo.direct-encoding}") private boolean directEncoding;
+    @Value( "${migration.book.layout}") private BookLayout layout;
+    @Value( "${migration.book.embedded.author-fields}") private List<String> embeddedAuthorFields;
+    @Value( "${migration.book.embedded.genre-fields}") private List<String> embeddedGenreFields;
+    @Value( "${migration.comments.storage}") private CommentStorage commentStorage;
+    @Value( "${migration.comments.embedded}") private int embeddedComments;
 
     @Bean
-    JdbcCursorItemReader<Book> readerBook(){
-        JdbcCursorItemReader<Book> reader = new JdbcCursorItemReader<>();
-        reader.setDataSource( dataSource);
-        reader.setSql( SELECT_SQL);
-        reader.setRowMapper((resultSet, i) -> {
-            final String SELECT_COMMENTS_SQL = "select * from comments where book_id=:book_id";
-
-            Book book = new Book();
-            book.setName( resultSet.getString( "name"));
-            book.setId(   resultSet.getLong( "id"));
-
-            MapSqlParameterSource params = new MapSqlParameterSource();
-            params.addValue( "book_id", book.getId());
-
-            List<Comment> comments = jdbcTemplate.query(SELECT_COMMENTS_SQL, params, (resultSet1, i1) -> {
-                Comment comment = new Comment();
-                comment.setName( resultSet1.getString( "name"));
-                comment.setComment( resultSet1.getString( "comment"));
-                comment.setDateTime( resultSet1.getTimestamp( "datetime").toLocalDateTime() );
-
-                return comment;
-            });
-            book.setComments( comments);
+    @ConfigurationProperties( "migration.step.book")
+    StepSettings bookStepSettings(){
+        return new StepSettings();
+    }
 
-            return book;
-        });
+    @Bean
+    @StepScope
+    ItemStreamReader<MongoBook> readerBook( @Value( "#{stepExecutionContext['minValue']}") Long minId,
+                                      @Value( "#{stepExecutionContext['maxValue']}") Long maxId,
+                                      @Value( "#{stepExecutionContext['readerBook.last.id']}") Long lastId,
+                                      @Value( "#{jobExecutionContext['delta.books.from']}") Long booksFrom,
+                                      @Value( "#{jobExecutionContext['delta.books.to']}") Long booksTo,
+                                      @Value( "#{jobExecutionContext['delta.comments.from']}") Long commentsFrom,
+                                      @Value( "#{jobExecutionContext['delta.comments.to']}") Long commentsTo,
+                                      @Value( "#{jobExecutionContext['delta.authors.from']}") Long authorsFrom,
+                                      @Value( "#{jobExecutionContext['delta.authors.to']}") Long authorsTo,
+                                      @Value( "#{jobExecutionContext['delta.genre.from']}") Long genresFrom,
+                                      @Value( "#{jobExecutionContext['delta.genre.to']}") Long genresTo){
+        DeltaWindow books    = DeltaWindow.of( booksFrom, booksTo);
+        DeltaWindow comments = DeltaWindow.of( commentsFrom, commentsTo);
+        DeltaWindow authors  = DeltaWindow.of( authorsFrom, authorsTo);
+        DeltaWindow genres   = DeltaWindow.of( genresFrom, genresTo);
+        // перезапуск продолжает с книги после последней записанной
+        long fromId = KeysetCheckpointItemReader.resumeFrom( minId, lastId);
+        String filter = null;
+        List<Object> args = new ArrayList<>();
+        // EMBEDDED - в книге копии автора и жанра: их изменения - тоже изменения книги
+        boolean embedded = layout == BookLayout.EMBEDDED;
+        if( books != null && comments != null && ( !embedded || authors != null && genres != null)){
+            filter = embedded ? changedBooks( books, comments, authors, genres, args) : changedBooks( books, comments, null, null, args);
+        }
+        StepSettings settings = bookStepSettings();
+        BookCommentsItemReader reader;
+        switch( settings.getSource()){
+            case KEYSET:
+                reader = BookCommentsItemReader.keyset( dataSource, fromId, maxId, authorCache::get, genreCache::get, filter, args, settings.getPageSize());
+                break;
+            case FILE:
+                if( filter != null){
+                    throw new IllegalStateException( "source=FILE читает выгрузку целиком, migration.delta.incremental не поддерживается");
+                }
+                reader = BookCommentsItemReader.files( settings.file( "books"), settings.file( "comments"), fromId, maxId, authorCache::get, genreCache::get);
+                break;
+            default:
+                reader = new BookCommentsItemReader( dataSource, fromId, maxId, authorCache::get, genreCache::get, filter, args);
+        }
+        if( commentStorage == CommentStorage.BUCKETED){
+            reader.setEmbeddedComments( embeddedComments);
+        }
+        settings.configure( reader);
+        return settings.reader( reader, "readerBook", book -> Long.parseLong( book.getId()));
+    }
 
-        return reader;
+    //
+    // книга переносится целиком, если изменилась она сама или любой ее комментарий
+    // (удаление комментария обновляет last_modified книги - триггер в schema.sql);
+    // authors, genres не null - и если изменился ее автор или жанр
+    //
+    static String changedBooks( DeltaWindow books, DeltaWindow comments, DeltaWindow authors, DeltaWindow genres, List<Object> args){
+        String condition = books.condition( "last_modified", args)
+             + " or id in (select book_id from comments where " + comments.condition( "last_modified", args) + ")";
+        if( authors != null){
+            condition += " or author_id in (select id from authors where " + authors.condition( "last_modified", args) + ")";
+        }
+        if( genres != null){
+            condition += " or genre_id in (select id from genre where " + genres.condition( "last_modified", args) + ")";
+        }
+        return condition;
     }
 
     @Bean
     ItemWriter writerBook(){
-        return (ItemWriter<MongoBook>) list -> {
-            for( int i = 0; i < list.size(); i++){
-                MongoBook mongoBook = list.get( i);
-                logger.info( "Записываем Book.id=" + mongoBook.getId());
-                mongoTemplate.save( mongoBook);
-            }
-        };
+        MongoBulkItemWriter<? extends MongoBookView> writer = new MongoBulkItemWriter<>( mongoTemplate, layout.getDocumentType(), writeMode);
+        writer.setDirectEncoding( directEncoding);
+        return writer;
+    }
+
+    @Bean
+    ItemProcessor<MongoBook, MongoBookView> processorBook(){
+        EmbeddedProjection projection = new EmbeddedProjection( embeddedAuthorFields, embeddedGenreFields);
+
+        return new BookItemProcessor( layout, projection);
     }
 
+    //
+    // migration.remote.mode=MANAGER - обработку и запись делают worker'ы через chunkChannel
+    //
     @Bean
-    ItemProcessor processorBook(){
-        return ( ItemProcessor<Book, MongoBook>) Book ->{
-            MongoBook mongoBook = new MongoBook();
-            mongoBook.setId(   Book.getId().toString());
-            mongoBook.setName( Book.getName());
-            return mongoBook;
-        };
+    public Step stepBookWorker( ItemStreamReader<MongoBook> readerBook, ItemWriter writerBook, ItemProcessor processorBook,
+                                RemoteMode remoteMode, ObjectProvider<ChunkChannel> chunkChannels){
+        SimpleStepBuilder builder = bookStepSettings().chunk( stepBuilderFactory.get("stepBookWorker").listener( stepMetricsListener), deadLetterListener)
+                .reader(readerBook);
+        if( remoteMode == RemoteMode.MANAGER){
+            builder.writer( new RemoteChunkItemWriter<>( "stepBookWorker", chunkChannels.getObject()));
+        } else {
+            builder.writer( writerBook)
+                   .processor(processorBook);
+        }
+        TaskletStep stepBookWorker = builder
+                .listener( (ChunkListener) stepMetricsListener)
+                .listener( (ItemReadListener) stepMetricsListener)
+                .listener( (ItemProcessListener) stepMetricsListener)
+                .listener( (ItemWriteListener) stepMetricsListener)
+                .build();
+        return stepBookWorker;
     }
 
     @Bean
-    public Step stepBook( JdbcCursorItemReader<Book> readerBook, ItemWriter writerBook, ItemProcessor processorBook){
-        TaskletStep stepBook = stepBuilderFactory.get("stepBook")
-                .chunk(5)
-                .reader(readerBook)
-                .writer( writerBook)
-                .processor(processorBook)
-                .listener(new ItemReadListener() {
-                    public void beforeRead() { logger.info("Начало чтения"); }
-                    public void afterRead(Object o) { logger.info("Конец чтения"); }
-                    public void onReadError(Exception e) { logger.info("Ошибка чтения"); }
-                })
-                .listener(new ItemWriteListener() {
-                    public void beforeWrite(List list) { logger.info("Начало записи"); }
-                    public void afterWrite(List list) { logger.info("Конец записи"); }
-                    public void onWriteError(Exception e, List list) { logger.info("Ошибка записи"); }
-                })
-                .listener(new ItemProcessListener() {
-                    public void beforeProcess(Object o) {logger.info("Начало обработки");}
-                    public void afterProcess(Object o, Object o2) {logger.info("Конец обработки");}
-                    public void onProcessError(Object o, Exception e) {logger.info("Ошбка обработки");}
-                })
-                .listener(new ChunkListener() {
-                    public void beforeChunk(ChunkContext chunkContext) {logger.info("Начало пачки");}
-                    public void afterChunk(ChunkContext chunkContext) {logger.info("Конец пачки");}
-                    public void afterChunkError(ChunkContext chunkContext) {logger.info("Ошибка пачки");}
-                })
+    public Step stepBook( Step stepBookWorker){
+        // в книгу - последние комментарии: порядок от новых к старым есть только у курсора
+        if( commentStorage == CommentStorage.BUCKETED && bookStepSettings().getSource() != ReaderSource.CURSOR){
+            throw new IllegalStateException( "migration.comments.storage=BUCKETED требует migration.step.book.source=CURSOR");
+        }
+        return stepBuilderFactory.get("stepBook")
+                .partitioner( "stepBookWorker", bookStepSettings().partitioner( jdbcTemplate, "books"))
+                .step( stepBookWorker)
+                .gridSize( bookStepSettings().getGridSize())
+                .taskExecutor( migrationTaskExecutor)
                 .build();
-        return stepBook;
     }
 }
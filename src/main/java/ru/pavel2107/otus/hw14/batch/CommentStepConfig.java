@@ -0,0 +1,129 @@
+package ru.pavel2107.otus.hw14.batch;
+
+import org.springframework.batch.core.*;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.step.tasklet.TaskletStep;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.batch.delta.DeltaWindow;
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.partition.ColumnRangePartitioner;
+import ru.pavel2107.otus.hw14.batch.reader.CommentBucketItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+import ru.pavel2107.otus.hw14.batch.writer.CommentBucketItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+import ru.pavel2107.otus.hw14.mongoDB.domain.CommentStorage;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+
+//
+// stepComments - комментарии сверх вложенных в книгу, пачками в коллекцию comments (CommentStorage.BUCKETED).
+// Делится на партиции по id книг, как stepBook, и от авторов / жанров не зависит - может идти параллельно stepBook
+//
+@Configuration
+@EnableBatchProcessing
+public class CommentStepConfig {
+
+    @Autowired private StepBuilderFactory stepBuilderFactory;
+    @Autowired private DataSource dataSource;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TaskExecutor migrationTaskExecutor;
+    @Autowired private MetricsStepListener stepMetricsListener;
+    @Autowired private DeadLetterSkipListener deadLetterListener;
+    @Value( "${migration.mongo.write-mode}") private MongoWriteMode writeMode;
+    @Value( "${migration.mongo.direct-encoding}") private boolean directEncoding;
+    @Value( "${migration.comments.storage}") private CommentStorage commentStorage;
+    @Value( "${migration.comments.embedded}") private int embeddedComments;
+    @Value( "${migration.comments.bucket-size}") private int bucketSize;
+
+    @Bean
+    @ConfigurationProperties( "migration.step.comments")
+    StepSettings commentsStepSettings(){
+        return new StepSettings();
+    }
+
+    @Bean
+    @StepScope
+    ItemStreamReader<MongoCommentBucket> readerComments( @Value( "#{stepExecutionContext['minValue']}") Long minId,
+                                                         @Value( "#{stepExecutionContext['maxValue']}") Long maxId,
+                                                         @Value( "#{stepExecutionContext['readerComments.last.id']}") Long lastId,
+                                                         @Value( "#{jobExecutionContext['delta.books.from']}") Long booksFrom,
+                                                         @Value( "#{jobExecutionContext['delta.books.to']}") Long booksTo,
+                                                         @Value( "#{jobExecutionContext['delta.comments.from']}") Long commentsFrom,
+                                                         @Value( "#{jobExecutionContext['delta.comments.to']}") Long commentsTo){
+        DeltaWindow books    = DeltaWindow.of( booksFrom, booksTo);
+        DeltaWindow comments = DeltaWindow.of( commentsFrom, commentsTo);
+        long fromId = KeysetCheckpointItemReader.resumeFrom( minId, lastId);
+        // EMBEDDED - все комментарии в книгах, пачек нет
+        int embedded = commentStorage == CommentStorage.BUCKETED ? embeddedComments : Integer.MAX_VALUE;
+
+        // UPSERT пишет поверх прошлых прогонов: у книг, ставших короткими, удаляются старые пачки
+        boolean terminators = writeMode == MongoWriteMode.UPSERT;
+        CommentBucketItemReader reader;
+        if( books == null || comments == null){
+            reader = new CommentBucketItemReader( dataSource, fromId, maxId, embedded, bucketSize, null, Arrays.asList(), terminators);
+        } else {
+            // измененные книги пересчитываются целиком
+            List<Object> args = new ArrayList<>();
+            String filter = BookStepConfig.changedBooks( books, comments, null, null, args);
+            reader = new CommentBucketItemReader( dataSource, fromId, maxId, embedded, bucketSize, filter, args, terminators);
+        }
+        reader.setFetchSize( commentsStepSettings().getFetchSize());
+        reader.setVerifyCursorPosition( commentsStepSettings().isVerifyCursorPosition());
+
+        // позиция - книга, все пачки которой записаны: перезапуск посреди книги пересчитывает ее с первой пачки
+        return commentsStepSettings().reader( reader, "readerComments", bucket ->
+                bucket.isLast() ? Long.parseLong( bucket.getBookId()) : Long.parseLong( bucket.getBookId()) - 1);
+    }
+
+    @Bean
+    ItemWriter writerComments(){
+        CommentBucketItemWriter writer = new CommentBucketItemWriter( mongoTemplate);
+        writer.setDirectEncoding( directEncoding);
+        return writer;
+    }
+
+    @Bean
+    public Step stepCommentsWorker( ItemStreamReader<MongoCommentBucket> readerComments, ItemWriter writerComments){
+        TaskletStep stepCommentsWorker = commentsStepSettings().chunk( stepBuilderFactory.get("stepCommentsWorker").listener( stepMetricsListener), deadLetterListener)
+                .reader( readerComments)
+                .writer( writerComments)
+                .listener( (ChunkListener) stepMetricsListener)
+                .listener( (ItemReadListener) stepMetricsListener)
+                .listener( (ItemWriteListener) stepMetricsListener)
+                .build();
+        return stepCommentsWorker;
+    }
+
+    @Bean
+    public Step stepComments( Step stepCommentsWorker, @Value( "${migration.job.stages}") String stages){
+        // без stepComments комментарии сверх вложенных молча не перенеслись бы
+        if( commentStorage == CommentStorage.BUCKETED && !Arrays.asList( stages.split( "[,|]")).stream().map( String::trim).anyMatch( "stepComments"::equals)){
+            throw new IllegalStateException( "migration.comments.storage=BUCKETED требует stepComments в migration.job.stages");
+        }
+
+        return stepBuilderFactory.get("stepComments")
+                .partitioner( "stepCommentsWorker", new ColumnRangePartitioner( jdbcTemplate, "books", "id"))
+                .step( stepCommentsWorker)
+                .gridSize( commentsStepSettings().getGridSize())
+                .taskExecutor( migrationTaskExecutor)
+                .build();
+    }
+}
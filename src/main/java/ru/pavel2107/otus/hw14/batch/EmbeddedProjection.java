@@ -0,0 +1,82 @@
+package ru.pavel2107.otus.hw14.batch;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoEmbeddedBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Превращает MongoBook в MongoEmbeddedBook, оставляя у автора и жанра только настроенные поля (id - всегда).
+// Если настроены все поля, вкладывается сам объект из кэша без копирования.
+//
+public class EmbeddedProjection {
+
+    private static final List<String> AUTHOR_FIELDS = Arrays.asList( "name", "birthDate", "email", "phone", "address");
+    private static final List<String> GENRE_FIELDS  = Arrays.asList( "name");
+
+    private final Set<String> authorFields;
+    private final Set<String> genreFields;
+
+    public EmbeddedProjection( List<String> authorFields, List<String> genreFields){
+        this.authorFields = checked( authorFields, AUTHOR_FIELDS);
+        this.genreFields  = checked( genreFields,  GENRE_FIELDS);
+    }
+
+    public MongoEmbeddedBook embed( MongoBook book){
+        MongoEmbeddedBook embedded = new MongoEmbeddedBook();
+        embedded.setId(               book.getId());
+        embedded.setName(             book.getName());
+        embedded.setAuthor(           author( book.getAuthor()));
+        embedded.setGenre(            genre( book.getGenre()));
+        embedded.setPublishingHouse(  book.getPublishingHouse());
+        embedded.setPublicationYear(  book.getPublicationYear());
+        embedded.setPublicationPlace( book.getPublicationPlace());
+        embedded.setIsbn(             book.getIsbn());
+        embedded.setComments(         book.getComments());
+        embedded.setCommentCount(     book.getCommentCount());
+        return embedded;
+    }
+
+    private MongoAuthor author( MongoAuthor author){
+        if( author == null || authorFields.size() == AUTHOR_FIELDS.size()){
+            return author;
+        }
+        MongoAuthor projection = new MongoAuthor();
+        projection.setId( author.getId());
+        if( authorFields.contains( "name"))      projection.setName(      author.getName());
+        if( authorFields.contains( "birthDate")) projection.setBirthDate( author.getBirthDate());
+        if( authorFields.contains( "email"))     projection.setEmail(     author.getEmail());
+        if( authorFields.contains( "phone"))     projection.setPhone(     author.getPhone());
+        if( authorFields.contains( "address"))   projection.setAddress(   author.getAddress());
+        return projection;
+    }
+
+    private MongoGenre genre( MongoGenre genre){
+        if( genre == null || genreFields.size() == GENRE_FIELDS.size()){
+            return genre;
+        }
+        MongoGenre projection = new MongoGenre();
+        projection.setId( genre.getId());
+        return projection;
+    }
+
+    private static Set<String> checked( List<String> fields, List<String> known){
+        Set<String> result = new HashSet<>();
+        for( String field : fields){
+            String name = field.trim();
+            if( name.isEmpty()){
+                continue;
+            }
+            if( !known.contains( name)){
+                throw new IllegalArgumentException( "Неизвестное поле " + name + ", допустимы " + known);
+            }
+            result.add( name);
+        }
+        return result;
+    }
+}
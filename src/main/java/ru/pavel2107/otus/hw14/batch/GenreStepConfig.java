@@ -1,26 +1,40 @@
 package ru.pavel2107.otus.hw14.batch;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
-import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
-import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
 import java.util.List;
 
+import ru.pavel2107.otus.hw14.batch.cache.FileReferenceLoader;
+import ru.pavel2107.otus.hw14.batch.cache.ReferenceCache;
+import ru.pavel2107.otus.hw14.batch.delta.DeltaWindow;
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.mapper.GenreRowMapper;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.ReaderSource;
+import ru.pavel2107.otus.hw14.batch.writer.MongoBulkItemWriter;
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
 import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
-import ru.pavel2107.otus.hw14.rdbms.domain.Genre;
 
 
 @Configuration
@@ -28,77 +42,91 @@ import ru.pavel2107.otus.hw14.rdbms.domain.Genre;
 public class GenreStepConfig {
     private final Logger logger = LoggerFactory.getLogger("Batch");
 
-    final private String SELECT_SQL = "select * from genre";
+    final private String SELECT_BY_ID_SQL = "select * from genre where id = ?";
 
     @Autowired private JobBuilderFactory jobBuilderFactory;
     @Autowired private StepBuilderFactory stepBuilderFactory;
     @Autowired private DataSource dataSource;
     @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TaskExecutor migrationTaskExecutor;
+    @Autowired private MetricsStepListener stepMetricsListener;
+    @Autowired private DeadLetterSkipListener deadLetterListener;
+    @Value( "${migration.mongo.write-mode}") private MongoWriteMode writeMode;
+    @Value( "${migration.mongo.direct-encoding}") private boolean directEncoding;
+    @Value( "${migration.cache.capacity}") private int cacheCapacity;
 
     @Bean
-    JdbcCursorItemReader<Genre> readerGenre(){
-        JdbcCursorItemReader<Genre> reader = new JdbcCursorItemReader<>();
-        reader.setDataSource( dataSource);
-        reader.setSql( SELECT_SQL);
-        reader.setRowMapper((resultSet, i) -> {
-            Genre genre = new Genre();
-            genre.setName( resultSet.getString( "name"));
-            genre.setId(   resultSet.getLong( "id"));
-            return genre;
-        });
-        return reader;
+    @ConfigurationProperties( "migration.step.genre")
+    StepSettings genreStepSettings(){
+        return new StepSettings();
     }
 
-   @Bean
-   ItemWriter writerGenre(){
-       return (ItemWriter<MongoGenre>) list -> {
-           for( int i = 0; i < list.size(); i++){
-               MongoGenre mongoGenre = list.get( i);
-               logger.info( "Записываем genre.id=" + mongoGenre.getId());
-               mongoTemplate.save( mongoGenre);
-           }
-       };
-   }
+    @Bean
+    @StepScope
+    ItemStreamReader<MongoGenre> readerGenre( @Value( "#{stepExecutionContext['minValue']}") Long minId,
+                                              @Value( "#{stepExecutionContext['maxValue']}") Long maxId,
+                                              @Value( "#{stepExecutionContext['readerGenre.last.id']}") Long lastId,
+                                              @Value( "#{jobExecutionContext['delta.genre.from']}") Long deltaFrom,
+                                              @Value( "#{jobExecutionContext['delta.genre.to']}") Long deltaTo){
+        List<Object> args = new ArrayList<>();
+        DeltaWindow window = DeltaWindow.of( deltaFrom, deltaTo);
+        String filter = window == null ? null : window.condition( "last_modified", args);
+
+        ItemStreamReader<MongoGenre> reader = genreStepSettings().source( dataSource, "genre", KeysetCheckpointItemReader.resumeFrom( minId, lastId), maxId,
+                filter, args, new GenreRowMapper());
+        return genreStepSettings().reader( reader, "readerGenre", genre -> Long.parseLong( genre.getId()));
+    }
 
-   @Bean
-    ItemProcessor processorGenre(){
-        return ( ItemProcessor<Genre, MongoGenre>) genre ->{
-            MongoGenre mongoGenre = new MongoGenre();
-            mongoGenre.setId(   genre.getId().toString());
-            mongoGenre.setName( genre.getName());
-            return mongoGenre;
-        };
+    //
+    // Жанры для шага книг: заполняется по мере записи stepGenre, промахи дочитываются из базы,
+    // при source=FILE - из выгрузки genre.csv по индексу id (база может быть пустой)
+    //
+    @Bean
+    ReferenceCache<MongoGenre> genreCache( MeterRegistry meterRegistry, FileReferenceLoader<MongoGenre> genreFileLoader){
+        return new ReferenceCache<>( "genre", cacheCapacity, genre -> Long.parseLong( genre.getId()), id -> {
+            if( genreStepSettings().getSource() == ReaderSource.FILE){
+                return genreFileLoader.apply( id);
+            }
+            List<MongoGenre> genres = jdbcTemplate.query( SELECT_BY_ID_SQL, new GenreRowMapper(), id);
+            return genres.isEmpty() ? null : genres.get( 0);
+        }, meterRegistry);
+    }
+
+    // выгрузка открывается и индексируется при первом промахе кэша
+    @Bean
+    FileReferenceLoader<MongoGenre> genreFileLoader(){
+        return new FileReferenceLoader<>( genreStepSettings().file( "genre"), new GenreRowMapper());
     }
 
     @Bean
-    public Step stepGenre( JdbcCursorItemReader<Genre> readerGenre, ItemWriter writerGenre, ItemProcessor processorGenre){
-        TaskletStep stepGenre = stepBuilderFactory.get("stepGenre")
-                .chunk(5)
+    ItemWriter writerGenre(){
+        MongoBulkItemWriter<MongoGenre> writer = new MongoBulkItemWriter<>( mongoTemplate, MongoGenre.class, writeMode);
+        writer.setDirectEncoding( directEncoding);
+        return writer;
+    }
+
+    @Bean
+    public Step stepGenreWorker( ItemStreamReader<MongoGenre> readerGenre, ItemWriter writerGenre,
+                                 ReferenceCache<MongoGenre> genreCache){
+        TaskletStep stepGenreWorker = genreStepSettings().chunk( stepBuilderFactory.get("stepGenreWorker").listener( stepMetricsListener), deadLetterListener)
                 .reader(readerGenre)
                 .writer( writerGenre)
-                .processor(processorGenre)
-                .listener(new ItemReadListener() {
-                    public void beforeRead() { logger.info("Начало чтения"); }
-                    public void afterRead(Object o) { logger.info("Конец чтения"); }
-                    public void onReadError(Exception e) { logger.info("Ошибка чтения"); }
-                })
-                .listener(new ItemWriteListener() {
-                    public void beforeWrite(List list) { logger.info("Начало записи"); }
-                    public void afterWrite(List list) { logger.info("Конец записи"); }
-                    public void onWriteError(Exception e, List list) { logger.info("Ошибка записи"); }
-                })
-                .listener(new ItemProcessListener() {
-                    public void beforeProcess(Object o) {logger.info("Начало обработки");}
-                    public void afterProcess(Object o, Object o2) {logger.info("Конец обработки");}
-                    public void onProcessError(Object o, Exception e) {logger.info("Ошбка обработки");}
-                })
-                .listener(new ChunkListener() {
-                    public void beforeChunk(ChunkContext chunkContext) {logger.info("Начало пачки");}
-                    public void afterChunk(ChunkContext chunkContext) {logger.info("Конец пачки");}
-                    public void afterChunkError(ChunkContext chunkContext) {logger.info("Ошибка пачки");}
-                })
+                .listener( (ItemWriteListener) genreCache)
+                .listener( (ChunkListener) stepMetricsListener)
+                .listener( (ItemReadListener) stepMetricsListener)
+                .listener( (ItemWriteListener) stepMetricsListener)
+                .build();
+        return stepGenreWorker;
+    }
 
+    @Bean
+    public Step stepGenre( Step stepGenreWorker){
+        return stepBuilderFactory.get("stepGenre")
+                .partitioner( "stepGenreWorker", genreStepSettings().partitioner( jdbcTemplate, "genre"))
+                .step( stepGenreWorker)
+                .gridSize( genreStepSettings().getGridSize())
+                .taskExecutor( migrationTaskExecutor)
                 .build();
-        return stepGenre;
     }
 }
@@ -0,0 +1,222 @@
+package ru.pavel2107.otus.hw14.batch;
+
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.bson.BsonSerializationException;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.AbstractCursorItemReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mapping.MappingException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import ru.pavel2107.otus.hw14.batch.mapper.RowMappingException;
+import ru.pavel2107.otus.hw14.batch.partition.ColumnRangePartitioner;
+import ru.pavel2107.otus.hw14.batch.reader.BookCommentsItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.CsvFileItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetPagingItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.PrefetchItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.ReaderSource;
+import ru.pavel2107.otus.hw14.batch.writer.MongoDocumentWriteException;
+
+//
+// Настройки шага миграции, задаются в application.properties как migration.step.<шаг>.*
+//
+// gridSize             - на сколько диапазонов id делится таблица (partition)
+// chunkSize            - записей в пачке; пачка - одна транзакция, т.е. это и commit interval
+// fetchSize            - строк за один сетевой проход курсора, 0 - по умолчанию драйвера
+// maxRows              - ограничение строк курсора, 0 - без ограничения
+// verifyCursorPosition - проверять, что row mapper не сдвинул курсор
+// source               - откуда читать строки: CURSOR, KEYSET (страницами по pageSize) или FILE
+//                        (выгрузка CSVWRITE <sourceDir>/<таблица>.csv), см. ReaderSource
+// prefetch             - чтение с опережением: сколько записей читать в отдельном потоке,
+//                        пока пишется предыдущая пачка; 0 - чтение в потоке шага
+// autoTune             - подбирать размер пачки по времени ее обработки:
+//                        стартует с chunkSize, держится в [minChunkSize, maxChunkSize]
+//                        и стремится к targetChunkDuration на пачку
+// skipLimit            - сколько записей шаг может пропустить (строка не разбирается, документ не пишется),
+//                        пропущенные уходят в migration_dead_letters; больше - шаг падает
+// retryLimit           - попыток обработки / записи пачки при временных ошибках Mongo (сеть, таймаут, смена primary),
+//                        между попытками пауза от retryInitialInterval с ростом в retryMultiplier раз до retryMaxInterval
+//
+// Шаг перезапускаемый: позиция reader'а - id последней записанной строки (KeysetCheckpointItemReader),
+// перезапущенная job продолжает каждую партицию с пачки, следующей за последней закоммиченной.
+//
+public @ToString class StepSettings {
+
+    // сеть, таймаут, выборы primary - пачка повторяется целиком
+    private static final List<Class<? extends Throwable>> TRANSIENT_ERRORS = Arrays.asList(
+            DataAccessResourceFailureException.class,
+            TransientDataAccessException.class,
+            MongoSocketException.class,
+            MongoTimeoutException.class,
+            MongoNotPrimaryException.class,
+            MongoNodeIsRecoveringException.class);
+
+    // ошибка конкретной записи - запись пропускается, остальные пишутся
+    private static final List<Class<? extends Throwable>> BAD_ITEM_ERRORS = Arrays.asList(
+            RowMappingException.class,
+            BsonSerializationException.class,
+            CodecConfigurationException.class,
+            MappingException.class,
+            MongoDocumentWriteException.class);
+
+    // те же классы для исключения, пришедшего не из шага (например, текстом от worker'а)
+    public static boolean isTransient( Throwable error){
+        return TRANSIENT_ERRORS.stream().anyMatch( type -> type.isInstance( error));
+    }
+
+    public static boolean isBadItem( Throwable error){
+        return BAD_ITEM_ERRORS.stream().anyMatch( type -> type.isInstance( error));
+    }
+
+    @Setter @Getter private int gridSize = 1;
+
+    @Setter @Getter private int chunkSize = 100;
+    @Setter @Getter private int fetchSize = 0;
+    @Setter @Getter private int maxRows = 0;
+    @Setter @Getter private boolean verifyCursorPosition = true;
+    @Setter @Getter private int prefetch = 0;
+
+    @Setter @Getter private ReaderSource source = ReaderSource.CURSOR;
+    @Setter @Getter private int pageSize = 1000;
+    @Setter @Getter private String sourceDir = "export";
+
+    @Setter @Getter private boolean autoTune = false;
+    @Setter @Getter private int minChunkSize = 10;
+    @Setter @Getter private int maxChunkSize = 10000;
+    @Setter @Getter private Duration targetChunkDuration = Duration.ofSeconds( 1);
+
+    @Setter @Getter private int skipLimit = 0;
+    @Setter @Getter private int retryLimit = 3;
+    @Setter @Getter private Duration retryInitialInterval = Duration.ofMillis( 500);
+    @Setter @Getter private Duration retryMaxInterval = Duration.ofSeconds( 30);
+    @Setter @Getter private double retryMultiplier = 2;
+
+    // пачка по настройкам (фиксированная или с подстройкой размера) с повтором и пропуском записей
+    public <I, O> SimpleStepBuilder<I, O> chunk( StepBuilder builder, SkipListener<? super I, ? super O> deadLetters){
+        SimpleStepBuilder<I, O> chunk;
+        if( !autoTune){
+            chunk = builder.chunk( chunkSize);
+        } else {
+            AdaptiveChunkCompletionPolicy policy =
+                    new AdaptiveChunkCompletionPolicy( chunkSize, minChunkSize, maxChunkSize, targetChunkDuration);
+            chunk = builder.chunk( policy);
+            chunk.listener( policy);
+        }
+
+        ExponentialBackOffPolicy backOff = new ExponentialBackOffPolicy();
+        backOff.setInitialInterval( retryInitialInterval.toMillis());
+        backOff.setMaxInterval(     retryMaxInterval.toMillis());
+        backOff.setMultiplier(      retryMultiplier);
+
+        FaultTolerantStepBuilder<I, O> faultTolerant = chunk.faultTolerant();
+        for( Class<? extends Throwable> transientError : TRANSIENT_ERRORS){
+            faultTolerant.retry( transientError);
+        }
+        for( Class<? extends Throwable> badItem : BAD_ITEM_ERRORS){
+            faultTolerant.skip( badItem);
+        }
+        return faultTolerant
+                .retryLimit( retryLimit)
+                .backOffPolicy( backOff)
+                .skipLimit( skipLimit)
+                .listener( deadLetters);
+    }
+
+    public void configure( AbstractCursorItemReader<?> reader){
+        reader.setFetchSize( fetchSize);
+        reader.setMaxRows( maxRows);
+        reader.setVerifyCursorPosition( verifyCursorPosition);
+        reader.setSaveState( false);
+    }
+
+    //
+    // reader строк table с id в [fromId, toId] по source, строки по возрастанию id.
+    // filter - дополнительное условие на колонки (null - нет), filterArgs - его параметры; с FILE не поддерживается
+    //
+    public <T> ItemStreamReader<T> source( DataSource dataSource, String table, long fromId, long toId,
+                                           String filter, List<Object> filterArgs, RowMapper<T> rowMapper){
+        if( source == ReaderSource.FILE){
+            if( filter != null){
+                throw new IllegalStateException( "source=FILE читает выгрузку целиком, migration.delta.incremental не поддерживается");
+            }
+            return new CsvFileItemReader<>( file( table), "id", fromId, toId, rowMapper);
+        }
+
+        List<Object> args = new ArrayList<>( Arrays.asList( fromId, toId));
+        String sql = "select * from " + table + " where id between ? and ?";
+        if( filter != null){
+            sql += " and (" + filter + ")";
+            args.addAll( filterArgs);
+        }
+        if( source == ReaderSource.KEYSET){
+            return new KeysetPagingItemReader<>( dataSource, sql, args, new String[]{ "id"}, rowMapper, pageSize);
+        }
+
+        JdbcCursorItemReader<T> reader = new JdbcCursorItemReader<>();
+        reader.setDataSource( dataSource);
+        reader.setSql( sql + " order by id");
+        reader.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( args.toArray()));
+        reader.setRowMapper( rowMapper);
+        configure( reader);
+        return reader;
+    }
+
+    //
+    // партиции шага по id таблицы; для FILE база может быть пустой - одна партиция на все id,
+    // выгрузка читается один раз
+    //
+    public Partitioner partitioner( JdbcTemplate jdbcTemplate, String table){
+        if( source == ReaderSource.FILE){
+            return gridSize -> ColumnRangePartitioner.single( 0, Long.MAX_VALUE);
+        }
+        return new ColumnRangePartitioner( jdbcTemplate, table, "id");
+    }
+
+    // файл выгрузки таблицы для source=FILE
+    public Path file( String table){
+        return Paths.get( sourceDir, table + ".csv");
+    }
+
+    public void configure( BookCommentsItemReader reader){
+        reader.setFetchSize( fetchSize);
+        reader.setMaxRows( maxRows);
+        reader.setVerifyCursorPosition( verifyCursorPosition);
+        reader.setSaveState( false);
+    }
+
+    //
+    // reader шага: чтение с опережением (если включено) и позиция по id записи (key) для перезапуска.
+    // name - имя позиции в контексте шага, <name>.last.id
+    //
+    public <T> ItemStreamReader<T> reader( ItemStreamReader<T> reader, String name, ToLongFunction<T> key){
+        ItemStreamReader<T> source = prefetch > 0 ? new PrefetchItemReader<>( reader, prefetch, name) : reader;
+        return new KeysetCheckpointItemReader<>( source, key, name);
+    }
+}
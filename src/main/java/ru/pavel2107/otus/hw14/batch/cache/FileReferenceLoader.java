@@ -0,0 +1,90 @@
+package ru.pavel2107.otus.hw14.batch.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+import ru.pavel2107.otus.hw14.batch.reader.CsvFileItemReader;
+
+//
+// Промахи ReferenceCache при source=FILE - из выгрузки справочника, база может быть пустой.
+// При первом промахе выгрузка (отсортированная по id) проходится один раз: запоминаются id и начало записей.
+// Дальше строка по id - двоичный поиск и разбор одной записи; id, которого в выгрузке нет, - только поиск,
+// так что ни книги со ссылкой в никуда, ни заполненный до capacity кэш не читают файл заново.
+// Обращения из потоков партиций - по очереди
+//
+public class FileReferenceLoader<V> implements LongFunction<V>, AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final Path         file;
+    private final RowMapper<V> rowMapper;
+
+    private CsvFileItemReader<V> reader;
+    private long[]               ids       = new long[ 1024];
+    private long[]               positions = new long[ 1024];
+    private int                  size;
+
+    public FileReferenceLoader( Path file, RowMapper<V> rowMapper){
+        this.file      = file;
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public synchronized V apply( long id){
+        if( reader == null){
+            open();
+        }
+        int i = Arrays.binarySearch( ids, 0, size, id);
+        if( i < 0){
+            return null;
+        }
+        try {
+            return reader.readAt( positions[ i]);
+        } catch( RuntimeException e){
+            throw e;
+        } catch( Exception e){
+            throw new ItemStreamException( "Не прочитать id=" + id + " из " + file, e);
+        }
+    }
+
+    private void open(){
+        CsvFileItemReader<V> reader = new CsvFileItemReader<>( file, "id", Long.MIN_VALUE, Long.MAX_VALUE, rowMapper);
+        reader.open( new ExecutionContext());
+        try {
+            reader.index( this::add);
+        } catch( RuntimeException e){
+            reader.close();
+            size = 0;
+            throw e;
+        }
+        this.reader = reader;
+        logger.info( "Выгрузка " + file + ": записей в индексе " + size);
+    }
+
+    private void add( long id, long position){
+        if( size > 0 && id <= ids[ size - 1]){
+            throw new IllegalStateException( "Выгрузка " + file + " не отсортирована по id: " + id + " после " + ids[ size - 1]);
+        }
+        if( size == ids.length){
+            ids       = Arrays.copyOf( ids, size * 2);
+            positions = Arrays.copyOf( positions, size * 2);
+        }
+        ids[ size]       = id;
+        positions[ size] = position;
+        size++;
+    }
+
+    @Override
+    public synchronized void close(){
+        if( reader != null){
+            reader.close();
+            reader = null;
+        }
+    }
+}
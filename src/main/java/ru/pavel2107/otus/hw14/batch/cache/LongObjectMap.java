@@ -0,0 +1,88 @@
+package ru.pavel2107.otus.hw14.batch.cache;
+
+import java.util.Arrays;
+
+//
+// Хеш-таблица с ключом long без упаковки в Long (открытая адресация, линейное пробирование).
+// Значения null не хранятся - пустая ячейка определяется по null в values.
+// Не потокобезопасна.
+//
+public class LongObjectMap<V> {
+
+    private long[]   keys;
+    private Object[] values;
+    private int      mask;
+    private int      size;
+
+    public LongObjectMap( int expectedSize){
+        int capacity = Integer.highestOneBit( Math.max( expectedSize, 4) * 2 - 1) << 1;
+        keys   = new long[ capacity];
+        values = new Object[ capacity];
+        mask   = capacity - 1;
+    }
+
+    @SuppressWarnings( "unchecked")
+    public V get( long key){
+        for( int i = index( key, mask); values[ i] != null; i = ( i + 1) & mask){
+            if( keys[ i] == key){
+                return (V) values[ i];
+            }
+        }
+        return null;
+    }
+
+    public void put( long key, V value){
+        if( value == null){
+            throw new IllegalArgumentException( "null values are not supported");
+        }
+        if( ( size + 1) * 2 > keys.length){
+            rehash( keys.length * 2);
+        }
+        if( insert( keys, values, mask, key, value)){
+            size++;
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public void clear(){
+        Arrays.fill( values, null);
+        size = 0;
+    }
+
+    private void rehash( int capacity){
+        long[]   newKeys   = new long[ capacity];
+        Object[] newValues = new Object[ capacity];
+        int      newMask   = capacity - 1;
+        for( int i = 0; i < keys.length; i++){
+            if( values[ i] != null){
+                insert( newKeys, newValues, newMask, keys[ i], values[ i]);
+            }
+        }
+        keys   = newKeys;
+        values = newValues;
+        mask   = newMask;
+    }
+
+    // true - добавлен новый ключ, false - заменено значение существующего
+    private static boolean insert( long[] keys, Object[] values, int mask, long key, Object value){
+        int i = index( key, mask);
+        while( values[ i] != null){
+            if( keys[ i] == key){
+                values[ i] = value;
+                return false;
+            }
+            i = ( i + 1) & mask;
+        }
+        keys[ i]   = key;
+        values[ i] = value;
+        return true;
+    }
+
+    private static int index( long key, int mask){
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) ( hash ^ ( hash >>> 32)) & mask;
+    }
+}
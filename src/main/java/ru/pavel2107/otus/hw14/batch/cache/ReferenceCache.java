@@ -0,0 +1,108 @@
+package ru.pavel2107.otus.hw14.batch.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
+
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+//
+// Ограниченный по размеру кэш справочника (авторы, жанры) по id.
+// Заполняется заранее из записанного шагом справочника (как ItemWriteListener этого шага)
+// или лениво через loader при промахе. После заполнения до capacity новые элементы не добавляются.
+// Попадания и промахи публикуются как migration.cache.hits / migration.cache.misses с тегом cache.
+//
+public class ReferenceCache<V> implements ItemWriteListener<V> {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final String              name;
+    private final int                 capacity;
+    private final ToLongFunction<V>   keyOf;
+    private final LongFunction<V>     loader;
+    private final LongObjectMap<V>    map;
+    private final ReadWriteLock       lock = new ReentrantReadWriteLock();
+    private boolean                   full;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ReferenceCache( String name, int capacity, ToLongFunction<V> keyOf, LongFunction<V> loader, MeterRegistry meterRegistry){
+        this.name     = name;
+        this.capacity = capacity;
+        this.keyOf    = keyOf;
+        this.loader   = loader;
+        this.map      = new LongObjectMap<>( Math.min( capacity, 1024));
+
+        Tags tags = Tags.of( "cache", name);
+        this.hits   = meterRegistry.counter( "migration.cache.hits",   tags);
+        this.misses = meterRegistry.counter( "migration.cache.misses", tags);
+        meterRegistry.gauge( "migration.cache.size", tags, this, ReferenceCache::size);
+    }
+
+    public V get( long id){
+        V value;
+        lock.readLock().lock();
+        try {
+            value = map.get( id);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if( value != null){
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = loader.apply( id);
+        if( value != null){
+            put( id, value);
+        }
+        return value;
+    }
+
+    public void put( long id, V value){
+        lock.writeLock().lock();
+        try {
+            if( map.size() < capacity || map.get( id) != null){
+                map.put( id, value);
+            } else if( !full){
+                full = true;
+                logger.info( "Кэш " + name + " заполнен (" + capacity + "), новые элементы читаются из базы");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return map.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void beforeWrite( List<? extends V> items) {
+    }
+
+    @Override
+    public void afterWrite( List<? extends V> items) {
+        for( V item : items){
+            put( keyOf.applyAsLong( item), item);
+        }
+    }
+
+    @Override
+    public void onWriteError( Exception exception, List<? extends V> items) {
+    }
+}
@@ -0,0 +1,140 @@
+package ru.pavel2107.otus.hw14.batch.delta;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+//
+// Удаляет из коллекций документы, строк которых больше нет в таблицах.
+// Обе стороны читаются потоком по id, упорядоченному как строка (в Mongo _id - строка),
+// и сливаются как merge join - в памяти только пачка id на удаление.
+// buckets: у удаленной книги удаляются и ее пачки комментариев (CommentStorage.BUCKETED, _id "<bookId>:<n>") -
+// по префиксу _id, т.е. по индексу _id. Удаляются при любом хранении: после смены на EMBEDDED пачки тоже лишние
+//
+public class DeleteSweepTasklet implements Tasklet {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final int DELETE_BATCH = 1000;
+
+    private final JdbcTemplate        jdbcTemplate;
+    private final MongoTemplate       mongoTemplate;
+    private final Map<String, String> collections;
+    private final Map<String, String> buckets;
+
+    // collections: таблица -> коллекция, buckets: таблица -> коллекция пачек комментариев ее документов
+    public DeleteSweepTasklet( JdbcTemplate jdbcTemplate, MongoTemplate mongoTemplate, Map<String, String> collections,
+                               Map<String, String> buckets){
+        this.jdbcTemplate  = jdbcTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.collections   = collections;
+        this.buckets       = buckets;
+    }
+
+    @Override
+    public RepeatStatus execute( StepContribution contribution, ChunkContext chunkContext) {
+        ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        for( Map.Entry<String, String> entry : collections.entrySet()){
+            String bucketCollection = buckets.get( entry.getKey());
+            Sweep sweep = new Sweep( mongoTemplate.getCollection( entry.getValue()),
+                                     bucketCollection == null ? null : mongoTemplate.getCollection( bucketCollection));
+            sweep( entry.getKey(), sweep);
+            contribution.incrementWriteCount( (int) sweep.deleted);
+            context.putLong( "deleted." + entry.getValue(), sweep.deleted);
+            logger.info( "Удалено из " + entry.getValue() + ": " + sweep.deleted);
+            if( bucketCollection != null){
+                context.putLong( "deleted." + bucketCollection, sweep.deletedBuckets);
+                logger.info( "Удалено из " + bucketCollection + ": " + sweep.deletedBuckets);
+            }
+        }
+        return RepeatStatus.FINISHED;
+    }
+
+    private void sweep( String table, Sweep sweep){
+        try( MongoCursor<Document> cursor = sweep.collection.find()
+                                                             .projection( new Document( "_id", 1))
+                                                             .sort( new Document( "_id", 1))
+                                                             .iterator()){
+            String[] target = { next( cursor)};
+
+            jdbcTemplate.query( "select cast(id as varchar) k from " + table + " order by k", resultSet -> {
+                String source = resultSet.getString( 1);
+                while( target[ 0] != null && target[ 0].compareTo( source) < 0){
+                    sweep.collect( target[ 0]);
+                    target[ 0] = next( cursor);
+                }
+                if( target[ 0] != null && target[ 0].equals( source)){
+                    target[ 0] = next( cursor);
+                }
+            });
+
+            while( target[ 0] != null){
+                sweep.collect( target[ 0]);
+                target[ 0] = next( cursor);
+            }
+        }
+        sweep.flush();
+    }
+
+    // документы с нестроковым _id миграция не создавала - их не трогаем
+    private static String next( MongoCursor<Document> cursor){
+        while( cursor.hasNext()){
+            Object id = cursor.next().get( "_id");
+            if( id instanceof String){
+                return (String) id;
+            }
+        }
+        return null;
+    }
+
+    // пачка id на удаление из коллекции и, если есть, их пачек комментариев
+    private static class Sweep {
+        final MongoCollection<Document> collection;
+        final MongoCollection<Document> buckets;
+        final List<String>              garbage = new ArrayList<>( DELETE_BATCH);
+        long deleted;
+        long deletedBuckets;
+
+        Sweep( MongoCollection<Document> collection, MongoCollection<Document> buckets){
+            this.collection = collection;
+            this.buckets    = buckets;
+        }
+
+        void collect( String id){
+            garbage.add( id);
+            if( garbage.size() >= DELETE_BATCH){
+                flush();
+            }
+        }
+
+        void flush(){
+            if( garbage.isEmpty()){
+                return;
+            }
+            deleted += collection.deleteMany( Filters.in( "_id", garbage)).getDeletedCount();
+            if( buckets != null){
+                // id книг - цифры, префиксный regex без экранирования идет по индексу _id
+                List<Bson> prefixes = new ArrayList<>( garbage.size());
+                for( String id : garbage){
+                    prefixes.add( Filters.regex( "_id", "^" + id + ":"));
+                }
+                deletedBuckets += buckets.deleteMany( Filters.or( prefixes)).getDeletedCount();
+            }
+            garbage.clear();
+        }
+    }
+}
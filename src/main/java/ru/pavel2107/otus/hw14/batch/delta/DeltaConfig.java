@@ -0,0 +1,60 @@
+package ru.pavel2107.otus.hw14.batch.delta;
+
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+@Configuration
+@EnableBatchProcessing
+public class DeltaConfig {
+
+    @Autowired private StepBuilderFactory stepBuilderFactory;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Value( "${migration.mongo.write-mode}") private MongoWriteMode writeMode;
+
+    @Bean
+    public HighWaterMarkListener highWaterMarkListener( @Value( "${migration.delta.incremental}") boolean incremental,
+                                                        @Value( "${migration.delta.safety-lag}") Duration lag){
+        // изменения дописываются поверх прошлой миграции, вставка упадет на существующих id
+        if( incremental && writeMode != MongoWriteMode.UPSERT){
+            throw new IllegalStateException( "migration.delta.incremental=true требует migration.mongo.write-mode=UPSERT");
+        }
+        return new HighWaterMarkListener( jdbcTemplate, mongoTemplate, Arrays.asList( "genre", "authors", "books", "comments"), incremental, lag);
+    }
+
+    //
+    // удаленные в H2 строки инкрементальное чтение не видит - их убирает этот шаг,
+    // подключается этапом в migration.job.stages
+    //
+    @Bean
+    public Step stepDeleteSweep(){
+        Map<String, String> collections = new LinkedHashMap<>();
+        collections.put( "books",   mongoTemplate.getCollectionName( MongoBook.class));
+        collections.put( "authors", mongoTemplate.getCollectionName( MongoAuthor.class));
+        collections.put( "genre",   mongoTemplate.getCollectionName( MongoGenre.class));
+        Map<String, String> buckets = Collections.singletonMap( "books", mongoTemplate.getCollectionName( MongoCommentBucket.class));
+
+        return stepBuilderFactory.get( "stepDeleteSweep")
+                .tasklet( new DeleteSweepTasklet( jdbcTemplate, mongoTemplate, collections, buckets))
+                .build();
+    }
+}
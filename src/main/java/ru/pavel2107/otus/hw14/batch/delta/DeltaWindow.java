@@ -0,0 +1,44 @@
+package ru.pavel2107.otus.hw14.batch.delta;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+//
+// Окно изменений таблицы для инкрементальной миграции: строки с from < last_modified <= to.
+// from - отметка прошлого успешного прогона (его to минус migration.delta.safety-lag), to - max(last_modified)
+// на момент старта job.
+// Границы лежат в ExecutionContext job под ключами delta.<таблица>.from / delta.<таблица>.to
+//
+public class DeltaWindow {
+
+    private final Timestamp from;
+    private final Timestamp to;
+
+    private DeltaWindow( long from, Long to){
+        this.from = new Timestamp( from);
+        this.to   = to == null ? null : new Timestamp( to);
+    }
+
+    // null - окна нет, таблица читается целиком (полная миграция или первый инкрементальный прогон)
+    public static DeltaWindow of( Long from, Long to){
+        return from == null ? null : new DeltaWindow( from, to);
+    }
+
+    public static String fromKey( String table){
+        return "delta." + table + ".from";
+    }
+
+    public static String toKey( String table){
+        return "delta." + table + ".to";
+    }
+
+    // условие на колонку с параметрами, аргументы добавляются в args в порядке параметров
+    public String condition( String column, List<Object> args){
+        args.add( from);
+        if( to == null){
+            return column + " > ?";
+        }
+        args.add( to);
+        return column + " > ? and " + column + " <= ?";
+    }
+}
@@ -0,0 +1,21 @@
+package ru.pavel2107.otus.hw14.batch.delta;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+//
+// Отметка инкрементальной миграции по таблице:
+// id - имя таблицы, lastModified - до какого last_modified строки уже перенесены
+//
+@Document( collection = "migration_marks")
+public @ToString class HighWaterMark {
+
+    @Setter @Getter @Id private String id;
+    @Setter @Getter private Date lastModified;
+    @Setter @Getter private Date updated;
+}
@@ -0,0 +1,87 @@
+package ru.pavel2107.otus.hw14.batch.delta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+//
+// Перед job фиксирует окна изменений по таблицам, после успешной job сохраняет новые отметки.
+// Отметки сохраняются всегда, а применяются к чтению только в инкрементальном режиме,
+// поэтому после полной миграции следующий инкрементальный прогон читает только изменения.
+// При перезапуске упавшей job окна берутся из ее ExecutionContext, а не считаются заново.
+// last_modified - время транзакции, а не коммита: транзакция, открытая на момент старта job, может закоммитить
+// строку со временем раньше to. Поэтому отметка сохраняется на lag раньше to, и следующее окно перекрывает
+// последние lag прошлого - такие строки перечитываются (UPSERT пишет их повторно без вреда).
+// lag должен быть больше самой долгой пишущей транзакции в H2
+//
+public class HighWaterMarkListener implements JobExecutionListener {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final String PREPARED_KEY = "delta.prepared";
+
+    private final JdbcTemplate  jdbcTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final List<String>  tables;
+    private final boolean       incremental;
+    private final Duration      lag;
+
+    public HighWaterMarkListener( JdbcTemplate jdbcTemplate, MongoTemplate mongoTemplate, List<String> tables, boolean incremental,
+                                  Duration lag){
+        this.jdbcTemplate  = jdbcTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.tables        = tables;
+        this.incremental   = incremental;
+        this.lag           = lag;
+    }
+
+    @Override
+    public void beforeJob( JobExecution jobExecution) {
+        ExecutionContext context = jobExecution.getExecutionContext();
+        if( context.containsKey( PREPARED_KEY)){
+            return;
+        }
+
+        for( String table : tables){
+            Timestamp max = jdbcTemplate.queryForObject( "select max(last_modified) from " + table, Timestamp.class);
+            if( max != null){
+                context.putLong( DeltaWindow.toKey( table), max.getTime());
+            }
+
+            HighWaterMark mark = incremental ? mongoTemplate.findById( table, HighWaterMark.class) : null;
+            if( mark != null){
+                context.putLong( DeltaWindow.fromKey( table), mark.getLastModified().getTime());
+            }
+            logger.info( "Таблица " + table + ": " + ( mark == null ? "полностью" : "изменения после " + mark.getLastModified()) + " по " + max);
+        }
+        context.putString( PREPARED_KEY, incremental ? "incremental" : "full");
+    }
+
+    @Override
+    public void afterJob( JobExecution jobExecution) {
+        if( jobExecution.getStatus() != BatchStatus.COMPLETED){
+            return;
+        }
+
+        ExecutionContext context = jobExecution.getExecutionContext();
+        for( String table : tables){
+            if( !context.containsKey( DeltaWindow.toKey( table))){
+                continue;
+            }
+            HighWaterMark mark = new HighWaterMark();
+            mark.setId( table);
+            mark.setLastModified( new Date( context.getLong( DeltaWindow.toKey( table)) - lag.toMillis()));
+            mark.setUpdated( new Date());
+            mongoTemplate.save( mark);
+        }
+    }
+}
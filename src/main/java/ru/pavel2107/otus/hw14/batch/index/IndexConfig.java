@@ -0,0 +1,66 @@
+package ru.pavel2107.otus.hw14.batch.index;
+
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Вторичные индексы строятся после загрузки, а не поддерживаются на каждой вставке:
+// stepCreateIndexes - последним этапом migration.job.stages,
+// stepDropIndexes   - первым этапом при полной перезаливке, чтобы загрузка шла без индексов
+//
+@Configuration
+@EnableBatchProcessing
+public class IndexConfig {
+
+    @Autowired private StepBuilderFactory stepBuilderFactory;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Value( "${migration.index.definitions}") private List<String> definitions;
+    @Value( "${migration.index.background}") private boolean background;
+
+    @Bean
+    public Step stepCreateIndexes(){
+        return stepBuilderFactory.get( "stepCreateIndexes")
+                .tasklet( new IndexTasklet( mongoTemplate, indexes(), true, background))
+                .build();
+    }
+
+    @Bean
+    public Step stepDropIndexes(){
+        return stepBuilderFactory.get( "stepDropIndexes")
+                .tasklet( new IndexTasklet( mongoTemplate, indexes(), false, background))
+                .build();
+    }
+
+    // ключи по свойствам класса документа коллекции - в имена полей, как их пишет converter
+    private List<IndexDefinition> indexes(){
+        QueryMapper mapper = new QueryMapper( mongoTemplate.getConverter());
+        List<IndexDefinition> indexes = new ArrayList<>();
+        for( String definition : definitions){
+            if( !definition.trim().isEmpty()){
+                IndexDefinition index = IndexDefinition.parse( definition);
+                indexes.add( index.withKeys( mapper.getMappedSort( index.getKeys(), entity( index.getCollection()))));
+            }
+        }
+        return indexes;
+    }
+
+    private MongoPersistentEntity<?> entity( String collection){
+        for( MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()){
+            if( entity.getCollection().equals( collection)){
+                return entity;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.pavel2107.otus.hw14.batch.index;
+
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+
+//
+// Индекс из строки настройки: коллекция:ключи[:опции]
+// ключи через +, -поле - по убыванию; опции через +: unique, sparse (документы без поля в индекс не попадают -
+// writer не пишет null-поля, так что unique+sparse допускает книги без isbn).
+// Например: books:isbn:unique+sparse, books:author+publicationYear, books:-comments.dateTime
+// Ключи - имена свойств классов документов, в имена полей их переводит IndexConfig (CompactFieldNamingStrategy).
+//
+public class IndexDefinition {
+
+    private final String   collection;
+    private final Document keys;
+    private final boolean  unique;
+    private final boolean  sparse;
+    private final String   name;
+
+    private IndexDefinition( String collection, Document keys, boolean unique, boolean sparse){
+        this.collection = collection;
+        this.keys       = keys;
+        this.unique     = unique;
+        this.sparse     = sparse;
+        // имя как у Mongo по умолчанию (isbn_1), по нему индекс и удаляется
+        StringBuilder name = new StringBuilder();
+        for( String key : keys.keySet()){
+            if( name.length() > 0){
+                name.append( '_');
+            }
+            name.append( key).append( '_').append( keys.get( key));
+        }
+        this.name = name.toString();
+    }
+
+    public static IndexDefinition parse( String definition){
+        String[] parts = definition.trim().split( ":");
+        if( parts.length < 2 || parts.length > 3){
+            throw new IllegalArgumentException( "Индекс " + definition + ": ожидается коллекция:ключи[:опции]");
+        }
+
+        boolean unique = false;
+        boolean sparse = false;
+        if( parts.length == 3){
+            for( String option : parts[ 2].split( "\\+")){
+                switch( option.trim()){
+                    case "unique": unique = true; break;
+                    case "sparse": sparse = true; break;
+                    default:
+                        throw new IllegalArgumentException( "Индекс " + definition + ": неизвестная опция " + option + ", допустимы unique, sparse");
+                }
+            }
+        }
+
+        Document keys = new Document();
+        for( String key : parts[ 1].split( "\\+")){
+            String field = key.trim();
+            if( field.startsWith( "-")){
+                keys.append( field.substring( 1), -1);
+            } else {
+                keys.append( field, 1);
+            }
+        }
+        return new IndexDefinition( parts[ 0].trim(), keys, unique, sparse);
+    }
+
+    // тот же индекс по другим ключам (имена полей в документе вместо имен свойств)
+    public IndexDefinition withKeys( Document keys){
+        return new IndexDefinition( collection, keys, unique, sparse);
+    }
+
+    // background - строить, не блокируя коллекцию (Mongo до 4.2, новые версии опцию игнорируют)
+    public IndexOptions options( boolean background){
+        return new IndexOptions().name( name).unique( unique).sparse( sparse).background( background);
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public Document getKeys() {
+        return keys;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return collection + "." + name + ( unique ? " unique" : "") + ( sparse ? " sparse" : "");
+    }
+}
@@ -0,0 +1,61 @@
+package ru.pavel2107.otus.hw14.batch.index;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+//
+// Создает (create = true) или удаляет настроенные вторичные индексы.
+// Оба действия повторяемы: существующий индекс с тем же описанием Mongo не пересоздает,
+// отсутствующий индекс при удалении пропускается - шаг можно перезапускать.
+//
+public class IndexTasklet implements Tasklet {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final int INDEX_NOT_FOUND = 27;
+    private static final int NS_NOT_FOUND    = 26;
+
+    private final MongoTemplate         mongoTemplate;
+    private final List<IndexDefinition> indexes;
+    private final boolean               create;
+    private final boolean               background;
+
+    public IndexTasklet( MongoTemplate mongoTemplate, List<IndexDefinition> indexes, boolean create, boolean background){
+        this.mongoTemplate = mongoTemplate;
+        this.indexes       = indexes;
+        this.create        = create;
+        this.background    = background;
+    }
+
+    @Override
+    public RepeatStatus execute( StepContribution contribution, ChunkContext chunkContext) {
+        for( IndexDefinition index : indexes){
+            MongoCollection<Document> collection = mongoTemplate.getCollection( index.getCollection());
+            long start = System.currentTimeMillis();
+            if( create){
+                collection.createIndex( index.getKeys(), index.options( background));
+                logger.info( "Индекс " + index + " построен за " + ( System.currentTimeMillis() - start) + " мс");
+            } else {
+                try{
+                    collection.dropIndex( index.getName());
+                    logger.info( "Индекс " + index + " удален");
+                } catch( MongoCommandException e){
+                    if( e.getErrorCode() != INDEX_NOT_FOUND && e.getErrorCode() != NS_NOT_FOUND){
+                        throw e;
+                    }
+                }
+            }
+            contribution.incrementWriteCount( 1);
+        }
+        return RepeatStatus.FINISHED;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.pavel2107.otus.hw14.batch.listener;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.Date;
+
+import ru.pavel2107.otus.hw14.batch.mapper.RowMappingException;
+
+//
+// Пропущенные шагом записи складываются в коллекцию migration_dead_letters:
+// шаг, фаза (read / process / write), класс и текст ошибки, сама запись (для чтения - ключ строки).
+// Разобрать их можно после миграции и перенести повторно, не перезапуская job.
+//
+public class DeadLetterSkipListener implements SkipListener<Object, Object> {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    public static final String COLLECTION = "migration_dead_letters";
+
+    private final MongoTemplate mongoTemplate;
+
+    public DeadLetterSkipListener( MongoTemplate mongoTemplate){
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void onSkipInRead( Throwable t) {
+        Object row = t instanceof RowMappingException ? ( (RowMappingException) t).getRow() : null;
+        save( "read", row, t);
+    }
+
+    @Override
+    public void onSkipInProcess( Object item, Throwable t) {
+        save( "process", mongoTemplate.getConverter().convertToMongoType( item), t);
+    }
+
+    @Override
+    public void onSkipInWrite( Object item, Throwable t) {
+        save( "write", mongoTemplate.getConverter().convertToMongoType( item), t);
+    }
+
+    private void save( String phase, Object item, Throwable t){
+        StepContext context = StepSynchronizationManager.getContext();
+        Document letter = new Document( "step", context == null ? null : context.getStepName())
+                .append( "phase",   phase)
+                .append( "error",   t.getClass().getName())
+                .append( "message", t.getMessage())
+                .append( "item",    item)
+                .append( "time",    new Date());
+        logger.warn( "Пропущена запись (" + phase + "): " + t.getMessage());
+        try{
+            mongoTemplate.getCollection( COLLECTION).insertOne( letter);
+        } catch( RuntimeException e){
+            // недоступный dead letter не должен ронять шаг, запись остается в логе
+            logger.error( "Не удалось сохранить пропущенную запись в " + COLLECTION + ": " + letter, e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ru.pavel2107.otus.hw14.batch.listener;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.pavel2107.otus.hw14.batch.progress.MigrationProgress;
+
+//
+// Метрики шагов вместо построчного логирования: таймеры (с гистограммой) чтения, обработки,
+// записи и пачки и счетчик ошибок, с тегами step и job. Доступны как actuator metrics migration.step.*
+//
+// Один экземпляр на все шаги: партиции идут в разных потоках, поэтому метры и замеры
+// текущего шага хранятся в ThreadLocal, который заполняется в beforeStep.
+// logItems - построчный лог в debug, только для отладки.
+// progress - длительности пачек и отметки скорости для endpoint'а migration, пишутся только на конце пачки.
+//
+public class MetricsStepListener implements StepExecutionListener, ChunkListener,
+        ItemReadListener<Object>, ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final MeterRegistry registry;
+    private final boolean       logItems;
+    private final MigrationProgress progress;
+    private final ThreadLocal<StepMeters> current = new ThreadLocal<>();
+
+    public MetricsStepListener( MeterRegistry registry, boolean logItems, MigrationProgress progress){
+        this.registry = registry;
+        this.logItems = logItems;
+        this.progress = progress;
+    }
+
+    @Override
+    public void beforeStep( StepExecution stepExecution) {
+        // у партиций имя step:partitionN - метрики сводим на шаг
+        String step = stepExecution.getStepName();
+        int partition = step.indexOf( ':');
+        if( partition > 0){
+            step = step.substring( 0, partition);
+        }
+        current.set( new StepMeters( Tags.of( "step", step, "job", stepExecution.getJobExecution().getJobInstance().getJobName())));
+        progress.started( stepExecution);
+    }
+
+    @Override
+    public ExitStatus afterStep( StepExecution stepExecution) {
+        current.remove();
+        return null;
+    }
+
+    @Override
+    public void beforeChunk( ChunkContext context) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.chunkStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterChunk( ChunkContext context) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            long nanos = System.nanoTime() - meters.chunkStart;
+            meters.chunk.record( nanos, TimeUnit.NANOSECONDS);
+            progress.chunk( context.getStepContext().getStepExecution(), nanos);
+        }
+    }
+
+    @Override
+    public void afterChunkError( ChunkContext context) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.errors( "chunk").increment();
+        }
+    }
+
+    @Override
+    public void beforeRead() {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.readStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterRead( Object item) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.read.record( System.nanoTime() - meters.readStart, TimeUnit.NANOSECONDS);
+        }
+        if( logItems){
+            logger.debug( "Прочитано: " + item);
+        }
+    }
+
+    @Override
+    public void onReadError( Exception ex) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.errors( "read").increment();
+        }
+    }
+
+    @Override
+    public void beforeProcess( Object item) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.processStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterProcess( Object item, Object result) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.process.record( System.nanoTime() - meters.processStart, TimeUnit.NANOSECONDS);
+        }
+        if( logItems){
+            logger.debug( "Обработано: " + result);
+        }
+    }
+
+    @Override
+    public void onProcessError( Object item, Exception e) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.errors( "process").increment();
+        }
+    }
+
+    @Override
+    public void beforeWrite( List<?> items) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.writeStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterWrite( List<?> items) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.write.record( System.nanoTime() - meters.writeStart, TimeUnit.NANOSECONDS);
+        }
+        if( logItems){
+            logger.debug( "Записано: " + items.size());
+        }
+    }
+
+    @Override
+    public void onWriteError( Exception exception, List<?> items) {
+        StepMeters meters = current.get();
+        if( meters != null){
+            meters.errors( "write").increment();
+        }
+    }
+
+    //
+    // метры и начала замеров текущего шага в потоке
+    //
+    private class StepMeters {
+        private final Tags  tags;
+        private final Timer read;
+        private final Timer process;
+        private final Timer write;
+        private final Timer chunk;
+
+        private long readStart;
+        private long processStart;
+        private long writeStart;
+        private long chunkStart;
+
+        private StepMeters( Tags tags){
+            this.tags    = tags;
+            this.read    = timer( "migration.step.read",    "Чтение записи");
+            this.process = timer( "migration.step.process", "Обработка записи");
+            this.write   = timer( "migration.step.write",   "Запись пачки");
+            this.chunk   = timer( "migration.step.chunk",   "Пачка целиком");
+        }
+
+        private Timer timer( String name, String description){
+            return Timer.builder( name)
+                    .description( description)
+                    .tags( tags)
+                    .publishPercentileHistogram()
+                    .register( registry);
+        }
+
+        private Counter errors( String phase){
+            return registry.counter( "migration.step.errors", tags.and( "phase", phase));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+
+//
+// строка authors -> MongoAuthor
+//
+public class AuthorRowMapper extends IndexedRowMapper<MongoAuthor> {
+
+    private static final int ID         = 0;
+    private static final int NAME       = 1;
+    private static final int BIRTH_DATE = 2;
+    private static final int EMAIL      = 3;
+    private static final int PHONE      = 4;
+    private static final int ADDRESS    = 5;
+
+    public AuthorRowMapper(){
+        super( "id", "name", "birthdate", "email", "phone", "address");
+    }
+
+    @Override
+    protected MongoAuthor map( ResultSet resultSet, int[] column) throws SQLException {
+        Date birthDate = resultSet.getDate( column[ BIRTH_DATE]);
+
+        MongoAuthor author = new MongoAuthor();
+        author.setId(        resultSet.getString( column[ ID]));
+        author.setName(      resultSet.getString( column[ NAME]));
+        author.setBirthDate( birthDate == null ? null : birthDate.toLocalDate());
+        author.setEmail(     resultSet.getString( column[ EMAIL]));
+        author.setPhone(     resultSet.getString( column[ PHONE]));
+        author.setAddress(   resultSet.getString( column[ ADDRESS]));
+        return author;
+    }
+}
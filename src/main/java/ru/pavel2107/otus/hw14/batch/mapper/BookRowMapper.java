@@ -0,0 +1,65 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.LongFunction;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// строка books -> MongoBook без комментариев;
+// автор и жанр берутся по id из authors / genres (кэши шага) - промежуточных ссылок не создается;
+// автора или жанра с таким id нет (выгрузка без строки справочника) - RowMappingException, книга пропускается
+//
+public class BookRowMapper extends IndexedRowMapper<MongoBook> {
+
+    private static final int ID        = 0;
+    private static final int NAME      = 1;
+    private static final int PUB_HOUSE = 2;
+    private static final int PUB_PLACE = 3;
+    private static final int ISBN      = 4;
+    private static final int PUB_YEAR  = 5;
+    private static final int AUTHOR_ID = 6;
+    private static final int GENRE_ID  = 7;
+
+    private final LongFunction<MongoAuthor> authors;
+    private final LongFunction<MongoGenre>  genres;
+
+    public BookRowMapper( LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres){
+        super( "id", "name", "pub_house", "pub_place", "isbn", "pub_year", "author_id", "genre_id");
+        this.authors = authors;
+        this.genres  = genres;
+    }
+
+    @Override
+    protected MongoBook map( ResultSet resultSet, int[] column) throws SQLException {
+        MongoBook book = new MongoBook();
+        book.setId(               resultSet.getString( column[ ID]));
+        book.setName(             resultSet.getString( column[ NAME]));
+        book.setPublishingHouse(  resultSet.getString( column[ PUB_HOUSE]));
+        book.setPublicationPlace( resultSet.getString( column[ PUB_PLACE]));
+        book.setIsbn(             resultSet.getString( column[ ISBN]));
+
+        int year = resultSet.getInt( column[ PUB_YEAR]);
+        book.setPublicationYear( resultSet.wasNull() ? null : year);
+
+        long authorId = resultSet.getLong( column[ AUTHOR_ID]);
+        if( !resultSet.wasNull()){
+            book.setAuthor( reference( authors.apply( authorId), "автора", authorId));
+        }
+        long genreId = resultSet.getLong( column[ GENRE_ID]);
+        if( !resultSet.wasNull()){
+            book.setGenre( reference( genres.apply( genreId), "жанра", genreId));
+        }
+        return book;
+    }
+
+    private static <T> T reference( T value, String what, long id){
+        if( value == null){
+            throw new IllegalStateException( "нет " + what + " id=" + id);
+        }
+        return value;
+    }
+}
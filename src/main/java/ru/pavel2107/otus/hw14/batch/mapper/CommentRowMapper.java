@@ -0,0 +1,56 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+
+//
+// строка comments -> MongoComment вместе с id книги, по которому комментарий сливается с книгами,
+// и своим id - позицией в порядке book_id, id
+//
+public class CommentRowMapper extends IndexedRowMapper<CommentRowMapper.BookComment> {
+
+    private static final int BOOK_ID   = 0;
+    private static final int NAME      = 1;
+    private static final int DATE_TIME = 2;
+    private static final int COMMENT   = 3;
+    private static final int ID        = 4;
+
+    public CommentRowMapper(){
+        super( "book_id", "name", "datetime", "comment", "id");
+    }
+
+    @Override
+    protected BookComment map( ResultSet resultSet, int[] column) throws SQLException {
+        MongoComment comment = new MongoComment();
+        comment.setName(     resultSet.getString( column[ NAME]));
+        comment.setDateTime( resultSet.getTimestamp( column[ DATE_TIME]).toLocalDateTime());
+        comment.setComment(  resultSet.getString( column[ COMMENT]));
+        return new BookComment( resultSet.getLong( column[ ID]), resultSet.getLong( column[ BOOK_ID]), comment);
+    }
+
+    public static class BookComment {
+        private final long         id;
+        private final long         bookId;
+        private final MongoComment comment;
+
+        public BookComment( long id, long bookId, MongoComment comment){
+            this.id      = id;
+            this.bookId  = bookId;
+            this.comment = comment;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getBookId() {
+            return bookId;
+        }
+
+        public MongoComment getComment() {
+            return comment;
+        }
+    }
+}
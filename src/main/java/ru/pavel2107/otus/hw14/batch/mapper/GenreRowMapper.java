@@ -0,0 +1,27 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// строка genre -> MongoGenre
+//
+public class GenreRowMapper extends IndexedRowMapper<MongoGenre> {
+
+    private static final int ID   = 0;
+    private static final int NAME = 1;
+
+    public GenreRowMapper(){
+        super( "id", "name");
+    }
+
+    @Override
+    protected MongoGenre map( ResultSet resultSet, int[] column) throws SQLException {
+        MongoGenre genre = new MongoGenre();
+        genre.setId(   resultSet.getString( column[ ID]));
+        genre.setName( resultSet.getString( column[ NAME]));
+        return genre;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+//
+// Row mapper с обращением к колонкам по номеру: номера колонок ищутся по именам один раз
+// на ResultSet (курсор партиции, запрос кэша), дальше каждая строка читается без поиска по имени.
+// Экземпляр держит номера колонок текущего ResultSet - один mapper на один reader.
+// Ошибка разбора строки - RowMappingException с первой колонкой (ключом) строки.
+//
+public abstract class IndexedRowMapper<T> implements RowMapper<T> {
+
+    private final String[] columns;
+
+    private ResultSet resultSet;
+    private int[]     indexes;
+
+    protected IndexedRowMapper( String... columns){
+        this.columns = columns;
+    }
+
+    @Override
+    public T mapRow( ResultSet resultSet, int rowNum) throws SQLException {
+        if( resultSet != this.resultSet){
+            int[] indexes = new int[ columns.length];
+            for( int i = 0; i < columns.length; i++){
+                indexes[ i] = resultSet.findColumn( columns[ i]);
+            }
+            this.indexes   = indexes;
+            this.resultSet = resultSet;
+        }
+        try{
+            return map( resultSet, indexes);
+        } catch( SQLException | RuntimeException e){
+            throw new RowMappingException( row( resultSet), e);
+        }
+    }
+
+    private String row( ResultSet resultSet){
+        try{
+            return columns[ 0] + "=" + resultSet.getString( indexes[ 0]);
+        } catch( SQLException e){
+            return columns[ 0] + "=?";
+        }
+    }
+
+    // column[ i] - номер в ResultSet i-й колонки из конструктора
+    protected abstract T map( ResultSet resultSet, int[] column) throws SQLException;
+}
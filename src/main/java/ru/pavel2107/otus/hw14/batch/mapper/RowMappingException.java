@@ -0,0 +1,19 @@
+package ru.pavel2107.otus.hw14.batch.mapper;
+
+//
+// Строку не удалось разобрать. Курсор при этом уже на следующей строке,
+// так что шаг может пропустить строку (skip) и читать дальше; row - ключ строки для dead letter
+//
+public class RowMappingException extends RuntimeException {
+
+    private final String row;
+
+    public RowMappingException( String row, Throwable cause){
+        super( "Ошибка разбора строки " + row + ": " + cause.getMessage(), cause);
+        this.row = row;
+    }
+
+    public String getRow() {
+        return row;
+    }
+}
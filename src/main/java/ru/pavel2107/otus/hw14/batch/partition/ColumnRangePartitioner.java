@@ -0,0 +1,69 @@
+package ru.pavel2107.otus.hw14.batch.partition;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//
+// Делит диапазон значений колонки (обычно id) на gridSize непересекающихся отрезков [minValue, maxValue].
+// Каждый отрезок получает свой ExecutionContext, по нему рабочий шаг читает и перезапускается.
+//
+public class ColumnRangePartitioner implements Partitioner {
+
+    public static final String MIN_VALUE = "minValue";
+    public static final String MAX_VALUE = "maxValue";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String       table;
+    private final String       column;
+
+    public ColumnRangePartitioner( JdbcTemplate jdbcTemplate, String table, String column){
+        this.jdbcTemplate = jdbcTemplate;
+        this.table        = table;
+        this.column       = column;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition( int gridSize) {
+        final String SELECT_RANGE_SQL = "select min(" + column + "), max(" + column + ") from " + table;
+
+        long[] range = jdbcTemplate.queryForObject( SELECT_RANGE_SQL, (resultSet, i) -> {
+            long min = resultSet.getLong( 1);
+            return resultSet.wasNull() ? null : new long[]{ min, resultSet.getLong( 2)};
+        });
+
+        if( range == null){
+            // пустая таблица - один пустой отрезок, чтобы шаг отработал штатно
+            return single( 1, 0);
+        }
+
+        Map<String, ExecutionContext> result = new HashMap<>();
+        long min = range[ 0];
+        long max = range[ 1];
+        long targetSize = ( max - min) / Math.max( gridSize, 1) + 1;
+
+        int number = 0;
+        for( long start = min; start <= max; start += targetSize){
+            result.put( "partition" + number, context( start, Math.min( start + targetSize - 1, max)));
+            number++;
+        }
+        return result;
+    }
+
+    // один отрезок [minValue, maxValue]
+    public static Map<String, ExecutionContext> single( long minValue, long maxValue){
+        Map<String, ExecutionContext> result = new HashMap<>();
+        result.put( "partition0", context( minValue, maxValue));
+        return result;
+    }
+
+    private static ExecutionContext context( long minValue, long maxValue){
+        ExecutionContext context = new ExecutionContext();
+        context.putLong( MIN_VALUE, minValue);
+        context.putLong( MAX_VALUE, maxValue);
+        return context;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.pavel2107.otus.hw14.batch.processor;
+
+import org.springframework.batch.item.ItemProcessor;
+
+import ru.pavel2107.otus.hw14.batch.EmbeddedProjection;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBookView;
+
+//
+// Документ книги собирает reader (BookRowMapper + комментарии), здесь - только раскладка:
+// DBREF - как есть, EMBEDDED - с вложенными автором и жанром
+//
+public class BookItemProcessor implements ItemProcessor<MongoBook, MongoBookView> {
+
+    private final BookLayout         layout;
+    private final EmbeddedProjection projection;
+
+    public BookItemProcessor( BookLayout layout, EmbeddedProjection projection){
+        this.layout     = layout;
+        this.projection = projection;
+    }
+
+    @Override
+    public MongoBookView process( MongoBook book) {
+        return layout == BookLayout.EMBEDDED ? projection.embed( book) : book;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.pavel2107.otus.hw14.batch.progress;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.Map;
+
+//
+// actuator endpoint migration: прогресс идущей (или последней) job в этой JVM по шагам и партициям.
+// По JMX - сразу (org.springframework.boot:type=Endpoint,name=Migration), по HTTP - /actuator/migration
+// при подключенном spring-boot-starter-web
+//
+@Endpoint( id = "migration")
+public class MigrationEndpoint {
+
+    private final MigrationProgress progress;
+
+    public MigrationEndpoint( MigrationProgress progress){
+        this.progress = progress;
+    }
+
+    @ReadOperation
+    public Map<String, Object> progress(){
+        return progress.report();
+    }
+}
@@ -0,0 +1,201 @@
+package ru.pavel2107.otus.hw14.batch.progress;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.pavel2107.otus.hw14.batch.partition.ColumnRangePartitioner;
+import ru.pavel2107.otus.hw14.batch.reader.KeysetCheckpointItemReader;
+
+//
+// Прогресс текущей job в этой JVM для endpoint'а migration.
+// Счетчики read / write / skip - из самих StepExecution (Spring Batch ведет их по пачкам),
+// сюда на конец каждой пачки (MetricsStepListener.afterChunk) добавляются только длительность пачки
+// и отметка для скорости - на отдельные записи ничего не вешается.
+// Пройденная доля партиции - по ее позиции <reader>.last.id в диапазоне [minValue, maxValue],
+// поэтому известна и у партиций, продолженных после перезапуска.
+// Все партиции шага создаются заранее в JobExecution, еще не начатые видны со статусом STARTING
+//
+public class MigrationProgress {
+
+    private final Map<Long, PartitionSamples> samples = new ConcurrentHashMap<>();
+    private volatile JobExecution jobExecution;
+
+    public void started( StepExecution stepExecution) {
+        JobExecution job = stepExecution.getJobExecution();
+        JobExecution current = jobExecution;
+        if( current == null || !current.getId().equals( job.getId())){
+            synchronized ( this){
+                if( jobExecution == null || !jobExecution.getId().equals( job.getId())){
+                    samples.clear();
+                    jobExecution = job;
+                }
+            }
+        }
+        samples.computeIfAbsent( stepExecution.getId(), id -> new PartitionSamples());
+    }
+
+    public void chunk( StepExecution stepExecution, long nanos) {
+        PartitionSamples partition = samples.get( stepExecution.getId());
+        if( partition != null){
+            partition.chunk( nanos, System.nanoTime(), stepExecution.getWriteCount(), passed( stepExecution));
+        }
+    }
+
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        JobExecution job = jobExecution;
+        if( job == null){
+            report.put( "status", "NO_RUN");
+            return report;
+        }
+
+        Map<String, List<StepExecution>> workers = new TreeMap<>();
+        Map<String, String>              other   = new LinkedHashMap<>();
+        for( StepExecution step : job.getStepExecutions()){
+            String name = step.getStepName();
+            int partition = name.indexOf( ':');
+            if( partition > 0){
+                workers.computeIfAbsent( name.substring( 0, partition), key -> new ArrayList<>()).add( step);
+            } else {
+                other.put( name, step.getStatus().toString());
+            }
+        }
+
+        long now = System.nanoTime();
+        List<StepProgress> steps = new ArrayList<>();
+        for( Map.Entry<String, List<StepExecution>> worker : workers.entrySet()){
+            steps.add( step( worker.getKey(), worker.getValue(), now));
+        }
+
+        report.put( "job",         job.getJobInstance().getJobName());
+        report.put( "executionId", job.getId());
+        report.put( "status",      job.getStatus().toString());
+        report.put( "startTime",   job.getStartTime());
+        report.put( "steps",       steps);
+        report.put( "otherSteps",  other);
+        return report;
+    }
+
+    private StepProgress step( String name, List<StepExecution> executions, long now){
+        executions.sort( Comparator.comparing( StepExecution::getStepName));
+        List<StepProgress> partitions = new ArrayList<>();
+        List<long[]>       latencies  = new ArrayList<>();
+        long   read = 0, written = 0, skipped = 0, span = 0, passed = 0;
+        double rows = 0, ids = 0;
+        boolean running = false, done = true;
+        for( StepExecution execution : executions){
+            PartitionSamples partition = samples.get( execution.getId());
+            double[] rates     = partition == null ? new double[]{ 0, 0} : partition.rates( now);
+            long[]   latency   = partition == null ? new long[ 0]        : partition.latencies();
+            long     total     = span( execution);
+            long     completed = passed( execution);
+            boolean  active    = execution.getStatus() == BatchStatus.STARTED;
+
+            StepProgress progress = counters( execution.getStepName(), execution.getStatus(), execution.getReadCount(), execution.getWriteCount(),
+                                              execution.getSkipCount(), active ? rates[ 0] : 0, completed, total, active ? rates[ 1] : 0, latency);
+            partitions.add( progress);
+
+            read    += execution.getReadCount();
+            written += execution.getWriteCount();
+            skipped += execution.getSkipCount();
+            span    += total;
+            passed  += completed;
+            latencies.add( latency);
+            if( active){
+                rows += rates[ 0];
+                ids  += rates[ 1];
+                running = true;
+            }
+            done &= execution.getStatus() == BatchStatus.COMPLETED;
+        }
+
+        BatchStatus status = done ? BatchStatus.COMPLETED : running ? BatchStatus.STARTED : executions.get( 0).getStatus();
+        StepProgress step = counters( name, status, read, written, skipped, rows, passed, span, ids, merge( latencies));
+        step.setPartitions( partitions);
+        return step;
+    }
+
+    private static StepProgress counters( String name, BatchStatus status, long read, long written, long skipped,
+                                          double rowsPerSecond, long passed, long span, double idsPerSecond, long[] latencies){
+        StepProgress progress = new StepProgress();
+        progress.setName(          name);
+        progress.setStatus(        status.toString());
+        progress.setRead(          read);
+        progress.setWritten(       written);
+        progress.setSkipped(       skipped);
+        progress.setRowsPerSecond( Math.round( rowsPerSecond * 10) / 10.0);
+        progress.setProgress(      span == 0 ? ( status == BatchStatus.COMPLETED ? 1 : 0) : Math.round( passed * 10000.0 / span) / 10000.0);
+        if( status == BatchStatus.COMPLETED){
+            progress.setEtaSeconds( 0L);
+        } else if( idsPerSecond > 0){
+            progress.setEtaSeconds( (long) Math.ceil( ( span - passed) / idsPerSecond));
+        }
+        progress.setChunkLatencyMs( percentiles( latencies));
+        return progress;
+    }
+
+    // пройдено id партиции: до позиции reader'а включительно, у завершенной - весь диапазон
+    private static long passed( StepExecution execution){
+        if( execution.getStatus() == BatchStatus.COMPLETED){
+            return span( execution);
+        }
+        ExecutionContext context = execution.getExecutionContext();
+        if( !context.containsKey( ColumnRangePartitioner.MIN_VALUE)){
+            return 0;
+        }
+        for( Map.Entry<String, Object> entry : context.entrySet()){
+            if( entry.getKey().endsWith( KeysetCheckpointItemReader.LAST_ID) && entry.getValue() instanceof Long){
+                return Math.min( (Long) entry.getValue() - context.getLong( ColumnRangePartitioner.MIN_VALUE) + 1, span( execution));
+            }
+        }
+        return 0;
+    }
+
+    private static long span( StepExecution execution){
+        ExecutionContext context = execution.getExecutionContext();
+        if( !context.containsKey( ColumnRangePartitioner.MIN_VALUE) || !context.containsKey( ColumnRangePartitioner.MAX_VALUE)){
+            return 0;
+        }
+        return Math.max( context.getLong( ColumnRangePartitioner.MAX_VALUE) - context.getLong( ColumnRangePartitioner.MIN_VALUE) + 1, 0);
+    }
+
+    private static long[] merge( List<long[]> latencies){
+        long[] merged = new long[ latencies.stream().mapToInt( latency -> latency.length).sum()];
+        int offset = 0;
+        for( long[] latency : latencies){
+            System.arraycopy( latency, 0, merged, offset, latency.length);
+            offset += latency.length;
+        }
+        return merged;
+    }
+
+    private static Map<String, Double> percentiles( long[] latencies){
+        if( latencies.length == 0){
+            return null;
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort( sorted);
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put( "p50", millis( sorted, 0.50));
+        result.put( "p95", millis( sorted, 0.95));
+        result.put( "p99", millis( sorted, 0.99));
+        result.put( "max", millis( sorted, 1));
+        return result;
+    }
+
+    private static double millis( long[] sorted, double quantile){
+        int rank = (int) Math.ceil( quantile * sorted.length) - 1;
+        return Math.round( sorted[ Math.max( rank, 0)] / 1e5) / 10.0;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.pavel2107.otus.hw14.batch.progress;
+
+import java.util.Arrays;
+
+//
+// Замеры одной партиции (StepExecution) по концам пачек: длительности последних LATENCIES пачек
+// и последние RATES отметок (время, записано, пройдено id) - по ним скорость "сейчас", а не средняя с начала.
+// Пишет только поток партиции, раз на пачку; читает endpoint - под тем же монитором
+//
+class PartitionSamples {
+
+    private static final int LATENCIES = 256;
+    private static final int RATES     = 16;
+
+    private final long[] latencies = new long[ LATENCIES];
+    private final long[] times     = new long[ RATES];
+    private final long[] written   = new long[ RATES];
+    private final long[] passed    = new long[ RATES];
+
+    private int chunks;
+    private int samples;
+
+    synchronized void chunk( long nanos, long now, long writeCount, long idsPassed){
+        latencies[ chunks++ % LATENCIES] = nanos;
+        int i = samples++ % RATES;
+        times[ i]   = now;
+        written[ i] = writeCount;
+        passed[ i]  = idsPassed;
+    }
+
+    // записей в секунду и id в секунду между самой старой отметкой окна и now, по последнее известное значение
+    synchronized double[] rates( long now){
+        if( samples == 0){
+            return new double[]{ 0, 0};
+        }
+        int newest = ( samples - 1) % RATES;
+        int oldest = samples < RATES ? 0 : samples % RATES;
+        double seconds = ( now - times[ oldest]) / 1e9;
+        if( oldest == newest || seconds <= 0){
+            return new double[]{ 0, 0};
+        }
+        return new double[]{ ( written[ newest] - written[ oldest]) / seconds, ( passed[ newest] - passed[ oldest]) / seconds};
+    }
+
+    synchronized long[] latencies(){
+        return Arrays.copyOf( latencies, Math.min( chunks, LATENCIES));
+    }
+}
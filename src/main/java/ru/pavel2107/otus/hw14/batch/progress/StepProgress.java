@@ -0,0 +1,32 @@
+package ru.pavel2107.otus.hw14.batch.progress;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Map;
+
+//
+// Прогресс рабочего шага или одной его партиции
+//
+// progress      - доля пройденного диапазона id, 0..1
+// rowsPerSecond - записано в секунду за последние пачки (у шага - сумма по идущим партициям)
+// etaSeconds    - оставшийся диапазон id / текущая скорость прохода id, null - еще нечего оценивать
+// chunkLatencyMs - p50, p95, p99, max длительности последних пачек
+//
+@JsonInclude( JsonInclude.Include.NON_NULL)
+public @ToString class StepProgress {
+
+    @Setter @Getter private String name;
+    @Setter @Getter private String status;
+    @Setter @Getter private long   read;
+    @Setter @Getter private long   written;
+    @Setter @Getter private long   skipped;
+    @Setter @Getter private double rowsPerSecond;
+    @Setter @Getter private double progress;
+    @Setter @Getter private Long   etaSeconds;
+    @Setter @Getter private Map<String, Double> chunkLatencyMs;
+    @Setter @Getter private List<StepProgress>  partitions;
+}
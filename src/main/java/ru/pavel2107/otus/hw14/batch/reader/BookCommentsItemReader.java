@@ -0,0 +1,242 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.support.SingleItemPeekableItemReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongFunction;
+
+import ru.pavel2107.otus.hw14.batch.mapper.BookRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.CommentRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.CommentRowMapper.BookComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Читает книги вместе с комментариями за один проход:
+// два курсора (books по id и comments по book_id) двигаются синхронно, как merge join.
+// Количество запросов не зависит от количества книг, в памяти держатся только комментарии текущей книги.
+// setEmbeddedComments( N) - в книгу попадают только N последних комментариев (CommentStorage.BUCKETED),
+// остальные курсор проходит, не держа в памяти, и только считает - commentCount книги.
+// Вместо курсоров - страницы по ключу (keyset) или выгрузки CSV (files), порядок тот же.
+//
+public class BookCommentsItemReader implements ItemStreamReader<MongoBook>, InitializingBean {
+
+    private static final String SELECT_BOOKS_SQL    = "select * from books where id between ? and ?";
+    private static final String SELECT_COMMENTS_SQL = "select * from comments where book_id between ? and ?";
+
+    private final ItemStreamReader<MongoBook>                bookReader;
+    private final SingleItemPeekableItemReader<BookComment>  commentReader = new SingleItemPeekableItemReader<>();
+    // курсоры - только когда reader сам читает базу, иначе null
+    private final JdbcCursorItemReader<MongoBook>            bookCursor;
+    private final JdbcCursorItemReader<BookComment>          commentCursor;
+    private final String                                     commentsSql;
+
+    private int embeddedComments = Integer.MAX_VALUE;
+
+    //
+    // minId, maxId - диапазон id книг (включительно), комментарии читаются для того же диапазона;
+    // authors, genres - автор и жанр книги по id
+    //
+    public BookCommentsItemReader( DataSource dataSource, long minId, long maxId,
+                                   LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres){
+        this( dataSource, minId, maxId, authors, genres, null, Collections.emptyList());
+    }
+
+    //
+    // bookFilter - дополнительное условие на колонки books (null - без условия), filterArgs - его параметры.
+    // Комментарии читаются только для книг, прошедших фильтр
+    //
+    public BookCommentsItemReader( DataSource dataSource, long minId, long maxId,
+                                   LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres,
+                                   String bookFilter, List<Object> filterArgs){
+        Selects selects = new Selects( minId, maxId, bookFilter, filterArgs);
+
+        bookCursor = new JdbcCursorItemReader<>();
+        bookCursor.setName( "readerBook.books");
+        bookCursor.setDataSource( dataSource);
+        bookCursor.setSql( selects.books + " order by id");
+        bookCursor.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( selects.bookArgs.toArray()));
+        bookCursor.setRowMapper( new BookRowMapper( authors, genres));
+        bookReader = bookCursor;
+
+        commentCursor = new JdbcCursorItemReader<>();
+        commentCursor.setName( "readerBook.comments");
+        commentCursor.setDataSource( dataSource);
+        this.commentsSql = selects.comments;
+        commentCursor.setSql( selects.comments + " order by book_id, id");
+        commentCursor.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( selects.commentArgs.toArray()));
+        commentCursor.setRowMapper( new CommentRowMapper());
+        commentReader.setDelegate( commentCursor);
+    }
+
+    //
+    // Книги и комментарии из других источников (KeysetPagingItemReader, CsvFileItemReader):
+    // books - по возрастанию id, comments - по book_id, id. Настройки курсора к ним не применяются
+    //
+    public BookCommentsItemReader( ItemStreamReader<MongoBook> books, ItemStreamReader<BookComment> comments){
+        this.bookReader    = books;
+        this.bookCursor    = null;
+        this.commentCursor = null;
+        this.commentsSql   = null;
+        commentReader.setDelegate( comments);
+    }
+
+    //
+    // Те же книги и комментарии страницами по pageSize (KeysetPagingItemReader): соединение не держится на всю партицию
+    //
+    public static BookCommentsItemReader keyset( DataSource dataSource, long minId, long maxId,
+                                                 LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres,
+                                                 String bookFilter, List<Object> filterArgs, int pageSize){
+        Selects selects = new Selects( minId, maxId, bookFilter, filterArgs);
+        return new BookCommentsItemReader(
+                new KeysetPagingItemReader<>( dataSource, selects.books, selects.bookArgs, new String[]{ "id"},
+                        new BookRowMapper( authors, genres), pageSize),
+                new KeysetPagingItemReader<>( dataSource, selects.comments, selects.commentArgs, new String[]{ "book_id", "id"},
+                        new CommentRowMapper(), pageSize));
+    }
+
+    //
+    // Книги и комментарии из выгрузок CSVWRITE (CsvFileItemReader), без базы:
+    // books - order by id, comments - order by book_id, id
+    //
+    public static BookCommentsItemReader files( Path books, Path comments, long minId, long maxId,
+                                                LongFunction<MongoAuthor> authors, LongFunction<MongoGenre> genres){
+        return new BookCommentsItemReader(
+                new CsvFileItemReader<>( books, "id", minId, maxId, new BookRowMapper( authors, genres)),
+                new CsvFileItemReader<>( comments, "book_id", minId, maxId, new CommentRowMapper()));
+    }
+
+    // в книге - limit последних комментариев по времени, в порядке времени; Integer.MAX_VALUE - все
+    public void setEmbeddedComments( int limit){
+        if( commentCursor == null){
+            throw new IllegalStateException( "Ограничение комментариев в книге - только при чтении курсором");
+        }
+        this.embeddedComments = limit;
+        commentCursor.setSql( commentsSql + ( limit == Integer.MAX_VALUE ? " order by book_id, id" : " order by " + CommentBucketItemReader.NEWEST_FIRST));
+    }
+
+    public void setFetchSize( int fetchSize){
+        if( bookCursor != null){
+            bookCursor.setFetchSize( fetchSize);
+            commentCursor.setFetchSize( fetchSize);
+        }
+    }
+
+    // ограничивает только книги: комментарии читаются для всех прочитанных книг
+    public void setMaxRows( int maxRows){
+        if( bookCursor != null){
+            bookCursor.setMaxRows( maxRows);
+        }
+    }
+
+    public void setVerifyCursorPosition( boolean verifyCursorPosition){
+        if( bookCursor != null){
+            bookCursor.setVerifyCursorPosition( verifyCursorPosition);
+            commentCursor.setVerifyCursorPosition( verifyCursorPosition);
+        }
+    }
+
+    public void setSaveState( boolean saveState){
+        if( bookCursor != null){
+            bookCursor.setSaveState( saveState);
+            commentCursor.setSaveState( saveState);
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if( bookCursor != null){
+            bookCursor.afterPropertiesSet();
+            commentCursor.afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public MongoBook read() throws Exception {
+        MongoBook book = bookReader.read();
+        if( book == null){
+            return null;
+        }
+
+        long id = Long.parseLong( book.getId());
+        List<MongoComment> comments = new ArrayList<>();
+        int count = 0;
+        BookComment comment;
+        while( ( comment = commentReader.peek()) != null){
+            long bookId = comment.getBookId();
+            if( bookId > id){
+                break;
+            }
+            commentReader.read();
+            // комментарии с book_id меньше текущей книги - "сироты", пропускаем
+            if( bookId == id && count++ < embeddedComments){
+                comments.add( comment.getComment());
+            }
+        }
+        if( embeddedComments != Integer.MAX_VALUE){
+            // прочитаны от новых к старым
+            Collections.reverse( comments);
+            book.setCommentCount( count);
+        }
+        book.setComments( comments);
+
+        return book;
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        bookReader.open( executionContext);
+        commentReader.open( executionContext);
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+        bookReader.update( executionContext);
+        commentReader.update( executionContext);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        bookReader.close();
+        commentReader.close();
+    }
+
+    // select книг и комментариев партиции без order by и их параметры
+    private static class Selects {
+        final String       books;
+        final String       comments;
+        final List<Object> bookArgs;
+        final List<Object> commentArgs;
+
+        Selects( long minId, long maxId, String bookFilter, List<Object> filterArgs){
+            List<Object> bookArgs    = new ArrayList<>( Arrays.asList( minId, maxId));
+            List<Object> commentArgs = new ArrayList<>( bookArgs);
+            String booksSql    = SELECT_BOOKS_SQL;
+            String commentsSql = SELECT_COMMENTS_SQL;
+            if( bookFilter != null){
+                booksSql    += " and (" + bookFilter + ")";
+                commentsSql += " and book_id in (select id from books where id between ? and ? and (" + bookFilter + "))";
+                bookArgs.addAll( filterArgs);
+                commentArgs.addAll( Arrays.asList( minId, maxId));
+                commentArgs.addAll( filterArgs);
+            }
+            this.books       = booksSql;
+            this.comments    = commentsSql;
+            this.bookArgs    = bookArgs;
+            this.commentArgs = commentArgs;
+        }
+    }
+}
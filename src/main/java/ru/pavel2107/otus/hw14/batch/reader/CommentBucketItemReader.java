@@ -0,0 +1,168 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.batch.item.support.SingleItemPeekableItemReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.batch.mapper.CommentRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.CommentRowMapper.BookComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+
+//
+// Комментарии, не вошедшие в документ книги (CommentStorage.BUCKETED), пачками по bucketSize.
+// Как и BookCommentsItemReader - merge join двух курсоров: id книг и комментарии от новых к старым;
+// у каждой книги первые embedded комментариев пропускаются (они в книге), остальные режутся на пачки.
+// В памяти - одна пачка, сколько бы комментариев ни было у книги.
+//
+// terminators - для книг без лишних комментариев отдавать пустую последнюю пачку (bucket = -1),
+// чтобы writer удалил пачки прошлых прогонов; нужно при любой записи поверх них (write-mode=UPSERT)
+//
+public class CommentBucketItemReader implements ItemStreamReader<MongoCommentBucket>, InitializingBean {
+
+    // порядок комментариев книги от новых к старым, он же у BookCommentsItemReader при ограничении
+    static final String NEWEST_FIRST = "book_id, datetime desc, id desc";
+
+    private static final String SELECT_BOOKS_SQL    = "select id from books where id between ? and ?";
+    private static final String SELECT_COMMENTS_SQL = "select * from comments where book_id between ? and ?";
+
+    private final JdbcCursorItemReader<Long>                bookCursor    = new JdbcCursorItemReader<>();
+    private final JdbcCursorItemReader<BookComment>         commentCursor = new JdbcCursorItemReader<>();
+    private final SingleItemPeekableItemReader<BookComment> commentReader = new SingleItemPeekableItemReader<>();
+
+    private final int     embedded;
+    private final int     bucketSize;
+    private final boolean terminators;
+
+    // текущая книга и сколько ее комментариев уже пройдено
+    private Long book;
+    private int  position;
+    private int  bucket;
+
+    //
+    // minId, maxId - диапазон id книг; bookFilter, filterArgs - условие на books, как у BookCommentsItemReader
+    //
+    public CommentBucketItemReader( DataSource dataSource, long minId, long maxId, int embedded, int bucketSize,
+                                    String bookFilter, List<Object> filterArgs, boolean terminators){
+        this.embedded    = embedded;
+        this.bucketSize  = bucketSize;
+        this.terminators = terminators;
+
+        List<Object> bookArgs    = new ArrayList<>( Arrays.asList( minId, maxId));
+        List<Object> commentArgs = new ArrayList<>( bookArgs);
+        String booksSql    = SELECT_BOOKS_SQL;
+        String commentsSql = SELECT_COMMENTS_SQL;
+        if( bookFilter != null){
+            booksSql    += " and (" + bookFilter + ")";
+            commentsSql += " and book_id in (select id from books where id between ? and ? and (" + bookFilter + "))";
+            bookArgs.addAll( filterArgs);
+            commentArgs.addAll( Arrays.asList( minId, maxId));
+            commentArgs.addAll( filterArgs);
+        }
+
+        bookCursor.setDataSource( dataSource);
+        bookCursor.setSql( booksSql + " order by id");
+        bookCursor.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( bookArgs.toArray()));
+        bookCursor.setRowMapper( ( resultSet, i) -> resultSet.getLong( 1));
+        bookCursor.setSaveState( false);
+
+        commentCursor.setDataSource( dataSource);
+        commentCursor.setSql( commentsSql + " order by " + NEWEST_FIRST);
+        commentCursor.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( commentArgs.toArray()));
+        commentCursor.setRowMapper( new CommentRowMapper());
+        commentCursor.setSaveState( false);
+        commentReader.setDelegate( commentCursor);
+    }
+
+    public void setFetchSize( int fetchSize){
+        bookCursor.setFetchSize( fetchSize);
+        commentCursor.setFetchSize( fetchSize);
+    }
+
+    public void setVerifyCursorPosition( boolean verifyCursorPosition){
+        bookCursor.setVerifyCursorPosition( verifyCursorPosition);
+        commentCursor.setVerifyCursorPosition( verifyCursorPosition);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        bookCursor.afterPropertiesSet();
+        commentCursor.afterPropertiesSet();
+    }
+
+    @Override
+    public MongoCommentBucket read() throws Exception {
+        while( true){
+            if( book == null){
+                book = bookCursor.read();
+                if( book == null){
+                    return null;
+                }
+                position = 0;
+                bucket   = 0;
+            }
+
+            List<MongoComment> comments = new ArrayList<>( Math.min( bucketSize, 64));
+            BookComment comment;
+            while( comments.size() < bucketSize && ( comment = commentReader.peek()) != null && comment.getBookId() <= book){
+                commentReader.read();
+                // "сироты" с book_id меньше текущей книги и вложенные в книгу пропускаем
+                if( comment.getBookId() == book && position++ >= embedded){
+                    comments.add( comment.getComment());
+                }
+            }
+
+            BookComment next = commentReader.peek();
+            boolean last = next == null || next.getBookId() != book;
+            long    id   = book;
+            if( last){
+                book = null;
+            }
+
+            if( !comments.isEmpty()){
+                return bucket( id, bucket++, comments, last);
+            }
+            if( last && terminators){
+                return bucket( id, -1, Collections.emptyList(), true);
+            }
+        }
+    }
+
+    private static MongoCommentBucket bucket( long bookId, int number, List<MongoComment> comments, boolean last){
+        MongoCommentBucket bucket = new MongoCommentBucket();
+        bucket.setId(       bookId + ":" + number);
+        bucket.setBookId(   Long.toString( bookId));
+        bucket.setBucket(   number);
+        bucket.setCount(    comments.size());
+        bucket.setComments( comments);
+        bucket.setLast(     last);
+        return bucket;
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        book = null;
+        bookCursor.open( executionContext);
+        commentReader.open( executionContext);
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        bookCursor.close();
+        commentReader.close();
+    }
+}
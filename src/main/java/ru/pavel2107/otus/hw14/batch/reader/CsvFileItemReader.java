@@ -0,0 +1,344 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+//
+// Чтение выгрузки таблицы H2 CSVWRITE без базы:
+//     call csvwrite( 'export/books.csv', 'select * from books order by id', 'charset=UTF-8');
+// Файл отображается в память (FileChannel.map, кусками по 1 Гб - файлы больше 2 Гб тоже),
+// записи разбираются прямо в отображенных байтах: поля - смещения начала и конца, ключ разбирается в число
+// без String, строки декодируются только для записей из диапазона.
+// Строки отдаются row mapper'ам шагов через ResultSet над текущей записью - те же mapper'ы, что и для базы.
+// Формат CSVWRITE по умолчанию: заголовок с именами колонок, значения в кавычках ("" - кавычка внутри),
+// пустое поле без кавычек - null. Файл должен быть отсортирован по keyColumn:
+// записи до minKey пропускаются, на первой записи после maxKey чтение заканчивается
+//
+public class CsvFileItemReader<T> implements ItemStreamReader<T> {
+
+    private static final int  SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = ( 1L << SEGMENT_BITS) - 1;
+
+    private static final byte QUOTE     = '"';
+    private static final byte SEPARATOR = ',';
+
+    private final Path         file;
+    private final String       keyColumn;
+    private final long         minKey;
+    private final long         maxKey;
+    private final RowMapper<T> rowMapper;
+
+    private FileChannel        channel;
+    private MappedByteBuffer[] segments;
+    private long               size;
+    private long               pos;
+
+    // поля текущей записи: [ start, end) в файле, в кавычках ли, есть ли "" внутри
+    private int       fields;
+    private long[]    starts   = new long[ 16];
+    private long[]    ends     = new long[ 16];
+    private boolean[] quoted   = new boolean[ 16];
+    private boolean[] escaped  = new boolean[ 16];
+    private byte[]    scratch  = new byte[ 256];
+
+    private int          keyIndex;
+    private int          columns;
+    private CsvResultSet resultSet;
+    private Object[]     row;
+    private int          rowNum;
+    private boolean      done;
+    private long         firstRecord;
+
+    public CsvFileItemReader( Path file, String keyColumn, long minKey, long maxKey, RowMapper<T> rowMapper){
+        this.file      = file;
+        this.keyColumn = keyColumn;
+        this.minKey    = minKey;
+        this.maxKey    = maxKey;
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            channel  = FileChannel.open( file, StandardOpenOption.READ);
+            size     = channel.size();
+            segments = new MappedByteBuffer[ (int) ( ( size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for( int i = 0; i < segments.length; i++){
+                long offset = (long) i << SEGMENT_BITS;
+                segments[ i] = channel.map( FileChannel.MapMode.READ_ONLY, offset, Math.min( SEGMENT_MASK + 1, size - offset));
+            }
+        } catch( IOException e){
+            throw new ItemStreamException( "Не открыть файл выгрузки " + file, e);
+        }
+
+        pos    = 0;
+        rowNum = 0;
+        done   = !next();
+        if( done){
+            throw new ItemStreamException( "Файл выгрузки " + file + " пуст, нет заголовка");
+        }
+
+        resultSet = new CsvResultSet( new SimpleRowSource() {
+            @Override
+            public Object[] readRow() {
+                return row;
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void reset() {
+            }
+        });
+        columns = fields;
+        keyIndex = -1;
+        for( int i = 0; i < columns; i++){
+            String name = string( i);
+            resultSet.addColumn( name, Types.VARCHAR, 0, 0);
+            if( name.equalsIgnoreCase( keyColumn)){
+                keyIndex = i;
+            }
+        }
+        if( keyIndex < 0){
+            throw new ItemStreamException( "В файле выгрузки " + file + " нет колонки " + keyColumn);
+        }
+        firstRecord = pos;
+    }
+
+    @Override
+    public T read() throws Exception {
+        while( !done && next()){
+            if( blank()){
+                continue;
+            }
+
+            long id = number( keyIndex);
+            if( id < minKey){
+                continue;
+            }
+            if( id > maxKey){
+                break;
+            }
+            return map();
+        }
+        done = true;
+        return null;
+    }
+
+    //
+    // Поиск по ключу без прохода файла (FileReferenceLoader), после open вместо read:
+    // index отдает ключ и начало каждой записи (без разбора строк), readAt - запись с такого начала
+    //
+    public void index( KeyPositionConsumer consumer){
+        pos = firstRecord;
+        while( true){
+            long start = pos;
+            if( !next()){
+                return;
+            }
+            if( !blank()){
+                consumer.accept( number( keyIndex), start);
+            }
+        }
+    }
+
+    public T readAt( long position) throws Exception {
+        pos = position;
+        return next() && !blank() ? map() : null;
+    }
+
+    public interface KeyPositionConsumer {
+        void accept( long key, long position);
+    }
+
+    // пустая строка в конце файла - true, запись с неполным числом полей - ошибка
+    private boolean blank(){
+        if( fields < columns){
+            if( fields == 1 && starts[ 0] == ends[ 0] && !quoted[ 0]){
+                return true;
+            }
+            throw new IllegalStateException( "Файл выгрузки " + file + ": в записи " + fields + " полей из " + columns + ", позиция " + pos);
+        }
+        return false;
+    }
+
+    private T map() throws Exception {
+        row = new Object[ columns];
+        for( int i = 0; i < columns; i++){
+            row[ i] = string( i);
+        }
+        resultSet.next();
+        return rowMapper.mapRow( resultSet, rowNum++);
+    }
+
+    // разбирает следующую запись в starts / ends; false - конец файла
+    private boolean next(){
+        if( pos >= size){
+            return false;
+        }
+
+        fields = 0;
+        while( true){
+            if( fields == starts.length){
+                grow();
+            }
+            boolean inQuotes = pos < size && get( pos) == QUOTE;
+            boolean hasEscapes = false;
+            long start;
+            long end;
+            if( inQuotes){
+                start = ++pos;
+                while( true){
+                    if( pos >= size){
+                        throw new IllegalStateException( "Файл выгрузки " + file + ": не закрыта кавычка с позиции " + start);
+                    }
+                    if( get( pos) == QUOTE){
+                        if( pos + 1 < size && get( pos + 1) == QUOTE){
+                            hasEscapes = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                end = pos++;
+            } else {
+                start = pos;
+                while( pos < size){
+                    byte b = get( pos);
+                    if( b == SEPARATOR || b == '\n' || b == '\r'){
+                        break;
+                    }
+                    pos++;
+                }
+                end = pos;
+            }
+            starts[ fields]  = start;
+            ends[ fields]    = end;
+            quoted[ fields]  = inQuotes;
+            escaped[ fields] = hasEscapes;
+            fields++;
+
+            if( pos >= size){
+                return true;
+            }
+            byte b = get( pos++);
+            if( b == SEPARATOR){
+                continue;
+            }
+            if( b == '\r' && pos < size && get( pos) == '\n'){
+                pos++;
+            }
+            return true;
+        }
+    }
+
+    private byte get( long position){
+        return segments[ (int) ( position >>> SEGMENT_BITS)].get( (int) ( position & SEGMENT_MASK));
+    }
+
+    private long number( int field){
+        long start = starts[ field];
+        long end   = ends[ field];
+        if( start == end){
+            throw new IllegalStateException( "Файл выгрузки " + file + ": пустой " + keyColumn + " перед позицией " + pos);
+        }
+        boolean negative = get( start) == '-';
+        long value = 0;
+        for( long i = negative ? start + 1 : start; i < end; i++){
+            int digit = get( i) - '0';
+            if( digit < 0 || digit > 9){
+                throw new IllegalStateException( "Файл выгрузки " + file + ": " + keyColumn + " не число перед позицией " + pos);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private String string( int field){
+        if( !quoted[ field] && starts[ field] == ends[ field]){
+            return null;
+        }
+        int length = 0;
+        for( long i = starts[ field]; i < ends[ field]; i++){
+            if( length == scratch.length){
+                scratch = Arrays.copyOf( scratch, scratch.length * 2);
+            }
+            byte b = get( i);
+            scratch[ length++] = b;
+            if( b == QUOTE && escaped[ field]){
+                i++;
+            }
+        }
+        return new String( scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void grow(){
+        int capacity = starts.length * 2;
+        starts  = Arrays.copyOf( starts, capacity);
+        ends    = Arrays.copyOf( ends, capacity);
+        quoted  = Arrays.copyOf( quoted, capacity);
+        escaped = Arrays.copyOf( escaped, capacity);
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        // отображение освобождается сборщиком мусора, после закрытия канала оно остается валидным
+        segments  = null;
+        resultSet = null;
+        if( channel != null){
+            try {
+                channel.close();
+            } catch( IOException e){
+                throw new ItemStreamException( "Не закрыть файл выгрузки " + file, e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    //
+    // В выгрузке все значения - строки; даты и время разбираются из текстового вида H2 при чтении
+    //
+    private static class CsvResultSet extends SimpleResultSet {
+
+        CsvResultSet( SimpleRowSource source){
+            super( source);
+        }
+
+        @Override
+        public Date getDate( int columnIndex) throws SQLException {
+            Object value = getObject( columnIndex);
+            return value == null ? null : Date.valueOf( value.toString());
+        }
+
+        @Override
+        public Timestamp getTimestamp( int columnIndex) throws SQLException {
+            Object value = getObject( columnIndex);
+            return value == null ? null : Timestamp.valueOf( value.toString());
+        }
+    }
+}
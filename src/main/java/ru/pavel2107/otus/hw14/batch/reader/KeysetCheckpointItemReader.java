@@ -0,0 +1,77 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.function.ToLongFunction;
+
+//
+// Позиция reader'а - id последней отданной шагу записи, а не число прочитанных строк.
+// Шаг сохраняет ее в контексте вместе с коммитом пачки (<name>.last.id), при перезапуске
+// reader создается заново с диапазоном id от last.id + 1 (см. resumeFrom): курсор не проматывает
+// уже записанные строки, сколько бы их ни было. Требует чтения по возрастанию id.
+//
+public class KeysetCheckpointItemReader<T> implements ItemStreamReader<T>, InitializingBean {
+
+    public static final String LAST_ID = ".last.id";
+
+    private final ItemStreamReader<T> delegate;
+    private final ToLongFunction<T>   key;
+    private final String              lastKey;
+
+    private Long    last;
+    private boolean opened;
+
+    public KeysetCheckpointItemReader( ItemStreamReader<T> delegate, ToLongFunction<T> key, String name){
+        this.delegate = delegate;
+        this.key      = key;
+        this.lastKey  = name + LAST_ID;
+    }
+
+    // начало диапазона id для reader'а: minId при первом запуске, после последней записанной - при перезапуске
+    public static long resumeFrom( long minId, Long lastId){
+        return lastId == null ? minId : Math.max( minId, lastId + 1);
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if( delegate instanceof InitializingBean){
+            ( (InitializingBean) delegate).afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open( executionContext);
+        opened = true;
+        last = executionContext.containsKey( lastKey) ? executionContext.getLong( lastKey) : null;
+    }
+
+    @Override
+    public T read() throws Exception {
+        T item = delegate.read();
+        if( item != null){
+            last = key.applyAsLong( item);
+        }
+        return item;
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+        delegate.update( executionContext);
+        if( last != null){
+            executionContext.putLong( lastKey, last);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        // step scope закрывает bean еще раз после шага
+        if( opened){
+            opened = false;
+            delegate.close();
+        }
+    }
+}
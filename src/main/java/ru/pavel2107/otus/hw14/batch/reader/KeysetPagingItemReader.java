@@ -0,0 +1,131 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+//
+// Чтение страницами по ключу вместо одного долгого курсора:
+// select ... and (ключ > ключа последней строки) order by ключ limit pageSize.
+// Соединение берется из пула на время одного запроса страницы - между страницами reader его не держит,
+// и долгой транзакции на всю партицию нет; каждая страница - поиск по индексу ключа, без offset.
+// keys - колонки ключа (составной ключ сравнивается лексикографически), значения берутся из строки выборки.
+// Строки разбираются по одной: ошибка разбора (RowMappingException) отдается read() на месте своей строки
+// один раз, страница дальше читается - как у курсора, шаг может пропустить строку и продолжить.
+// Позиция для перезапуска - у KeysetCheckpointItemReader, сам reader состояния не сохраняет
+//
+public class KeysetPagingItemReader<T> implements ItemStreamReader<T> {
+
+    private final JdbcTemplate          jdbcTemplate;
+    private final String                sql;
+    private final List<Object>          args;
+    private final String[]              keys;
+    private final RowMapper<T>          rowMapper;
+    private final int                   pageSize;
+
+    // прочитанные записи страницы и ошибки разбора (Failed) в порядке строк
+    private final Deque<Object> page = new ArrayDeque<>();
+    private Object[] last;
+    private boolean  exhausted;
+
+    //
+    // sql - select с условием where (диапазон партиции, фильтр), без order by; args - его параметры
+    //
+    public KeysetPagingItemReader( DataSource dataSource, String sql, List<Object> args, String[] keys,
+                                   RowMapper<T> rowMapper, int pageSize){
+        this.jdbcTemplate = new JdbcTemplate( dataSource);
+        this.sql          = sql;
+        this.args         = args;
+        this.keys         = keys;
+        this.rowMapper    = rowMapper;
+        this.pageSize     = pageSize;
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked")
+    public T read() {
+        if( page.isEmpty() && !exhausted){
+            fetch();
+        }
+        Object next = page.poll();
+        if( next instanceof Failed){
+            throw ( (Failed) next).error;
+        }
+        return (T) next;
+    }
+
+    private void fetch(){
+        List<Object> pageArgs = new ArrayList<>( args);
+        StringBuilder query = new StringBuilder( sql);
+        if( last != null){
+            query.append( " and (").append( after( pageArgs)).append( ")");
+        }
+        query.append( " order by ").append( String.join( ", ", keys)).append( " limit ?");
+        pageArgs.add( pageSize);
+
+        int[] rows = { 0};
+        jdbcTemplate.query( query.toString(), rs -> {
+            Object[] rowKey = new Object[ keys.length];
+            for( int i = 0; i < keys.length; i++){
+                rowKey[ i] = rs.getObject( keys[ i]);
+            }
+            try {
+                page.add( rowMapper.mapRow( rs, rows[ 0]));
+            } catch( RuntimeException e){
+                page.add( new Failed( e));
+            }
+            // и после строки с ошибкой: следующая страница начнется за ней
+            last = rowKey;
+            rows[ 0]++;
+        }, pageArgs.toArray());
+        exhausted = rows[ 0] < pageSize;
+    }
+
+    // (k1 > ?) or (k1 = ? and k2 > ?) or ... - строки после last в порядке ключа
+    private String after( List<Object> pageArgs){
+        List<String> alternatives = new ArrayList<>();
+        for( int i = 0; i < keys.length; i++){
+            List<String> terms = new ArrayList<>();
+            for( int j = 0; j < i; j++){
+                terms.add( keys[ j] + " = ?");
+                pageArgs.add( last[ j]);
+            }
+            terms.add( keys[ i] + " > ?");
+            pageArgs.add( last[ i]);
+            alternatives.add( "(" + String.join( " and ", terms) + ")");
+        }
+        return String.join( " or ", alternatives);
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        page.clear();
+        last      = null;
+        exhausted = false;
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        page.clear();
+    }
+
+    private static class Failed {
+        final RuntimeException error;
+
+        Failed( RuntimeException error){
+            this.error = error;
+        }
+    }
+}
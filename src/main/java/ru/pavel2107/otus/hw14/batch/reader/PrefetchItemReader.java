@@ -0,0 +1,121 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+//
+// Чтение с опережением: отдельный поток читает из delegate в ограниченную очередь,
+// пока поток шага обрабатывает и пишет предыдущую пачку. Полная очередь останавливает чтение,
+// так что впереди шага не больше depth записей.
+//
+// delegate читает дальше, чем закоммичено, поэтому своего состояния у обертки нет, а у delegate
+// оно не сохраняется (saveState = false выставляет вызывающий): позицию по отданным шагу записям
+// хранит KeysetCheckpointItemReader поверх. Ошибка чтения записи передается шагу на ее месте в очереди,
+// чтение продолжается со следующей - шаг решает сам, пропустить запись (skip) или упасть.
+//
+public class PrefetchItemReader<T> implements ItemStreamReader<T>, InitializingBean {
+
+    private static final Object END = new Object();
+
+    private final ItemStreamReader<T>   delegate;
+    private final BlockingQueue<Object> queue;
+    private final String                name;
+
+    private Thread  producer;
+    private boolean finished;
+
+    public PrefetchItemReader( ItemStreamReader<T> delegate, int depth, String name){
+        this.delegate = delegate;
+        this.queue    = new ArrayBlockingQueue<>( depth);
+        this.name     = name;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if( delegate instanceof InitializingBean){
+            ( (InitializingBean) delegate).afterPropertiesSet();
+        }
+    }
+
+    @Override
+    public void open( ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open( executionContext);
+        finished = false;
+        queue.clear();
+
+        producer = new Thread( this::produce, Thread.currentThread().getName() + "-" + name);
+        producer.setDaemon( true);
+        producer.start();
+    }
+
+    private void produce(){
+        try{
+            while( true){
+                Object item;
+                try{
+                    item = delegate.read();
+                } catch( InterruptedException e){
+                    throw e;
+                } catch( Exception e){
+                    item = new Failure( e);
+                }
+                if( item == null){
+                    break;
+                }
+                queue.put( item);
+            }
+            queue.put( END);
+        } catch( InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked")
+    public T read() throws Exception {
+        if( finished){
+            return null;
+        }
+        Object item = queue.take();
+        if( item == END){
+            finished = true;
+            return null;
+        }
+        if( item instanceof Failure){
+            throw ( (Failure) item).exception;
+        }
+        return (T) item;
+    }
+
+    @Override
+    public void update( ExecutionContext executionContext) throws ItemStreamException {
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if( producer != null){
+            producer.interrupt();
+            try{
+                producer.join();
+            } catch( InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            producer = null;
+        }
+        queue.clear();
+        delegate.close();
+    }
+
+    private static class Failure {
+        private final Exception exception;
+
+        private Failure( Exception exception){
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+//
+// Откуда шаг читает строки таблицы (migration.step.<шаг>.source):
+// CURSOR - один курсор JdbcCursorItemReader на партицию, соединение занято до конца партиции
+// KEYSET - страницами по page-size строк по ключу (KeysetPagingItemReader), соединение - на время страницы
+// FILE   - из выгрузки CSVWRITE <source-dir>/<таблица>.csv (CsvFileItemReader), база не читается
+//
+public enum ReaderSource {
+    CURSOR, KEYSET, FILE
+}
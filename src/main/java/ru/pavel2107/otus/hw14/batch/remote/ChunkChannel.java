@@ -0,0 +1,14 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+//
+// Транспорт пачек manager -> worker: запрос-ответ, send возвращается, когда worker записал пачку.
+// Реализация должна допускать вызовы из нескольких потоков (партиций) одновременно.
+// Обрыв связи - DataAccessResourceFailureException: пачка повторяется (запись по id - UPSERT, повтор безопасен)
+//
+public interface ChunkChannel extends AutoCloseable {
+
+    ChunkReply send( ChunkRequest request) throws Exception;
+
+    @Override
+    void close();
+}
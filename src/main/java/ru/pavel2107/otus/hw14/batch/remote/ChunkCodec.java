@@ -0,0 +1,100 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+//
+// Формат пачек на проводе - Java-сериализация. Читаются только классы из ALLOWED (точные имена, не пакеты):
+// запрос и ответ, записи миграции, исключения, которые worker возвращает manager'у, и то, из чего они состоят.
+// Прочее, в том числе proxy, отклоняется - поток из сети не создает что угодно.
+// Ответ с исключением не из списка ChunkReply.failed заменяет текстом до отправки
+//
+final class ChunkCodec {
+
+    private static final Set<String> ALLOWED = new HashSet<>( Arrays.asList(
+            // сообщения и записи stepBook
+            "ru.pavel2107.otus.hw14.batch.remote.ChunkRequest",
+            "ru.pavel2107.otus.hw14.batch.remote.ChunkReply",
+            "ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook",
+            "ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor",
+            "ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre",
+            "ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment",
+            "java.util.ArrayList",
+            "java.lang.Number",
+            "java.lang.Integer",
+            "java.lang.Long",
+            // LocalDate / LocalDateTime сериализуются через java.time.Ser
+            "java.time.Ser",
+            // исключения worker'а: ошибки документов, временные и прочие (текстом)
+            "ru.pavel2107.otus.hw14.batch.writer.MongoDocumentWriteException",
+            "org.springframework.data.mapping.MappingException",
+            "org.springframework.dao.DataAccessResourceFailureException",
+            "org.springframework.dao.NonTransientDataAccessResourceException",
+            "org.springframework.dao.NonTransientDataAccessException",
+            "org.springframework.dao.DataAccessException",
+            "org.springframework.core.NestedRuntimeException",
+            "java.lang.IllegalStateException",
+            "java.lang.RuntimeException",
+            "java.lang.Exception",
+            "java.lang.Throwable",
+            "java.lang.StackTraceElement",
+            // пустой список suppressed у Throwable
+            "java.util.Collections$UnmodifiableRandomAccessList",
+            "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableCollection"));
+
+    private ChunkCodec(){
+    }
+
+    static byte[] toBytes( Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try( ObjectOutputStream output = new ObjectOutputStream( bytes)){
+            output.writeObject( message);
+        }
+        return bytes.toByteArray();
+    }
+
+    static <T> T fromBytes( byte[] bytes, Class<T> type) throws IOException, ClassNotFoundException {
+        try( ObjectInputStream input = input( new ByteArrayInputStream( bytes))){
+            return type.cast( input.readObject());
+        }
+    }
+
+    static ObjectInputStream input( InputStream stream) throws IOException {
+        return new ObjectInputStream( stream) {
+            @Override
+            protected Class<?> resolveClass( ObjectStreamClass description) throws IOException, ClassNotFoundException {
+                if( !allowed( description.getName())){
+                    throw new InvalidClassException( description.getName(), "класс не разрешен в пачках");
+                }
+                return super.resolveClass( description);
+            }
+
+            @Override
+            protected Class<?> resolveProxyClass( String[] interfaces) throws IOException {
+                throw new InvalidClassException( Arrays.toString( interfaces), "proxy не разрешены в пачках");
+            }
+        };
+    }
+
+    // массив - по типу элемента: примитивы ([I) разрешены, объекты ([Lимя;) - если разрешен класс
+    static boolean allowed( String name){
+        String element = name.replaceFirst( "^\\[+", "");
+        if( element.length() < name.length()){
+            if( element.length() == 1){
+                return true;
+            }
+            element = element.substring( 1, element.length() - 1);
+        }
+        return ALLOWED.contains( element);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// Сторона worker'а: processor и writer рабочего шага для пачки от manager'а.
+// Ошибки записи документов (MongoDocumentWriteException) уходят manager'у: пропуск и dead letters -
+// в его fault-tolerant шаге, как для локального writer'а
+//
+public class ChunkHandler {
+
+    private final Map<String, ItemProcessor<Object, Object>> processors = new HashMap<>();
+    private final Map<String, ItemWriter<Object>>            writers    = new HashMap<>();
+
+    // processor - null, если у шага его нет
+    @SuppressWarnings( "unchecked")
+    public void register( String step, ItemProcessor<?, ?> processor, ItemWriter<?> writer){
+        processors.put( step, (ItemProcessor<Object, Object>) processor);
+        writers.put(    step, (ItemWriter<Object>) writer);
+    }
+
+    public ChunkReply handle( ChunkRequest request){
+        ItemWriter<Object> writer = writers.get( request.getStep());
+        if( writer == null){
+            return ChunkReply.failed( new IllegalStateException( "Worker не обрабатывает шаг " + request.getStep()));
+        }
+
+        try{
+            List<Object> items = process( processors.get( request.getStep()), request.getItems());
+            writer.write( items);
+            return ChunkReply.done( items.size(), request.getItems().size() - items.size());
+        } catch( Exception e){
+            return ChunkReply.failed( e);
+        }
+    }
+
+    private static List<Object> process( ItemProcessor<Object, Object> processor, List<Object> items) throws Exception {
+        if( processor == null){
+            return items;
+        }
+        List<Object> result = new ArrayList<>( items.size());
+        for( Object item : items){
+            Object processed = processor.process( item);
+            if( processed != null){
+                result.add( processed);
+            }
+        }
+        return result;
+    }
+}
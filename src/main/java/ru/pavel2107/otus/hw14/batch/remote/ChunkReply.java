@@ -0,0 +1,54 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mapping.MappingException;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import ru.pavel2107.otus.hw14.batch.StepSettings;
+
+//
+// Ответ worker'а: сколько записей отфильтровал processor и сколько записано;
+// error - исключение processor'а или writer'а, manager бросает его у себя (повтор / пропуск решает его шаг)
+//
+@ToString
+public class ChunkReply implements Serializable {
+
+    @Getter private final int       written;
+    @Getter private final int       filtered;
+    @Getter private final Throwable error;
+
+    private ChunkReply( int written, int filtered, Throwable error){
+        this.written  = written;
+        this.filtered = filtered;
+        this.error    = error;
+    }
+
+    public static ChunkReply done( int written, int filtered){
+        return new ChunkReply( written, filtered, null);
+    }
+
+    // исключение, которое не сериализуется или не пройдет список классов ChunkCodec (поле драйвера, причина
+    // не из списка и т.п.), уходит текстом: в исключении того же рода для шага manager'а - повтор, пропуск или отказ
+    public static ChunkReply failed( Throwable error){
+        try{
+            ChunkCodec.fromBytes( ChunkCodec.toBytes( error), Throwable.class);
+            return new ChunkReply( 0, 0, error);
+        } catch( IOException | ClassNotFoundException e){
+            return new ChunkReply( 0, 0, asText( error));
+        }
+    }
+
+    private static RuntimeException asText( Throwable error){
+        if( StepSettings.isTransient( error)){
+            return new DataAccessResourceFailureException( error.toString());
+        }
+        if( StepSettings.isBadItem( error)){
+            return new MappingException( error.toString());
+        }
+        return new IllegalStateException( error.toString());
+    }
+}
@@ -0,0 +1,25 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Пачка от manager'а worker'у: имя рабочего шага (по нему worker выбирает processor и writer) и прочитанные записи
+//
+@ToString( exclude = "items")
+public class ChunkRequest implements Serializable {
+
+    @Getter private final String       step;
+    @Getter private final long         jobExecutionId;
+    @Getter private final List<Object> items;
+
+    public ChunkRequest( String step, long jobExecutionId, List<?> items){
+        this.step           = step;
+        this.jobExecutionId = jobExecutionId;
+        this.items          = new ArrayList<>( items);
+    }
+}
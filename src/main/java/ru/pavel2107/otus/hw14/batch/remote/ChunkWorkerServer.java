@@ -0,0 +1,88 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+//
+// JVM-worker (migration.remote.mode=WORKER): принимает соединения manager'ов, на каждое - свой поток,
+// пачки соединения обрабатываются по одной. Слушает bindAddress (по умолчанию localhost):
+// Java-сериализация допустима только в доверенной сети
+//
+public class ChunkWorkerServer implements InitializingBean, DisposableBean {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final ChunkHandler handler;
+    private final String       bindAddress;
+    private final int          port;
+
+    private volatile ServerSocket server;
+
+    public ChunkWorkerServer( ChunkHandler handler, String bindAddress, int port){
+        this.handler     = handler;
+        this.bindAddress = bindAddress;
+        this.port        = port;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        server = new ServerSocket( port, 50, InetAddress.getByName( bindAddress));
+        Thread acceptor = new Thread( this::accept, "chunk-worker");
+        acceptor.start();
+        logger.info( "Worker принимает пачки на " + server.getLocalSocketAddress());
+    }
+
+    private void accept(){
+        int number = 0;
+        while( !server.isClosed()){
+            try{
+                Socket socket = server.accept();
+                new Thread( () -> serve( socket), "chunk-worker-" + ( ++number)).start();
+            } catch( IOException e){
+                if( !server.isClosed()){
+                    logger.error( "Ошибка приема соединения", e);
+                }
+            }
+        }
+    }
+
+    private void serve( Socket socket){
+        try( Socket connection = socket){
+            connection.setTcpNoDelay( true);
+            ObjectOutputStream output = new ObjectOutputStream( new BufferedOutputStream( connection.getOutputStream()));
+            output.flush();
+            ObjectInputStream input = ChunkCodec.input( new BufferedInputStream( connection.getInputStream()));
+            while( true){
+                ChunkRequest request = (ChunkRequest) input.readObject();
+                output.writeObject( handler.handle( request));
+                output.reset();
+                output.flush();
+            }
+        } catch( EOFException | SocketException e){
+            logger.info( "Manager отключился: " + socket.getRemoteSocketAddress());
+        } catch( IOException | ClassNotFoundException e){
+            logger.error( "Ошибка соединения с " + socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    public int getPort(){
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        server.close();
+    }
+}
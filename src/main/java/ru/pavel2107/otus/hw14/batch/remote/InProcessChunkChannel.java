@@ -0,0 +1,24 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+//
+// Worker в той же JVM - для проверки на одной машине. Запрос и ответ проходят через ту же сериализацию,
+// что и по сети: несериализуемая запись или ответ обнаружатся здесь, а не на выделенных worker'ах
+//
+public class InProcessChunkChannel implements ChunkChannel {
+
+    private final ChunkHandler handler;
+
+    public InProcessChunkChannel( ChunkHandler handler){
+        this.handler = handler;
+    }
+
+    @Override
+    public ChunkReply send( ChunkRequest request) throws Exception {
+        ChunkRequest received = ChunkCodec.fromBytes( ChunkCodec.toBytes( request), ChunkRequest.class);
+        return ChunkCodec.fromBytes( ChunkCodec.toBytes( handler.handle( received)), ChunkReply.class);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,48 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ItemWriter;
+
+import java.util.List;
+
+//
+// Writer шага manager'а: пачка уходит worker'у, и write ждет ответа. Пачка manager'а коммитится
+// (и позиция reader'а сохраняется) только после записи в Mongo, поэтому перезапуск - как у обычного шага.
+// Счетчики шага поправляются по ответу: отфильтрованные processor'ом worker'а переносятся из write count
+// в filter count. Ошибка worker'а бросается здесь - повтор и пропуск (в том числе не записанных документов
+// пачки) решает fault-tolerant шаг manager'а, как для локального writer'а
+//
+public class RemoteChunkItemWriter<T> implements ItemWriter<T> {
+
+    private final String       step;
+    private final ChunkChannel channel;
+
+    public RemoteChunkItemWriter( String step, ChunkChannel channel){
+        this.step    = step;
+        this.channel = channel;
+    }
+
+    @Override
+    public void write( List<? extends T> items) throws Exception {
+        if( items.isEmpty()){
+            return;
+        }
+
+        StepContext context = StepSynchronizationManager.getContext();
+        long jobExecutionId = context == null ? 0 : context.getStepExecution().getJobExecutionId();
+        ChunkReply reply = channel.send( new ChunkRequest( step, jobExecutionId, items));
+        if( reply.getError() != null){
+            throw reply.getError() instanceof Exception ? (Exception) reply.getError() : new IllegalStateException( reply.getError());
+        }
+
+        if( context != null && reply.getFiltered() > 0){
+            StepExecution stepExecution = context.getStepExecution();
+            synchronized ( stepExecution){
+                stepExecution.setWriteCount(  stepExecution.getWriteCount()  - reply.getFiltered());
+                stepExecution.setFilterCount( stepExecution.getFilterCount() + reply.getFiltered());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+
+//
+// Масштабирование stepBook на несколько JVM (remote chunking):
+// manager читает H2 и отправляет пачки, worker'ы обрабатывают (processorBook) и пишут в Mongo (writerBook).
+// migration.remote.workers пустой - worker в той же JVM (InProcessChunkChannel), иначе host:port worker'ов.
+// Метаданные job и позиции reader'ов - только у manager'а, worker'ам нужны только Mongo и настройки записи
+//
+@Configuration
+public class RemoteConfig {
+
+    // условия бинов ниже сравнивают строку: опечатка в режиме молча дала бы LOCAL, поэтому значение проверяется здесь
+    @Bean
+    @Lazy( false)
+    public RemoteMode remoteMode( @Value( "${migration.remote.mode}") String mode){
+        try{
+            return RemoteMode.valueOf( mode.trim().toUpperCase());
+        } catch( IllegalArgumentException e){
+            throw new IllegalStateException( "migration.remote.mode=" + mode + ": допустимы " + Arrays.toString( RemoteMode.values()));
+        }
+    }
+
+    @Bean
+    public ChunkHandler chunkHandler( ItemProcessor processorBook, ItemWriter writerBook){
+        ChunkHandler handler = new ChunkHandler();
+        handler.register( "stepBookWorker", processorBook, writerBook);
+        return handler;
+    }
+
+    @Bean( destroyMethod = "close")
+    @ConditionalOnProperty( name = "migration.remote.mode", havingValue = "MANAGER")
+    public ChunkChannel chunkChannel( ChunkHandler chunkHandler,
+                                      @Value( "${migration.mongo.write-mode}") MongoWriteMode writeMode,
+                                      @Value( "${migration.remote.workers}") List<String> workers,
+                                      @Value( "${migration.remote.connections-per-worker}") int connectionsPerWorker,
+                                      @Value( "${migration.remote.timeout}") int timeout){
+        // пачка после обрыва связи отправляется повторно, хотя worker мог ее уже записать
+        if( writeMode != MongoWriteMode.UPSERT){
+            throw new IllegalStateException( "migration.remote.mode=MANAGER требует migration.mongo.write-mode=UPSERT");
+        }
+
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for( String worker : workers){
+            if( !worker.trim().isEmpty()){
+                String[] hostPort = worker.trim().split( ":");
+                addresses.add( new InetSocketAddress( hostPort[ 0], Integer.parseInt( hostPort[ 1])));
+            }
+        }
+        return addresses.isEmpty() ? new InProcessChunkChannel( chunkHandler) : new SocketChunkChannel( addresses, connectionsPerWorker, timeout);
+    }
+
+    // сервер слушает порт с момента создания - при migration.startup.lazy=true тоже создается сразу
+    @Bean
+    @Lazy( false)
+    @ConditionalOnProperty( name = "migration.remote.mode", havingValue = "WORKER")
+    public ChunkWorkerServer chunkWorkerServer( ChunkHandler chunkHandler,
+                                                @Value( "${spring.batch.job.enabled:true}") boolean jobEnabled,
+                                                @Value( "${migration.remote.bind-address}") String bindAddress,
+                                                @Value( "${migration.remote.port}") int port){
+        if( jobEnabled){
+            throw new IllegalStateException( "migration.remote.mode=WORKER требует spring.batch.job.enabled=false");
+        }
+        return new ChunkWorkerServer( chunkHandler, bindAddress, port);
+    }
+}
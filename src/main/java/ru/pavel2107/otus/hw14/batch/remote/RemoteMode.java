@@ -0,0 +1,10 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+//
+// LOCAL   - stepBook читает, обрабатывает и пишет в этой JVM
+// MANAGER - stepBook только читает, пачки обрабатывают и пишут worker'ы через ChunkChannel
+// WORKER  - JVM принимает пачки (ChunkWorkerServer) и сама job не запускает
+//
+public enum RemoteMode {
+    LOCAL, MANAGER, WORKER
+}
@@ -0,0 +1,110 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+//
+// Worker'ы - отдельные JVM (ChunkWorkerServer) по TCP. К каждому connectionsPerWorker соединений,
+// по соединению - одна пачка за раз; поток партиции берет свободное соединение из общей очереди,
+// поэтому пачки сами расходятся по менее занятым worker'ам. Соединение открывается при первом использовании,
+// после ошибки закрывается и при следующем использовании открывается заново
+//
+public class SocketChunkChannel implements ChunkChannel {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final BlockingQueue<Connection> idle = new LinkedBlockingQueue<>();
+    private final int                      timeout;
+
+    // timeout - мс на подключение и на ответ worker'а
+    public SocketChunkChannel( List<InetSocketAddress> workers, int connectionsPerWorker, int timeout){
+        this.timeout = timeout;
+        for( int i = 0; i < connectionsPerWorker; i++){
+            for( InetSocketAddress worker : workers){
+                idle.add( new Connection( worker));
+            }
+        }
+    }
+
+    @Override
+    public ChunkReply send( ChunkRequest request) throws Exception {
+        Connection connection = idle.take();
+        try{
+            return connection.send( request);
+        } catch( IOException e){
+            connection.close();
+            throw new DataAccessResourceFailureException( "Worker " + connection.address + " не ответил на пачку " + request, e);
+        } finally {
+            idle.add( connection);
+        }
+    }
+
+    @Override
+    public void close() {
+        for( Connection connection : idle){
+            connection.close();
+        }
+    }
+
+    private class Connection {
+        private final InetSocketAddress address;
+
+        private Socket             socket;
+        private ObjectOutputStream output;
+        private ObjectInputStream  input;
+
+        private Connection( InetSocketAddress address){
+            this.address = address;
+        }
+
+        private ChunkReply send( ChunkRequest request) throws IOException, ClassNotFoundException {
+            if( socket == null){
+                open();
+            }
+            output.writeObject( request);
+            // без reset поток держит ссылки на все отправленные записи
+            output.reset();
+            output.flush();
+            return (ChunkReply) input.readObject();
+        }
+
+        private void open() throws IOException {
+            Socket socket = new Socket();
+            try{
+                socket.connect( address, timeout);
+                socket.setSoTimeout( timeout);
+                socket.setTcpNoDelay( true);
+                output = new ObjectOutputStream( new BufferedOutputStream( socket.getOutputStream()));
+                output.flush();
+                input  = ChunkCodec.input( new BufferedInputStream( socket.getInputStream()));
+            } catch( IOException e){
+                socket.close();
+                throw e;
+            }
+            this.socket = socket;
+            logger.info( "Подключен worker " + address);
+        }
+
+        private void close(){
+            if( socket != null){
+                try{
+                    socket.close();
+                } catch( IOException e){
+                    logger.debug( "Ошибка закрытия соединения с " + address, e);
+                }
+                socket = null;
+            }
+        }
+    }
+}
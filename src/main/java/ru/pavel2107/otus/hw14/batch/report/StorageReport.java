@@ -0,0 +1,39 @@
+package ru.pavel2107.otus.hw14.batch.report;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+//
+// Итог одной миграции для сравнения схем документов:
+// schema - имена полей и хранение времени комментариев, collections - размер коллекций после загрузки,
+// steps - длительность шагов верхнего уровня, мс.
+// id создает Mongo: id запуска job начинается с 1 заново при новой или общей базе метаданных batch
+// и перезаписал бы старые отчеты - он хранится отдельно в jobExecutionId
+//
+@Document( collection = "migration_reports")
+public @ToString class StorageReport {
+
+    @Setter @Getter @Id private String id;
+    @Setter @Getter private Long jobExecutionId;
+    @Setter @Getter private Date finished;
+    @Setter @Getter private String schema;
+    @Setter @Getter private List<CollectionSize> collections;
+    @Setter @Getter private Map<String, Long> steps;
+
+    public static @ToString class CollectionSize {
+        @Setter @Getter private String name;
+        @Setter @Getter private long count;
+        // байт BSON всего и в среднем на документ, без сжатия хранилищем
+        @Setter @Getter private long size;
+        @Setter @Getter private long avgObjSize;
+        // на диске, со сжатием
+        @Setter @Getter private long storageSize;
+    }
+}
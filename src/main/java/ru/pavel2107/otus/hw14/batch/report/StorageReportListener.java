@@ -0,0 +1,148 @@
+package ru.pavel2107.otus.hw14.batch.report;
+
+import com.mongodb.MongoCommandException;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//
+// После успешной миграции - размеры коллекций (collStats) и время шагов в migration_reports и в лог,
+// рядом с последним отчетом другой схемы: сколько байт на документ и времени загрузки дала смена схемы.
+// Отчет не влияет на итог job: ошибка сбора только пишется в лог. setEnabled( false) - отчет не собирается
+//
+public class StorageReportListener implements JobExecutionListener {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final int NS_NOT_FOUND = 26;
+
+    private final MongoTemplate mongoTemplate;
+    private final List<String>  collections;
+    private final String        schema;
+
+    private boolean enabled = true;
+
+    public StorageReportListener( MongoTemplate mongoTemplate, List<String> collections, String schema){
+        this.mongoTemplate = mongoTemplate;
+        this.collections   = collections;
+        this.schema        = schema;
+    }
+
+    public void setEnabled( boolean enabled){
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void beforeJob( JobExecution jobExecution) {
+    }
+
+    @Override
+    public void afterJob( JobExecution jobExecution) {
+        if( !enabled || jobExecution.getStatus() != BatchStatus.COMPLETED){
+            return;
+        }
+        try {
+            StorageReport report = report( jobExecution);
+            StorageReport previous = mongoTemplate.findOne(
+                    Query.query( Criteria.where( "schema").ne( schema)).with( Sort.by( Sort.Direction.DESC, "finished")), StorageReport.class);
+            mongoTemplate.insert( report);
+            log( report, previous);
+        } catch( RuntimeException e){
+            logger.warn( "Отчет о размере коллекций не собран", e);
+        }
+    }
+
+    private StorageReport report( JobExecution jobExecution){
+        List<StorageReport.CollectionSize> sizes = new ArrayList<>();
+        for( String collection : collections){
+            try {
+                Document stats = mongoTemplate.getDb().runCommand( new Document( "collStats", collection));
+                StorageReport.CollectionSize size = new StorageReport.CollectionSize();
+                size.setName( collection);
+                size.setCount(       number( stats, "count"));
+                size.setSize(        number( stats, "size"));
+                size.setAvgObjSize(  number( stats, "avgObjSize"));
+                size.setStorageSize( number( stats, "storageSize"));
+                sizes.add( size);
+            } catch( MongoCommandException e){
+                // коллекции нет - этот прогон ее не писал
+                if( e.getErrorCode() != NS_NOT_FOUND){
+                    throw e;
+                }
+            }
+        }
+
+        // партиции (stepBookWorker:partition0) входят в свой шаг
+        Map<String, Long> steps = new LinkedHashMap<>();
+        for( StepExecution step : jobExecution.getStepExecutions()){
+            if( !step.getStepName().contains( ":") && step.getStartTime() != null && step.getEndTime() != null){
+                steps.put( step.getStepName(), step.getEndTime().getTime() - step.getStartTime().getTime());
+            }
+        }
+
+        StorageReport report = new StorageReport();
+        report.setJobExecutionId( jobExecution.getId());
+        report.setFinished( new Date());
+        report.setSchema( schema);
+        report.setCollections( sizes);
+        report.setSteps( steps);
+        return report;
+    }
+
+    private void log( StorageReport report, StorageReport previous){
+        StringBuilder text = new StringBuilder( "Схема " + report.getSchema());
+        if( previous != null){
+            text.append( ", сравнение со схемой ").append( previous.getSchema()).append( " (job ").append( previous.getJobExecutionId()).append( ")");
+        }
+        for( StorageReport.CollectionSize size : report.getCollections()){
+            text.append( "\n  ").append( size.getName()).append( ": ").append( size.getCount()).append( " док., ")
+                .append( size.getAvgObjSize()).append( " Б/док.");
+            StorageReport.CollectionSize before = previous == null ? null : find( previous.getCollections(), size.getName());
+            if( before != null){
+                text.append( " (было ").append( before.getAvgObjSize()).append( ", ").append( percent( before.getAvgObjSize(), size.getAvgObjSize())).append( ")");
+            }
+            text.append( ", всего ").append( size.getSize()).append( " Б, на диске ").append( size.getStorageSize()).append( " Б");
+        }
+        report.getSteps().forEach( ( step, millis) -> {
+            text.append( "\n  ").append( step).append( ": ").append( millis).append( " мс");
+            Long before = previous == null || previous.getSteps() == null ? null : previous.getSteps().get( step);
+            if( before != null){
+                text.append( " (было ").append( before).append( ", ").append( percent( before, millis)).append( ")");
+            }
+        });
+        logger.info( text.toString());
+    }
+
+    private static StorageReport.CollectionSize find( List<StorageReport.CollectionSize> sizes, String name){
+        if( sizes != null){
+            for( StorageReport.CollectionSize size : sizes){
+                if( size.getName().equals( name)){
+                    return size;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String percent( long before, long after){
+        return before == 0 ? "n/a" : String.format( "%+.1f%%", ( after - before) * 100.0 / before);
+    }
+
+    private static long number( Document stats, String key){
+        Object value = stats.get( key);
+        return value instanceof Number ? ( (Number) value).longValue() : 0;
+    }
+}
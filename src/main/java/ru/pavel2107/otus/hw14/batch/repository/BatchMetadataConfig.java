@@ -0,0 +1,101 @@
+package ru.pavel2107.otus.hw14.batch.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.batch.core.configuration.annotation.BatchConfigurer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.batch.BasicBatchConfigurer;
+import org.springframework.boot.autoconfigure.batch.BatchDataSourceInitializer;
+import org.springframework.boot.autoconfigure.batch.BatchProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import ru.pavel2107.otus.hw14.batch.writer.MongoWriteMode;
+
+//
+// Метаданные Spring Batch (JobRepository) - в отдельной базе migration.batch.datasource.*,
+// по умолчанию файловая H2 ./data/batch-meta: состояние для перезапуска переживает JVM,
+// а записи метаданных не идут в ту же базу, из которой читаются данные.
+// migration.batch.metadata.shared=true - метаданные в основной базе spring.datasource (как раньше).
+//
+// Раз DataSource'ов два, основной объявлен здесь же как @Primary: его получают JPA, JdbcTemplate и reader'ы.
+//
+@Configuration
+public class BatchMetadataConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties( "spring.datasource")
+    public DataSourceProperties dataSourceProperties(){
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @Primary
+    @ConfigurationProperties( "spring.datasource.hikari")
+    public HikariDataSource dataSource( DataSourceProperties dataSourceProperties){
+        return dataSourceProperties.initializeDataSourceBuilder().type( HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties( "migration.batch.datasource")
+    @ConditionalOnProperty( name = "migration.batch.metadata.shared", havingValue = "false", matchIfMissing = true)
+    public DataSourceProperties batchDataSourceProperties(){
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties( "migration.batch.datasource.hikari")
+    @ConditionalOnProperty( name = "migration.batch.metadata.shared", havingValue = "false", matchIfMissing = true)
+    public HikariDataSource batchDataSource( @Qualifier( "batchDataSourceProperties") DataSourceProperties batchDataSourceProperties){
+        return batchDataSourceProperties.initializeDataSourceBuilder().type( HikariDataSource.class).build();
+    }
+
+    //
+    // JobRepository, JobExplorer и менеджер транзакций пачек - на базе метаданных.
+    // Данные в транзакции пачки не участвуют: H2 только читается, Mongo пишется без транзакций
+    //
+    @Bean
+    public BatchConfigurer batchConfigurer( BatchProperties properties, DataSource dataSource,
+                                            @Qualifier( "batchDataSource") ObjectProvider<DataSource> batchDataSource,
+                                            ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers,
+                                            @Value( "${migration.batch.metadata.commit-every}") int commitEvery,
+                                            @Value( "${migration.batch.metadata.max-interval}") Duration maxInterval,
+                                            @Value( "${migration.mongo.write-mode}") MongoWriteMode writeMode){
+        // пачки после последней сохраненной позиции при перезапуске пишутся повторно
+        if( commitEvery > 1 && writeMode != MongoWriteMode.UPSERT){
+            throw new IllegalStateException( "migration.batch.metadata.commit-every > 1 требует migration.mongo.write-mode=UPSERT");
+        }
+
+        return new BasicBatchConfigurer( properties, batchDataSource.getIfAvailable( () -> dataSource),
+                                         transactionManagerCustomizers.getIfAvailable()){
+            @Override
+            protected JobRepository createJobRepository() throws Exception {
+                JobRepository jobRepository = super.createJobRepository();
+                return commitEvery > 1 ? new ThrottledJobRepository( jobRepository, commitEvery, maxInterval) : jobRepository;
+            }
+        };
+    }
+
+    // таблицы BATCH_* создаются в базе метаданных (по spring.batch.initialize-schema), а не в основной;
+    // на initializer никто не ссылается - создается сразу и при migration.startup.lazy=true
+    @Bean
+    @Lazy( false)
+    public BatchDataSourceInitializer batchDataSourceInitializer( BatchProperties properties, DataSource dataSource,
+                                                                  @Qualifier( "batchDataSource") ObjectProvider<DataSource> batchDataSource,
+                                                                  ResourceLoader resourceLoader){
+        return new BatchDataSourceInitializer( batchDataSource.getIfAvailable( () -> dataSource), resourceLoader, properties);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.pavel2107.otus.hw14.batch.repository;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersIncrementer;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+
+import java.util.List;
+
+//
+// Параметры следующего запуска job: если последний запуск упал или остановлен - те же параметры,
+// т.е. перезапуск того же JobInstance с сохраненных позиций шагов, иначе - новый run.id.
+// Boot при запуске с incrementer'ом всегда берет следующий run.id и упавший запуск не продолжает.
+//
+public class RestartFailedIncrementer implements JobParametersIncrementer {
+
+    private final JobExplorer              jobExplorer;
+    private final String                   jobName;
+    private final JobParametersIncrementer next = new RunIdIncrementer();
+
+    public RestartFailedIncrementer( JobExplorer jobExplorer, String jobName){
+        this.jobExplorer = jobExplorer;
+        this.jobName     = jobName;
+    }
+
+    @Override
+    public JobParameters getNext( JobParameters parameters) {
+        List<JobInstance> last = jobExplorer.getJobInstances( jobName, 0, 1);
+        if( !last.isEmpty()){
+            List<JobExecution> executions = jobExplorer.getJobExecutions( last.get( 0));
+            if( !executions.isEmpty()){
+                BatchStatus status = executions.get( 0).getStatus();
+                if( status == BatchStatus.FAILED || status == BatchStatus.STOPPED){
+                    return executions.get( 0).getJobParameters();
+                }
+            }
+        }
+        return next.getNext( parameters);
+    }
+}
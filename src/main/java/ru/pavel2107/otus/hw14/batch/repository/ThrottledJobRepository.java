@@ -0,0 +1,154 @@
+package ru.pavel2107.otus.hw14.batch.repository;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//
+// Метаданные шага пишутся не на каждой пачке: пока шаг идет (STARTED), обновление StepExecution
+// и сериализация его ExecutionContext уходят в базу раз в commitEvery пачек или не реже maxInterval.
+// Начало и конец шага, партиции и все, что касается job, пишутся сразу.
+//
+// Цена - при перезапуске шаг продолжает с последней сохраненной позиции, т.е. до commitEvery - 1 пачек
+// переписываются заново (поэтому commitEvery > 1 только с UPSERT), и сигнал остановки job шаг замечает
+// реже: его проверка - часть обновления StepExecution.
+//
+public class ThrottledJobRepository implements JobRepository {
+
+    private final JobRepository delegate;
+    private final int           commitEvery;
+    private final long          maxIntervalNanos;
+
+    // по id StepExecution - сколько пачек пропущено и когда писали в последний раз
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    public ThrottledJobRepository( JobRepository delegate, int commitEvery, Duration maxInterval){
+        this.delegate         = delegate;
+        this.commitEvery      = commitEvery;
+        this.maxIntervalNanos = maxInterval.toNanos();
+    }
+
+    @Override
+    public void update( StepExecution stepExecution) {
+        if( !running( stepExecution)){
+            pending.remove( stepExecution.getId());
+            delegate.update( stepExecution);
+        } else if( pending( stepExecution).updateDue()){
+            delegate.update( stepExecution);
+        }
+    }
+
+    @Override
+    public void updateExecutionContext( StepExecution stepExecution) {
+        if( !running( stepExecution) || pending( stepExecution).contextDue()){
+            delegate.updateExecutionContext( stepExecution);
+        }
+    }
+
+    private boolean running( StepExecution stepExecution){
+        return stepExecution.getId() != null
+            && stepExecution.getStatus() == BatchStatus.STARTED
+            && stepExecution.getEndTime() == null;
+    }
+
+    private Pending pending( StepExecution stepExecution){
+        return pending.computeIfAbsent( stepExecution.getId(), id -> new Pending());
+    }
+
+    //
+    // счетчики одного шага: его пачки идут в одном потоке, update и updateExecutionContext - по разу на пачку
+    //
+    private class Pending {
+        private int  updates  = -1;
+        private int  contexts = -1;
+        private long updated  = System.nanoTime();
+        private long saved    = System.nanoTime();
+
+        private boolean updateDue(){
+            long now = System.nanoTime();
+            if( ++updates % commitEvery == 0 || now - updated >= maxIntervalNanos){
+                updated = now;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean contextDue(){
+            long now = System.nanoTime();
+            if( ++contexts % commitEvery == 0 || now - saved >= maxIntervalNanos){
+                saved = now;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    // ----- дальше без изменений
+
+    @Override
+    public boolean isJobInstanceExists( String jobName, JobParameters jobParameters) {
+        return delegate.isJobInstanceExists( jobName, jobParameters);
+    }
+
+    @Override
+    public JobInstance createJobInstance( String jobName, JobParameters jobParameters) {
+        return delegate.createJobInstance( jobName, jobParameters);
+    }
+
+    @Override
+    public JobExecution createJobExecution( JobInstance jobInstance, JobParameters jobParameters, String jobConfigurationLocation) {
+        return delegate.createJobExecution( jobInstance, jobParameters, jobConfigurationLocation);
+    }
+
+    @Override
+    public JobExecution createJobExecution( String jobName, JobParameters jobParameters)
+            throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+        return delegate.createJobExecution( jobName, jobParameters);
+    }
+
+    @Override
+    public void update( JobExecution jobExecution) {
+        delegate.update( jobExecution);
+    }
+
+    @Override
+    public void add( StepExecution stepExecution) {
+        delegate.add( stepExecution);
+    }
+
+    @Override
+    public void addAll( Collection<StepExecution> stepExecutions) {
+        delegate.addAll( stepExecutions);
+    }
+
+    @Override
+    public void updateExecutionContext( JobExecution jobExecution) {
+        delegate.updateExecutionContext( jobExecution);
+    }
+
+    @Override
+    public StepExecution getLastStepExecution( JobInstance jobInstance, String stepName) {
+        return delegate.getLastStepExecution( jobInstance, stepName);
+    }
+
+    @Override
+    public int getStepExecutionCount( JobInstance jobInstance, String stepName) {
+        return delegate.getStepExecutionCount( jobInstance, stepName);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution( String jobName, JobParameters jobParameters) {
+        return delegate.getLastJobExecution( jobName, jobParameters);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import java.nio.ByteBuffer;
+
+//
+// Одна сторона сверки: документы с числовым id в диапазоне [minId, maxId], в любом порядке,
+// в виде BSON - как документ лежит в Mongo (цель) или как его записала бы миграция (источник)
+//
+public interface DocumentSource {
+
+    interface Visitor {
+        void visit( long id, ByteBuffer bson);
+    }
+
+    void scan( long minId, long maxId, Visitor visitor) throws Exception;
+}
@@ -0,0 +1,56 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.util.function.BiFunction;
+
+//
+// Источник сверки: те же reader и processor, что у шага миграции, и converter - тот документ,
+// который миграция записала бы сейчас. Читается потоком, как и в шаге
+//
+public class JdbcDocumentSource<T> implements DocumentSource {
+
+    private final BiFunction<Long, Long, ItemStreamReader<? extends T>> readers;
+    private final ItemProcessor<? super T, ?>                          processor;
+    private final MongoConverter                                       converter;
+    private final Codec<Document>                                      codec;
+
+    // readers - reader диапазона id, processor - null, если шаг без processor'а
+    public JdbcDocumentSource( BiFunction<Long, Long, ItemStreamReader<? extends T>> readers, ItemProcessor<? super T, ?> processor,
+                               MongoConverter converter, Codec<Document> codec){
+        this.readers   = readers;
+        this.processor = processor;
+        this.converter = converter;
+        this.codec     = codec;
+    }
+
+    @Override
+    public void scan( long minId, long maxId, Visitor visitor) throws Exception {
+        ItemStreamReader<? extends T> reader = readers.apply( minId, maxId);
+        if( reader instanceof InitializingBean){
+            ( (InitializingBean) reader).afterPropertiesSet();
+        }
+        reader.open( new ExecutionContext());
+        try{
+            T item;
+            while( ( item = reader.read()) != null){
+                Object entity = processor == null ? item : processor.process( item);
+                if( entity == null){
+                    continue;
+                }
+                Document document = new Document();
+                converter.write( entity, document);
+                visitor.visit( Long.parseLong( (String) document.get( "_id")), new RawBsonDocument( document, codec).getByteBuffer().asNIO());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Цель сверки: документы коллекции как они есть, без разбора в Document (RawBsonDocument).
+// _id - строка числа, поэтому числовой диапазон - это не один отрезок строк, а по отрезку на каждую длину числа:
+// [lo, hi] = ["lo", "99..9"] длины lo, ..., ["10..0", "hi"] длины hi, каждый с проверкой длины по regex.
+// Все отрезки идут по индексу _id; документы с нечисловым _id миграция не создает, сверка их не видит
+//
+public class MongoDocumentSource implements DocumentSource {
+
+    private static final int MAX_DIGITS = 19;
+
+    private final MongoCollection<RawBsonDocument> collection;
+
+    public MongoDocumentSource( MongoCollection<?> collection){
+        this.collection = collection.withDocumentClass( RawBsonDocument.class);
+    }
+
+    @Override
+    public void scan( long minId, long maxId, Visitor visitor) {
+        try( MongoCursor<RawBsonDocument> cursor = collection.find( between( minId, maxId)).iterator()){
+            while( cursor.hasNext()){
+                RawBsonDocument document = cursor.next();
+                BsonValue id = document.get( "_id");
+                if( id.isString()){
+                    visitor.visit( Long.parseLong( id.asString().getValue()), document.getByteBuffer().asNIO());
+                }
+            }
+        }
+    }
+
+    static Bson between( long minId, long maxId){
+        List<Bson> ranges = new ArrayList<>();
+        long lo = Math.max( minId, 0);
+        for( int digits = Long.toString( lo).length(); lo <= maxId && digits <= MAX_DIGITS; digits++){
+            long hi = digits == MAX_DIGITS ? maxId : Math.min( maxId, pow10( digits) - 1);
+            ranges.add( Filters.and( Filters.gte( "_id", Long.toString( lo)),
+                                     Filters.lte( "_id", Long.toString( hi)),
+                                     Filters.regex( "_id", "^[0-9]{" + digits + "}$")));
+            if( hi == maxId){
+                break;
+            }
+            lo = hi + 1;
+        }
+        if( ranges.isEmpty()){
+            return Filters.in( "_id");
+        }
+        return ranges.size() == 1 ? ranges.get( 0) : Filters.or( ranges);
+    }
+
+    private static long pow10( int digits){
+        long result = 1;
+        for( int i = 0; i < digits; i++){
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//
+// Сводка одной стороны по диапазону id [lo, hi]: диапазон делится на fanout листьев равной ширины,
+// у листа - число документов и сумма 64-битных хэшей их BSON.
+// Сумма не зависит от порядка документов, поэтому стороны читаются как удобно (H2 по id, Mongo по индексу _id),
+// а в памяти - только массивы листьев. Совпали суммы диапазона - совпали все его листья с вероятностью 1 - 2^-64.
+//
+class RangeDigest {
+
+    private final long   lo;
+    private final long   hi;
+    private final long   width;
+    private final long[] sums;
+    private final int[]  counts;
+
+    private long sum;
+    private long count;
+
+    RangeDigest( long lo, long hi, int fanout){
+        this.lo     = lo;
+        this.hi     = hi;
+        this.width  = ( hi - lo) / fanout + 1;
+        int leaves  = (int) ( ( hi - lo) / width) + 1;
+        this.sums   = new long[ leaves];
+        this.counts = new int[ leaves];
+    }
+
+    void add( long id, long hash){
+        int leaf = (int) ( ( id - lo) / width);
+        sums[ leaf]   += hash;
+        counts[ leaf] ++;
+        sum   += hash;
+        count ++;
+    }
+
+    int leaves(){
+        return sums.length;
+    }
+
+    long leafLo( int leaf){
+        return lo + leaf * width;
+    }
+
+    long leafHi( int leaf){
+        long leafLo = leafLo( leaf);
+        // без переполнения у последнего листа диапазона до Long.MAX_VALUE
+        return hi - leafLo < width ? hi : leafLo + width - 1;
+    }
+
+    int count( int leaf){
+        return counts[ leaf];
+    }
+
+    long count(){
+        return count;
+    }
+
+    boolean sameAs( RangeDigest other){
+        return sum == other.sum && count == other.count;
+    }
+
+    boolean sameLeaf( RangeDigest other, int leaf){
+        return sums[ leaf] == other.sums[ leaf] && counts[ leaf] == other.counts[ leaf];
+    }
+
+    //
+    // некриптографический хэш: блоки по 8 байт с перемешиванием fmix64 (MurmurHash3)
+    //
+    static long hash( ByteBuffer bson){
+        ByteBuffer buffer = bson.duplicate().order( ByteOrder.LITTLE_ENDIAN);
+        long h = 0x9E3779B97F4A7C15L ^ buffer.remaining();
+        while( buffer.remaining() >= 8){
+            h = Long.rotateLeft( h ^ mix( buffer.getLong()), 27) * 0x9E3779B97F4A7C15L + 0x52DCE729L;
+        }
+        long tail = 0;
+        for( int shift = 0; buffer.hasRemaining(); shift += 8){
+            tail |= ( buffer.get() & 0xFFL) << shift;
+        }
+        return mix( h ^ mix( tail));
+    }
+
+    private static long mix( long k){
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.pavel2107.otus.hw14.batch.cache.ReferenceCache;
+import ru.pavel2107.otus.hw14.batch.listener.MetricsStepListener;
+import ru.pavel2107.otus.hw14.batch.mapper.AuthorRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.GenreRowMapper;
+import ru.pavel2107.otus.hw14.batch.partition.ColumnRangePartitioner;
+import ru.pavel2107.otus.hw14.batch.reader.BookCommentsItemReader;
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.CommentStorage;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBookView;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// stepVerify - сверка H2 и Mongo после миграции, подключается последним этапом migration.job.stages.
+// Партиции - диапазоны id каждой из таблиц genre, authors, books, сверяются параллельно в migrationTaskExecutor.
+// Крайние диапазоны таблицы дополнительно ищут лишние документы за пределами id таблицы
+//
+@Configuration
+@EnableBatchProcessing
+public class VerifyConfig {
+
+    private static final String TABLE = "verify.table";
+    private static final String FIRST = "verify.first";
+    private static final String LAST  = "verify.last";
+
+    @Autowired private StepBuilderFactory stepBuilderFactory;
+    @Autowired private DataSource dataSource;
+    @Autowired private MongoTemplate mongoTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TaskExecutor migrationTaskExecutor;
+    @Autowired private TaskExecutor flowTaskExecutor;
+    @Autowired private MetricsStepListener stepMetricsListener;
+    @Autowired private ReferenceCache<MongoAuthor> authorCache;
+    @Autowired private ReferenceCache<MongoGenre> genreCache;
+    @Autowired private ItemProcessor<MongoBook, MongoBookView> processorBook;
+    @Value( "${migration.book.layout}") private BookLayout layout;
+    @Value( "${migration.comments.storage}") private CommentStorage commentStorage;
+    @Value( "${migration.comments.embedded}") private int embeddedComments;
+    @Value( "${migration.verify.grid-size}") private int gridSize;
+    @Value( "${migration.verify.fetch-size}") private int fetchSize;
+
+    @Bean
+    @StepScope
+    VerifyTasklet verifyTasklet( @Value( "#{stepExecutionContext['verify.table']}") String table,
+                                 @Value( "#{stepExecutionContext['minValue']}") Long minId,
+                                 @Value( "#{stepExecutionContext['maxValue']}") Long maxId,
+                                 @Value( "#{stepExecutionContext['verify.first']}") boolean first,
+                                 @Value( "#{stepExecutionContext['verify.last']}") boolean last,
+                                 @Value( "${migration.verify.fanout}") int fanout,
+                                 @Value( "${migration.verify.leaf-size}") int leafSize,
+                                 @Value( "${migration.verify.report-limit}") int reportLimit){
+        Codec<Document> codec = mongoTemplate.getDb().getCodecRegistry().get( Document.class);
+        String collectionName;
+        JdbcDocumentSource<?> source;
+        switch( table){
+            case "genre":
+                collectionName = mongoTemplate.getCollectionName( MongoGenre.class);
+                source = new JdbcDocumentSource<>( ( lo, hi) -> cursor( "genre", new GenreRowMapper(), lo, hi), null, mongoTemplate.getConverter(), codec);
+                break;
+            case "authors":
+                collectionName = mongoTemplate.getCollectionName( MongoAuthor.class);
+                source = new JdbcDocumentSource<>( ( lo, hi) -> cursor( "authors", new AuthorRowMapper(), lo, hi), null, mongoTemplate.getConverter(), codec);
+                break;
+            case "books":
+                collectionName = mongoTemplate.getCollectionName( layout.getDocumentType());
+                source = new JdbcDocumentSource<MongoBook>( this::books, processorBook, mongoTemplate.getConverter(), codec);
+                break;
+            default:
+                throw new IllegalStateException( "Нет сверки для таблицы " + table);
+        }
+
+        VerifyTasklet tasklet = new VerifyTasklet( collectionName, source, new MongoDocumentSource( mongoTemplate.getCollection( collectionName)),
+                                                   minId, maxId, mongoTemplate, flowTaskExecutor);
+        tasklet.setFanout( fanout);
+        tasklet.setLeafSize( leafSize);
+        tasklet.setReportLimit( reportLimit);
+        tasklet.setTableEdges( first, last);
+        return tasklet;
+    }
+
+    // книга - так же, как ее собирает stepBook
+    private BookCommentsItemReader books( long minId, long maxId){
+        BookCommentsItemReader reader = new BookCommentsItemReader( dataSource, minId, maxId, authorCache::get, genreCache::get);
+        if( commentStorage == CommentStorage.BUCKETED){
+            reader.setEmbeddedComments( embeddedComments);
+        }
+        reader.setFetchSize( fetchSize);
+        reader.setSaveState( false);
+        return reader;
+    }
+
+    private <T> JdbcCursorItemReader<T> cursor( String table, RowMapper<T> rowMapper, long minId, long maxId){
+        JdbcCursorItemReader<T> reader = new JdbcCursorItemReader<>();
+        reader.setDataSource( dataSource);
+        reader.setSql( "select * from " + table + " where id between ? and ? order by id");
+        reader.setPreparedStatementSetter( new ArgumentPreparedStatementSetter( new Object[]{ minId, maxId}));
+        reader.setRowMapper( rowMapper);
+        reader.setFetchSize( fetchSize);
+        reader.setSaveState( false);
+        return reader;
+    }
+
+    @Bean
+    public Step stepVerifyWorker( VerifyTasklet verifyTasklet){
+        return stepBuilderFactory.get( "stepVerifyWorker")
+                .listener( stepMetricsListener)
+                .tasklet( verifyTasklet)
+                .build();
+    }
+
+    @Bean
+    public Step stepVerify( Step stepVerifyWorker){
+        return stepBuilderFactory.get( "stepVerify")
+                .partitioner( "stepVerifyWorker", partitioner())
+                .step( stepVerifyWorker)
+                .gridSize( gridSize)
+                .taskExecutor( migrationTaskExecutor)
+                .build();
+    }
+
+    private Partitioner partitioner(){
+        return gridSize -> {
+            Map<String, ExecutionContext> result = new HashMap<>();
+            for( String table : new String[]{ "genre", "authors", "books"}){
+                Map<String, ExecutionContext> ranges = new ColumnRangePartitioner( jdbcTemplate, table, "id").partition( gridSize);
+                long min = ranges.values().stream().mapToLong( range -> range.getLong( ColumnRangePartitioner.MIN_VALUE)).min().getAsLong();
+                long max = ranges.values().stream().mapToLong( range -> range.getLong( ColumnRangePartitioner.MAX_VALUE)).max().getAsLong();
+                for( Map.Entry<String, ExecutionContext> range : ranges.entrySet()){
+                    ExecutionContext context = range.getValue();
+                    context.putString( TABLE, table);
+                    context.put( FIRST, context.getLong( ColumnRangePartitioner.MIN_VALUE) == min);
+                    context.put( LAST,  context.getLong( ColumnRangePartitioner.MAX_VALUE) == max);
+                    result.put( table + "." + range.getKey(), context);
+                }
+            }
+            return result;
+        };
+    }
+}
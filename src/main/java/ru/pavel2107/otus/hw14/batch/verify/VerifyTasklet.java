@@ -0,0 +1,214 @@
+package ru.pavel2107.otus.hw14.batch.verify;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+//
+// Сверка одного диапазона id таблицы и коллекции, Merkle-подобно:
+// обе стороны сводятся в RangeDigest (fanout листьев), совпали суммы - диапазон сверен за один проход.
+// Несовпавший лист, в котором больше leafSize документов, снова сводится с fanout листьями - только он;
+// лист поменьше сравнивается по документам: отсутствующие (MISSING), лишние (EXTRA) и отличающиеся (DIFFERENT).
+// В памяти - массивы листьев и не больше leafSize хэшей с каждой стороны.
+//
+// Расхождения пишутся в коллекцию migration_verify (не больше reportLimit на диапазон, дальше только счет),
+// отчет прошлой сверки по этому диапазону перед этим удаляется. Есть расхождения - exit status шага MISMATCH.
+// setTableEdges - диапазон крайний в таблице: документы цели до minId / после maxId лишние без сравнения
+//
+public class VerifyTasklet implements Tasklet {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    public static final String     COLLECTION = "migration_verify";
+    public static final ExitStatus MISMATCH   = new ExitStatus( "MISMATCH");
+
+    private final String         collectionName;
+    private final DocumentSource source;
+    private final DocumentSource target;
+    private final long           minId;
+    private final long           maxId;
+    private final MongoTemplate  mongoTemplate;
+    private final TaskExecutor   taskExecutor;
+
+    private int fanout      = 1024;
+    private int leafSize    = 1000;
+    private int reportLimit = 10000;
+    private boolean first;
+    private boolean last;
+
+    private final List<Document> report = new ArrayList<>();
+    private long missing;
+    private long extra;
+    private long different;
+
+    // taskExecutor - поток для чтения Mongo, пока в текущем читается H2
+    public VerifyTasklet( String collectionName, DocumentSource source, DocumentSource target, long minId, long maxId,
+                          MongoTemplate mongoTemplate, TaskExecutor taskExecutor){
+        this.collectionName = collectionName;
+        this.source         = source;
+        this.target         = target;
+        this.minId          = minId;
+        this.maxId          = maxId;
+        this.mongoTemplate  = mongoTemplate;
+        this.taskExecutor   = taskExecutor;
+    }
+
+    public void setFanout( int fanout) {
+        this.fanout = fanout;
+    }
+
+    public void setLeafSize( int leafSize) {
+        this.leafSize = leafSize;
+    }
+
+    public void setReportLimit( int reportLimit) {
+        this.reportLimit = reportLimit;
+    }
+
+    public void setTableEdges( boolean first, boolean last) {
+        this.first = first;
+        this.last  = last;
+    }
+
+    @Override
+    public RepeatStatus execute( StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        MongoCollection<Document> reports = mongoTemplate.getCollection( COLLECTION);
+        reports.deleteMany( Filters.and( Filters.eq( "collection", collectionName),
+                                         Filters.gte( "id", first ? 0 : minId), Filters.lte( "id", last ? Long.MAX_VALUE : maxId)));
+
+        long start = System.currentTimeMillis();
+        RangeDigest[] digests = digest( minId, maxId);
+        reconcile( digests[ 0], digests[ 1]);
+        long outside = 0;
+        if( first && minId > 0){
+            outside += extra( 0, minId - 1);
+        }
+        if( last && maxId < Long.MAX_VALUE){
+            outside += extra( Math.max( maxId + 1, 0), Long.MAX_VALUE);
+        }
+        if( !report.isEmpty()){
+            reports.insertMany( report);
+        }
+
+        ExecutionContext context = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        context.putLong( "verify.source",    digests[ 0].count());
+        context.putLong( "verify.target",    digests[ 1].count() + outside);
+        context.putLong( "verify.missing",   missing);
+        context.putLong( "verify.extra",     extra);
+        context.putLong( "verify.different", different);
+
+        String summary = collectionName + " [" + minId + ", " + maxId + "]: источник " + digests[ 0].count() + ", цель " + ( digests[ 1].count() + outside)
+                       + ", нет " + missing + ", лишних " + extra + ", отличаются " + different
+                       + " (" + ( System.currentTimeMillis() - start) + " мс)";
+        if( missing + extra + different > 0){
+            logger.warn( "Сверка " + summary);
+            contribution.setExitStatus( MISMATCH.addExitDescription( summary));
+        } else {
+            logger.info( "Сверка " + summary);
+        }
+        return RepeatStatus.FINISHED;
+    }
+
+    private void reconcile( RangeDigest expected, RangeDigest actual) throws Exception {
+        if( expected.sameAs( actual)){
+            return;
+        }
+        for( int leaf = 0; leaf < expected.leaves(); leaf++){
+            if( expected.sameLeaf( actual, leaf)){
+                continue;
+            }
+            long lo = expected.leafLo( leaf);
+            long hi = expected.leafHi( leaf);
+            if( hi - lo < leafSize || Math.max( expected.count( leaf), actual.count( leaf)) <= leafSize){
+                compare( lo, hi);
+            } else {
+                RangeDigest[] digests = digest( lo, hi);
+                reconcile( digests[ 0], digests[ 1]);
+            }
+        }
+    }
+
+    // обе стороны диапазона одновременно: источник - в текущем потоке, цель - в taskExecutor
+    private RangeDigest[] digest( long lo, long hi) throws Exception {
+        RangeDigest expected = new RangeDigest( lo, hi, fanout);
+        RangeDigest actual   = new RangeDigest( lo, hi, fanout);
+        CompletableFuture<Void> target = CompletableFuture.runAsync( () -> scan( this.target, lo, hi, ( id, bson) -> actual.add( id, RangeDigest.hash( bson))), taskExecutor);
+        try{
+            source.scan( lo, hi, ( id, bson) -> expected.add( id, RangeDigest.hash( bson)));
+            target.join();
+        } catch( CompletionException e){
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            target.cancel( false);
+        }
+        return new RangeDigest[]{ expected, actual};
+    }
+
+    private void compare( long lo, long hi) throws Exception {
+        Map<Long, Long> expected = new HashMap<>();
+        Map<Long, Long> actual   = new HashMap<>();
+        source.scan( lo, hi, ( id, bson) -> expected.put( id, RangeDigest.hash( bson)));
+        target.scan( lo, hi, ( id, bson) -> actual.put(   id, RangeDigest.hash( bson)));
+
+        for( Map.Entry<Long, Long> entry : expected.entrySet()){
+            Long hash = actual.remove( entry.getKey());
+            if( hash == null){
+                missing++;
+                report( entry.getKey(), "MISSING");
+            } else if( !hash.equals( entry.getValue())){
+                different++;
+                report( entry.getKey(), "DIFFERENT");
+            }
+        }
+        for( Long id : actual.keySet()){
+            extra++;
+            report( id, "EXTRA");
+        }
+    }
+
+    // за пределами id таблицы источник пуст, каждый документ цели - лишний
+    private long extra( long lo, long hi) throws Exception {
+        long before = extra;
+        target.scan( lo, hi, ( id, bson) -> {
+            extra++;
+            report( id, "EXTRA");
+        });
+        return extra - before;
+    }
+
+    private void report( long id, String status){
+        if( report.size() < reportLimit){
+            report.add( new Document( "collection", collectionName)
+                    .append( "id",     id)
+                    .append( "status", status)
+                    .append( "time",   new Date()));
+        }
+    }
+
+    private static void scan( DocumentSource source, long lo, long hi, DocumentSource.Visitor visitor){
+        try{
+            source.scan( lo, hi, visitor);
+        } catch( RuntimeException e){
+            throw e;
+        } catch( Exception e){
+            throw new CompletionException( e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+
+//
+// Пачки комментариев - заменой по id (id пачки детерминирован, повторная запись после перезапуска безопасна),
+// затем у книг, чья последняя пачка есть в этой записи, удаляются пачки с большими номерами от прошлых прогонов.
+// Поиск старых пачек - по префиксу _id "<bookId>:", т.е. по индексу _id, без отдельного индекса.
+//
+public class CommentBucketItemWriter implements ItemWriter<MongoCommentBucket> {
+
+    private final MongoTemplate                           mongoTemplate;
+    private final MongoBulkItemWriter<MongoCommentBucket> delegate;
+    private final String                                  collectionName;
+
+    public CommentBucketItemWriter( MongoTemplate mongoTemplate){
+        this.mongoTemplate  = mongoTemplate;
+        this.delegate       = new MongoBulkItemWriter<>( mongoTemplate, MongoCommentBucket.class, MongoWriteMode.UPSERT);
+        this.collectionName = mongoTemplate.getCollectionName( MongoCommentBucket.class);
+    }
+
+    public void setDirectEncoding( boolean directEncoding) {
+        delegate.setDirectEncoding( directEncoding);
+    }
+
+    @Override
+    public void write( List<? extends MongoCommentBucket> items) {
+        List<MongoCommentBucket> buckets = new ArrayList<>( items.size());
+        List<Bson>               stale   = new ArrayList<>();
+        for( MongoCommentBucket bucket : items){
+            if( !bucket.getComments().isEmpty()){
+                buckets.add( bucket);
+            }
+            if( bucket.isLast()){
+                stale.add( Filters.and(
+                        // bookId - цифры, префиксный regex без экранирования идет по индексу
+                        Filters.regex( "_id", "^" + bucket.getBookId() + ":"),
+                        Filters.gt( "bucket", bucket.getBucket())));
+            }
+        }
+
+        delegate.write( buckets);
+        if( !stale.isEmpty()){
+            mongoTemplate.getCollection( collectionName).deleteMany( Filters.or( stale));
+        }
+    }
+}
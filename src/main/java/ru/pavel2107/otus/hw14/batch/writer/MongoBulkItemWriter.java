@@ -0,0 +1,149 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//
+// Пишет всю пачку одним неупорядоченным bulkWrite вместо save() на каждый документ.
+// Ошибки отдельных документов - MongoDocumentWriteException (пропускаемая): остальные документы пачки записаны,
+// шаг повторяет пачку по одной записи и пропускает только не записанные, в пределах skip-limit.
+// Повтор после ошибки (такой пачки или временной) в режиме INSERT видит уже записанные документы:
+// duplicate key по _id на документе, попытка записи которого была, считается успешной записью;
+// дубль по другому уникальному индексу - ошибка документа в любом режиме.
+//
+// setDirectEncoding( true) - документы собирают MongoDocumentEncoders, без converter'а и его reflection
+// (совпадение с converter'ом до байта BSON проверяет MongoDocumentEncodersTest).
+//
+public class MongoBulkItemWriter<T> implements ItemWriter<T> {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered( false);
+    private static final ReplaceOptions   UPSERT    = new ReplaceOptions().upsert( true);
+    private static final int              DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate  mongoTemplate;
+    private final Class<T>       entityClass;
+    private final String         collectionName;
+    private final MongoWriteMode writeMode;
+
+    // _id документов, записанных или, возможно, записанных до ошибки пачки - до их повторной записи
+    private final Set<Object> unconfirmed = ConcurrentHashMap.newKeySet();
+
+    private MongoDocumentEncoder<T> encoder;
+
+    public MongoBulkItemWriter( MongoTemplate mongoTemplate, Class<T> entityClass, MongoWriteMode writeMode){
+        this.mongoTemplate  = mongoTemplate;
+        this.entityClass    = entityClass;
+        this.collectionName = mongoTemplate.getCollectionName( entityClass);
+        this.writeMode      = writeMode;
+    }
+
+    public void setDirectEncoding( boolean directEncoding) {
+        this.encoder = directEncoding ? MongoDocumentEncoders.forType( entityClass, mongoTemplate.getConverter()) : null;
+    }
+
+    @Override
+    public void write( List<? extends T> items) {
+        if( items.isEmpty()){
+            return;
+        }
+
+        List<WriteModel<Document>> models = new ArrayList<>( items.size());
+        List<Object>               ids    = new ArrayList<>( items.size());
+        for( T item : items){
+            Document document = toDocument( item);
+            ids.add( document.get( "_id"));
+            if( writeMode == MongoWriteMode.INSERT){
+                models.add( new InsertOneModel<>( document));
+            } else {
+                models.add( new ReplaceOneModel<>( new Document( "_id", document.get( "_id")), document, UPSERT));
+            }
+        }
+
+        List<BulkWriteError> errors;
+        try {
+            errors = mongoTemplate.execute( collectionName, collection -> {
+                try {
+                    collection.bulkWrite( models, UNORDERED);
+                    return Collections.<BulkWriteError>emptyList();
+                } catch( MongoBulkWriteException e){
+                    // ошибка write concern относится ко всей пачке, а не к документам
+                    if( e.getWriteConcernError() != null){
+                        throw e;
+                    }
+                    return e.getWriteErrors();
+                }
+            });
+        } catch( RuntimeException e){
+            // неизвестно, какие документы успели записаться
+            unconfirmed.addAll( ids);
+            throw e;
+        }
+
+        List<Object>         failed     = new ArrayList<>();
+        List<BulkWriteError> itemErrors = new ArrayList<>();
+        boolean[]            notWritten = new boolean[ items.size()];
+        for( BulkWriteError error : errors){
+            int index = error.getIndex();
+            if( writeMode == MongoWriteMode.INSERT && duplicateId( error) && unconfirmed.contains( ids.get( index))){
+                continue;
+            }
+            notWritten[ index] = true;
+            failed.add( items.get( index));
+            itemErrors.add( error);
+        }
+
+        unconfirmed.removeAll( ids);
+        if( !failed.isEmpty()){
+            // записанные документы пачки шаг при повторе запишет еще раз
+            for( int i = 0; i < ids.size(); i++){
+                if( !notWritten[ i]){
+                    unconfirmed.add( ids.get( i));
+                }
+            }
+            logger.warn( "Документов не записано в " + collectionName + ": " + failed.size());
+            throw new MongoDocumentWriteException( failed, itemErrors);
+        }
+    }
+
+    // duplicate key именно по _id: повтор вставки того же документа. Дубль по другому уникальному индексу
+    // (например, books.isbn) - ошибка документа и при повторе.
+    // keyPattern в ошибке - с Mongo 4.2, раньше индекс есть только в тексте: "... index: _id_ dup key: ..."
+    private static boolean duplicateId( BulkWriteError error){
+        if( error.getCode() != DUPLICATE_KEY){
+            return false;
+        }
+        BsonValue keyPattern = error.getDetails().get( "keyPattern");
+        if( keyPattern != null && keyPattern.isDocument()){
+            return keyPattern.asDocument().keySet().equals( Collections.singleton( "_id"));
+        }
+        return error.getMessage() != null && error.getMessage().contains( " index: _id_ ");
+    }
+
+    private Document toDocument( T item){
+        return encoder != null ? encoder.encode( item) : convert( item);
+    }
+
+    private Document convert( T item){
+        Document document = new Document();
+        mongoTemplate.getConverter().write( item, document);
+        return document;
+    }
+}
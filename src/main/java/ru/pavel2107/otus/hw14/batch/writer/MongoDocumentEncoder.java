@@ -0,0 +1,11 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import org.bson.Document;
+
+//
+// Документ Mongo из объекта без MappingMongoConverter
+//
+public interface MongoDocumentEncoder<T> {
+
+    Document encode( T item);
+}
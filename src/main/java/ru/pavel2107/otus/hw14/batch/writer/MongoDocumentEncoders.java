@@ -0,0 +1,229 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import com.mongodb.DBRef;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBookView;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoEmbeddedBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Ручные encoder'ы документов миграции. Повторяют то, что пишет MappingMongoConverter с настройками по умолчанию:
+// _id первым (строка, похожая на ObjectId, - ObjectId), дальше поля в порядке объявления, null не пишутся,
+// _class последним и только у корневого документа, @DBRef - DBRef на коллекцию,
+// LocalDate / LocalDateTime - Date в часовом поясе системы.
+// Имена полей берутся из mapping context'а converter'а (CompactFieldNamingStrategy - короткие),
+// LocalDateTime пишется числом, если так настроены преобразования converter'а (CommentTime.EPOCH_MILLIS).
+// Поменялся класс документа - меняется и encoder: расхождение с converter'ом ловит MongoDocumentEncodersTest.
+//
+public final class MongoDocumentEncoders {
+
+    private static final String CLASS_KEY = "_class";
+
+    private final String genreName;
+
+    private final String authorName;
+    private final String authorBirthDate;
+    private final String authorEmail;
+    private final String authorPhone;
+    private final String authorAddress;
+
+    private final String bookName;
+    private final String bookAuthor;
+    private final String bookGenre;
+    private final String bookPublishingHouse;
+    private final String bookPublicationYear;
+    private final String bookPublicationPlace;
+    private final String bookIsbn;
+    private final String bookComments;
+    private final String bookCommentCount;
+
+    private final String bucketBookId;
+    private final String bucketBucket;
+    private final String bucketCount;
+    private final String bucketComments;
+
+    private final String commentName;
+    private final String commentDateTime;
+    private final String commentText;
+
+    private final boolean epochMillis;
+
+    private MongoDocumentEncoders( MongoConverter converter){
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context = converter.getMappingContext();
+
+        genreName = name( context, MongoGenre.class, "name");
+
+        authorName      = name( context, MongoAuthor.class, "name");
+        authorBirthDate = name( context, MongoAuthor.class, "birthDate");
+        authorEmail     = name( context, MongoAuthor.class, "email");
+        authorPhone     = name( context, MongoAuthor.class, "phone");
+        authorAddress   = name( context, MongoAuthor.class, "address");
+
+        // у MongoBook и MongoEmbeddedBook одни и те же свойства и имена полей
+        bookName             = name( context, MongoBook.class, "name");
+        bookAuthor           = name( context, MongoBook.class, "author");
+        bookGenre            = name( context, MongoBook.class, "genre");
+        bookPublishingHouse  = name( context, MongoBook.class, "publishingHouse");
+        bookPublicationYear  = name( context, MongoBook.class, "publicationYear");
+        bookPublicationPlace = name( context, MongoBook.class, "publicationPlace");
+        bookIsbn             = name( context, MongoBook.class, "isbn");
+        bookComments         = name( context, MongoBook.class, "comments");
+        bookCommentCount     = name( context, MongoBook.class, "commentCount");
+
+        bucketBookId   = name( context, MongoCommentBucket.class, "bookId");
+        bucketBucket   = name( context, MongoCommentBucket.class, "bucket");
+        bucketCount    = name( context, MongoCommentBucket.class, "count");
+        bucketComments = name( context, MongoCommentBucket.class, "comments");
+
+        commentName     = name( context, MongoComment.class, "name");
+        commentDateTime = name( context, MongoComment.class, "dateTime");
+        commentText     = name( context, MongoComment.class, "comment");
+
+        epochMillis = converter.convertToMongoType( LocalDateTime.of( 2000, 1, 1, 0, 0)) instanceof Long;
+    }
+
+    private static String name( MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context,
+                                Class<?> type, String property){
+        return context.getRequiredPersistentEntity( type).getRequiredPersistentProperty( property).getFieldName();
+    }
+
+    @SuppressWarnings( "unchecked")
+    public static <T> MongoDocumentEncoder<T> forType( Class<T> type, MongoConverter converter){
+        MongoDocumentEncoders encoders = new MongoDocumentEncoders( converter);
+        if( type == MongoGenre.class){
+            return item -> encoders.genre( (MongoGenre) item);
+        }
+        if( type == MongoAuthor.class){
+            return item -> encoders.author( (MongoAuthor) item, true);
+        }
+        if( type == MongoBook.class){
+            return item -> encoders.book( (MongoBook) item, true);
+        }
+        if( type == MongoEmbeddedBook.class){
+            return item -> encoders.book( (MongoEmbeddedBook) item, false);
+        }
+        if( type == MongoCommentBucket.class){
+            return item -> encoders.bucket( (MongoCommentBucket) item);
+        }
+        throw new IllegalArgumentException( "Нет encoder'а для " + type.getName());
+    }
+
+    Document genre( MongoGenre genre){
+        Document document = new Document();
+        put( document, "_id",     id( genre.getId()));
+        put( document, genreName, genre.getName());
+        document.put( CLASS_KEY, MongoGenre.class.getName());
+        return document;
+    }
+
+    Document author( MongoAuthor author, boolean root){
+        Document document = new Document();
+        put( document, "_id",           id( author.getId()));
+        put( document, authorName,      author.getName());
+        put( document, authorBirthDate, date( author.getBirthDate()));
+        put( document, authorEmail,     author.getEmail());
+        put( document, authorPhone,     author.getPhone());
+        put( document, authorAddress,   author.getAddress());
+        if( root){
+            document.put( CLASS_KEY, MongoAuthor.class.getName());
+        }
+        return document;
+    }
+
+    // dbRef - автор и жанр ссылками (MongoBook), иначе вложенными документами (MongoEmbeddedBook)
+    Document book( MongoBookView book, boolean dbRef){
+        Document document = new Document();
+        put( document, "_id",    id( book.getId()));
+        put( document, bookName, book.getName());
+        if( dbRef){
+            put( document, bookAuthor, book.getAuthor() == null ? null : new DBRef( "authors", id( book.getAuthor().getId())));
+            put( document, bookGenre,  book.getGenre()  == null ? null : new DBRef( "genres",  id( book.getGenre().getId())));
+        } else {
+            put( document, bookAuthor, book.getAuthor() == null ? null : author( book.getAuthor(), false));
+            put( document, bookGenre,  book.getGenre()  == null ? null : nestedGenre( book.getGenre()));
+        }
+        put( document, bookPublishingHouse,  book.getPublishingHouse());
+        put( document, bookPublicationYear,  book.getPublicationYear());
+        put( document, bookPublicationPlace, book.getPublicationPlace());
+        put( document, bookIsbn,             book.getIsbn());
+        put( document, bookComments,         comments( book.getComments()));
+        put( document, bookCommentCount,     book.getCommentCount());
+        document.put( CLASS_KEY, book.getClass().getName());
+        return document;
+    }
+
+    Document bucket( MongoCommentBucket bucket){
+        Document document = new Document();
+        put( document, "_id",          id( bucket.getId()));
+        put( document, bucketBookId,   bucket.getBookId());
+        put( document, bucketBucket,   bucket.getBucket());
+        put( document, bucketCount,    bucket.getCount());
+        put( document, bucketComments, comments( bucket.getComments()));
+        document.put( CLASS_KEY, MongoCommentBucket.class.getName());
+        return document;
+    }
+
+    private Document nestedGenre( MongoGenre genre){
+        Document document = new Document();
+        put( document, "_id",     id( genre.getId()));
+        put( document, genreName, genre.getName());
+        return document;
+    }
+
+    private List<Document> comments( List<MongoComment> comments){
+        if( comments == null){
+            return null;
+        }
+        List<Document> documents = new ArrayList<>( comments.size());
+        for( MongoComment comment : comments){
+            Document document = new Document();
+            put( document, commentName,     comment.getName());
+            put( document, commentDateTime, epochMillis ? millis( comment.getDateTime()) : date( comment.getDateTime()));
+            put( document, commentText,     comment.getComment());
+            documents.add( document);
+        }
+        return documents;
+    }
+
+    private static void put( Document document, String key, Object value){
+        if( value != null){
+            document.put( key, value);
+        }
+    }
+
+    private static Object id( String id){
+        if( id == null){
+            return null;
+        }
+        return ObjectId.isValid( id) ? new ObjectId( id) : id;
+    }
+
+    private static Date date( LocalDate date){
+        return date == null ? null : Date.from( date.atStartOfDay( ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Date date( LocalDateTime dateTime){
+        return dateTime == null ? null : Date.from( dateTime.atZone( ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Long millis( LocalDateTime dateTime){
+        return dateTime == null ? null : dateTime.atZone( ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
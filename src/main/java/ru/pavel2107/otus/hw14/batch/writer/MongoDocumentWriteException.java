@@ -0,0 +1,36 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import com.mongodb.bulk.BulkWriteError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Ошибки записи отдельных документов пачки, остальные документы пачки при этом записаны.
+// Пропускаемая ошибка: шаг повторяет пачку по одной записи и пропускает (с учетом skip-limit) только не записанные.
+// items - не записанные документы, codes - коды ошибок Mongo в том же порядке
+//
+public class MongoDocumentWriteException extends RuntimeException {
+
+    private final ArrayList<Object> items;
+    private final int[]             codes;
+
+    public MongoDocumentWriteException( List<?> items, List<BulkWriteError> errors){
+        super( errors.size() == 1 ? errors.get( 0).getMessage()
+                                  : "Не записано документов: " + errors.size() + ", первая ошибка: " + errors.get( 0).getMessage());
+        this.items = new ArrayList<>( items);
+        this.codes = errors.stream().mapToInt( BulkWriteError::getCode).toArray();
+    }
+
+    public List<Object> getItems() {
+        return items;
+    }
+
+    public int getCode() {
+        return codes[ 0];
+    }
+
+    public int[] getCodes() {
+        return codes.clone();
+    }
+}
@@ -0,0 +1,10 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+//
+// INSERT - только вставка, для чистой целевой базы (повторная запись того же id - ошибка документа)
+// UPSERT - замена документа по id с созданием, для повторных прогонов
+//
+public enum MongoWriteMode {
+    INSERT,
+    UPSERT
+}
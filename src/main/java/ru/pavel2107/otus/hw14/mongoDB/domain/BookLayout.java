@@ -0,0 +1,22 @@
+package ru.pavel2107.otus.hw14.mongoDB.domain;
+
+//
+// Как в коллекции books хранятся автор и жанр
+//
+// DBREF    - ссылки @DBRef на authors / genres (MongoBook), при чтении - дополнительные запросы
+// EMBEDDED - вложенные документы (MongoEmbeddedBook), книга читается одним запросом
+//
+public enum BookLayout {
+    DBREF( MongoBook.class),
+    EMBEDDED( MongoEmbeddedBook.class);
+
+    private final Class<? extends MongoBookView> documentType;
+
+    BookLayout( Class<? extends MongoBookView> documentType){
+        this.documentType = documentType;
+    }
+
+    public Class<? extends MongoBookView> getDocumentType() {
+        return documentType;
+    }
+}
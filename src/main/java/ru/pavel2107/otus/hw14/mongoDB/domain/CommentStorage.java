@@ -0,0 +1,13 @@
+package ru.pavel2107.otus.hw14.mongoDB.domain;
+
+//
+// Где хранятся комментарии книги
+//
+// EMBEDDED - все комментарии в документе книги (память и размер документа растут с числом комментариев)
+// BUCKETED - в книге только последние N, остальные - пачками MongoCommentBucket в коллекции comments
+//            (шаг stepComments); память на книгу и размер документа ограничены при любом числе комментариев
+//
+public enum CommentStorage {
+    EMBEDDED,
+    BUCKETED
+}
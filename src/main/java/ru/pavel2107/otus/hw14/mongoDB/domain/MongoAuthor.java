@@ -6,11 +6,12 @@ import lombok.ToString;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 
 @Document( collection = "authors")
 public @ToString
-class MongoAuthor {
+class MongoAuthor implements Serializable {
     @Setter @Getter @Id private String id;
     @Setter @Getter private String name;
     @Setter @Getter private LocalDate birthDate;
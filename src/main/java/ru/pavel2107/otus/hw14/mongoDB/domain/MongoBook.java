@@ -7,10 +7,11 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.io.Serializable;
 import java.util.List;
 
 @Document( collection = "books")
-public @ToString class MongoBook {
+public @ToString class MongoBook implements MongoBookView, Serializable {
 
     @Setter @Getter @Id private String id;
     @Setter @Getter private String name;
@@ -21,5 +22,6 @@ public @ToString class MongoBook {
     @Setter @Getter private String    publicationPlace;
     @Setter @Getter private String    isbn;
     @Setter @Getter private List<MongoComment> comments;
+    @Setter @Getter private Integer   commentCount;
 
 }
@@ -0,0 +1,22 @@
+package ru.pavel2107.otus.hw14.mongoDB.domain;
+
+import java.util.List;
+
+//
+// Общий вид книги для чтения, не зависит от того,
+// как хранятся автор и жанр (DBRef - MongoBook или вложенные документы - MongoEmbeddedBook)
+//
+public interface MongoBookView {
+
+    String getId();
+    String getName();
+    MongoAuthor getAuthor();
+    MongoGenre getGenre();
+    String getPublishingHouse();
+    Integer getPublicationYear();
+    String getPublicationPlace();
+    String getIsbn();
+    List<MongoComment> getComments();
+    // всего комментариев, если в книге не все (CommentStorage.BUCKETED), иначе null
+    Integer getCommentCount();
+}
@@ -4,6 +4,7 @@ package ru.pavel2107.otus.hw14.mongoDB.domain;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 // comment - сам сомментарий
 //
 
-public class MongoComment {
+public class MongoComment implements Serializable {
 
     @Setter @Getter private String name;
     @Setter @Getter private LocalDateTime dateTime;
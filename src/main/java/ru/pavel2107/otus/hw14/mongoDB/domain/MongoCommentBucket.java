@@ -0,0 +1,30 @@
+package ru.pavel2107.otus.hw14.mongoDB.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+//
+// Пачка комментариев книги, не поместившихся в документ книги (CommentStorage.BUCKETED)
+//
+// id       - <bookId>:<bucket>
+// bucket   - номер пачки, 0 - самые новые из невложенных; внутри пачки - от новых к старым
+// count    - комментариев в пачке
+// last     - последняя пачка книги: writer удаляет пачки книги с большими номерами (остались от прошлых прогонов);
+//            пустая последняя пачка только удаляет и не пишется
+//
+@Document( collection = "comments")
+public @ToString class MongoCommentBucket {
+
+    @Setter @Getter @Id private String id;
+    @Setter @Getter private String  bookId;
+    @Setter @Getter private Integer bucket;
+    @Setter @Getter private Integer count;
+    @Setter @Getter private List<MongoComment> comments;
+    @Setter @Getter @Transient private boolean last;
+}
@@ -0,0 +1,29 @@
+package ru.pavel2107.otus.hw14.mongoDB.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+//
+// Книга с автором и жанром, вложенными в документ (вместо @DBRef в MongoBook).
+// Во вложенных документах хранится только настроенная проекция полей, id есть всегда.
+//
+@Document( collection = "books")
+public @ToString class MongoEmbeddedBook implements MongoBookView {
+
+    @Setter @Getter @Id private String id;
+    @Setter @Getter private String name;
+    @Setter @Getter private MongoAuthor author;
+    @Setter @Getter private MongoGenre genre;
+    @Setter @Getter private String    publishingHouse;
+    @Setter @Getter private Integer   publicationYear;
+    @Setter @Getter private String    publicationPlace;
+    @Setter @Getter private String    isbn;
+    @Setter @Getter private List<MongoComment> comments;
+    @Setter @Getter private Integer   commentCount;
+
+}
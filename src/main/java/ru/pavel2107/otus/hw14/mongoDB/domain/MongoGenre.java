@@ -7,9 +7,11 @@ import lombok.ToString;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.io.Serializable;
+
 @Document( collection = "genres")
 @ToString
-public  class MongoGenre {
+public  class MongoGenre implements Serializable {
     @Setter @Getter @Id private String id;
     @Setter @Getter private String name;
 }
@@ -0,0 +1,11 @@
+package ru.pavel2107.otus.hw14.mongoDB.mapping;
+
+//
+// Как хранится время комментария (LocalDateTime) в Mongo:
+// DATE         - BSON date, как по умолчанию
+// EPOCH_MILLIS - int64, миллисекунды от 1970-01-01 в часовом поясе системы; тот же размер,
+//                но сравнения и сортировка - числа, без преобразования дат на клиентах
+//
+public enum CommentTime {
+    DATE, EPOCH_MILLIS
+}
@@ -0,0 +1,54 @@
+package ru.pavel2107.otus.hw14.mongoDB.mapping;
+
+import org.springframework.data.mapping.PersistentProperty;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mapping.model.PropertyNameFieldNamingStrategy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoEmbeddedBook;
+
+//
+// Короткие имена полей книг и комментариев - они повторяются в каждом документе и каждом вложенном комментарии.
+// Включается spring.data.mongodb.field-naming-strategy=ru.pavel2107.otus.hw14.mongoDB.mapping.CompactFieldNamingStrategy:
+// запись и чтение идут через один mapping context, классы и запросы по свойствам (Criteria.where( "genre.id"))
+// не меняются. Остальные классы и свойства без псевдонима - по имени свойства, как по умолчанию.
+// Меняется схема уже загруженных данных: после переключения - полная перезаливка
+//
+public class CompactFieldNamingStrategy implements FieldNamingStrategy {
+
+    private static final Map<Class<?>, Map<String, String>> ALIASES = new HashMap<>();
+
+    static {
+        Map<String, String> book = new HashMap<>();
+        book.put( "name",             "n");
+        book.put( "author",           "a");
+        book.put( "genre",            "g");
+        book.put( "publishingHouse",  "ph");
+        book.put( "publicationYear",  "py");
+        book.put( "publicationPlace", "pp");
+        book.put( "isbn",             "i");
+        book.put( "comments",         "c");
+        book.put( "commentCount",     "cc");
+        ALIASES.put( MongoBook.class,         book);
+        ALIASES.put( MongoEmbeddedBook.class, book);
+
+        Map<String, String> comment = new HashMap<>();
+        comment.put( "name",     "n");
+        comment.put( "dateTime", "t");
+        comment.put( "comment",  "c");
+        ALIASES.put( MongoComment.class, comment);
+    }
+
+    private final FieldNamingStrategy defaults = PropertyNameFieldNamingStrategy.INSTANCE;
+
+    @Override
+    public String getFieldName( PersistentProperty<?> property) {
+        Map<String, String> aliases = ALIASES.get( property.getOwner().getType());
+        String alias = aliases == null ? null : aliases.get( property.getName());
+        return alias == null ? defaults.getFieldName( property) : alias;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.pavel2107.otus.hw14.mongoDB.mapping;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Преобразования типов документов: migration.mongo.comment-time=EPOCH_MILLIS - LocalDateTime пишется числом
+// и читается обратно в LocalDateTime. LocalDateTime в документах - только время комментария
+//
+@Configuration
+public class MongoMappingConfig {
+
+    @Bean
+    public MongoCustomConversions mongoCustomConversions( @Value( "${migration.mongo.comment-time}") CommentTime commentTime){
+        List<Converter<?, ?>> converters = new ArrayList<>();
+        if( commentTime == CommentTime.EPOCH_MILLIS){
+            converters.add( new LocalDateTimeToEpochMillis());
+            converters.add( new EpochMillisToLocalDateTime());
+        }
+        return new MongoCustomConversions( converters);
+    }
+
+    @WritingConverter
+    static class LocalDateTimeToEpochMillis implements Converter<LocalDateTime, Long> {
+        @Override
+        public Long convert( LocalDateTime source) {
+            return source.atZone( ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    @ReadingConverter
+    static class EpochMillisToLocalDateTime implements Converter<Long, LocalDateTime> {
+        @Override
+        public LocalDateTime convert( Long source) {
+            return LocalDateTime.ofInstant( Instant.ofEpochMilli( source), ZoneId.systemDefault());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.pavel2107.otus.hw14.mongoDB.query;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.BookLayout;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBookView;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Чтение книг в той раскладке, в которой их записала миграция (migration.book.layout)
+//
+@Component
+public class BookQueries {
+
+    @Autowired private MongoTemplate mongoTemplate;
+    @Value( "${migration.book.layout}") private BookLayout layout;
+
+    public MongoBookView findById( String id){
+        return mongoTemplate.findById( id, layout.getDocumentType());
+    }
+
+    @SuppressWarnings( "unchecked")
+    public List<MongoBookView> findByGenre( String genreId){
+        Query query;
+        if( layout == BookLayout.EMBEDDED){
+            query = Query.query( Criteria.where( "genre.id").is( genreId));
+        } else {
+            // для @DBRef значение преобразуется в ссылку на genres
+            MongoGenre genre = new MongoGenre();
+            genre.setId( genreId);
+            query = Query.query( Criteria.where( "genre").is( genre));
+        }
+        return (List<MongoBookView>) mongoTemplate.find( query, layout.getDocumentType());
+    }
+
+    public BookLayout getLayout() {
+        return layout;
+    }
+}
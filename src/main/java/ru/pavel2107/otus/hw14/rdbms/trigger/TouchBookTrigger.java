@@ -0,0 +1,53 @@
+package ru.pavel2107.otus.hw14.rdbms.trigger;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+//
+// Триггер H2 на comments (schema.sql): удаление комментария или перенос его в другую книгу
+// обновляет last_modified прежней книги. Удаленную строку окно изменений comments не видит,
+// а так инкрементальная миграция переносит книгу заново - уже без этого комментария
+//
+public class TouchBookTrigger implements Trigger {
+
+    private static final String TOUCH_BOOK_SQL = "update books set last_modified = current_timestamp where id = ?";
+
+    private int bookId;
+
+    @Override
+    public void init( Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+        try( ResultSet columns = conn.getMetaData().getColumns( null, schemaName, tableName, "BOOK_ID")){
+            if( !columns.next()){
+                throw new SQLException( "В " + tableName + " нет колонки book_id");
+            }
+            bookId = columns.getInt( "ORDINAL_POSITION") - 1;
+        }
+    }
+
+    @Override
+    public void fire( Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if( oldRow == null || oldRow[ bookId] == null){
+            return;
+        }
+        if( newRow != null && Objects.equals( oldRow[ bookId], newRow[ bookId])){
+            return;
+        }
+        try( PreparedStatement statement = conn.prepareStatement( TOUCH_BOOK_SQL)){
+            statement.setObject( 1, oldRow[ bookId]);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void remove() {
+    }
+}
@@ -0,0 +1,48 @@
+package ru.pavel2107.otus.hw14.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.Ordered;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+//
+// Все singleton'ы - lazy-init (в Spring Boot 2.1 нет spring.main.lazy-initialization):
+// при старте создаются только бины, нужные запуску job, остальные - при первом обращении.
+// Не трогает служебные бины и бины с явным @Lazy - @Lazy( false) оставляет бин ранним
+// (например, бин с побочным эффектом при создании, на который никто не ссылается).
+// SmartLifecycle и ApplicationListener контекст создает и среди lazy-init
+//
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor, Ordered {
+
+    @Override
+    public void postProcessBeanFactory( ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        for( String name : beanFactory.getBeanDefinitionNames()){
+            BeanDefinition definition = beanFactory.getBeanDefinition( name);
+            if( definition.getRole() == BeanDefinition.ROLE_INFRASTRUCTURE || explicitLazy( definition)){
+                continue;
+            }
+            definition.setLazyInit( true);
+        }
+    }
+
+    private static boolean explicitLazy( BeanDefinition definition){
+        if( !( definition instanceof AnnotatedBeanDefinition)){
+            return false;
+        }
+        AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+        AnnotatedTypeMetadata metadata = annotated.getFactoryMethodMetadata();
+        if( metadata == null){
+            metadata = annotated.getMetadata();
+        }
+        return metadata.isAnnotated( Lazy.class.getName());
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
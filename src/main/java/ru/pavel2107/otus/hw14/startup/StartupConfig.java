@@ -0,0 +1,65 @@
+package ru.pavel2107.otus.hw14.startup;
+
+import de.flapdoodle.embed.mongo.Command;
+import de.flapdoodle.embed.mongo.config.DownloadConfigBuilder;
+import de.flapdoodle.embed.mongo.config.ExtractedArtifactStoreBuilder;
+import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
+import de.flapdoodle.embed.process.config.IRuntimeConfig;
+import de.flapdoodle.embed.process.config.io.ProcessOutput;
+import de.flapdoodle.embed.process.io.Processors;
+import de.flapdoodle.embed.process.io.Slf4jLevel;
+import de.flapdoodle.embed.process.io.directories.FixedPath;
+import de.flapdoodle.embed.process.io.progress.Slf4jProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+//
+// Быстрый старт коротких запусков (профиль batch, application-batch.properties):
+// migration.startup.lazy=true - бины создаются по требованию, migration.startup.report - время старта в лог.
+// Встроенный Mongo берет архив и распакованный mongod из migration.embedded-mongo.*:
+// распаковка одна на версию, следующие запуски только копируют mongod во временный каталог
+//
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    @ConditionalOnProperty( name = "migration.startup.lazy", havingValue = "true")
+    public static LazyInitBeanFactoryPostProcessor lazyInitBeanFactoryPostProcessor(){
+        return new LazyInitBeanFactoryPostProcessor();
+    }
+
+    @Bean
+    @ConditionalOnProperty( name = "migration.startup.report", havingValue = "true", matchIfMissing = true)
+    public static StartupReport startupReport( @Value( "${migration.startup.report-top}") int top){
+        return new StartupReport( top);
+    }
+
+    //
+    // как в EmbeddedMongoAutoConfiguration, но каталоги архива и распаковки - из настроек:
+    // их можно держать в кэше CI или на томе контейнера, где домашний каталог не сохраняется
+    //
+    @Bean
+    public IRuntimeConfig embeddedMongoRuntimeConfig( @Value( "${migration.embedded-mongo.download-dir}") String downloadDir,
+                                                      @Value( "${migration.embedded-mongo.extract-dir}") String extractDir){
+        Logger logger = LoggerFactory.getLogger( "org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongo");
+        ProcessOutput processOutput = new ProcessOutput( Processors.logTo( logger, Slf4jLevel.INFO),
+                                                         Processors.logTo( logger, Slf4jLevel.ERROR),
+                                                         Processors.named( "[console>]", Processors.logTo( logger, Slf4jLevel.DEBUG)));
+        return new RuntimeConfigBuilder()
+                .defaultsWithLogger( Command.MongoD, logger)
+                .processOutput( processOutput)
+                .artifactStore( new ExtractedArtifactStoreBuilder()
+                        .defaults( Command.MongoD)
+                        .download( new DownloadConfigBuilder()
+                                .defaultsForCommand( Command.MongoD)
+                                .artifactStorePath( new FixedPath( downloadDir))
+                                .progressListener( new Slf4jProgressListener( logger))
+                                .build())
+                        .extractDir( new FixedPath( extractDir)))
+                .build();
+    }
+}
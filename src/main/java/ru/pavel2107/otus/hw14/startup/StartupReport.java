@@ -0,0 +1,71 @@
+package ru.pavel2107.otus.hw14.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//
+// Время старта: после создания контекста, до запуска job - в лог сколько прошло с запуска JVM,
+// сколько бинов создано из объявленных и самые долгие бины (время вместе с их зависимостями).
+// Бины, созданные раньше этого BeanPostProcessor'а (другие post processor'ы), не замеряются
+//
+public class StartupReport implements InstantiationAwareBeanPostProcessor, ApplicationListener<ApplicationStartedEvent> {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final int top;
+
+    private final Map<String, Long> started  = new ConcurrentHashMap<>();
+    private final Map<String, Long> duration = new ConcurrentHashMap<>();
+    private volatile boolean reported;
+
+    public StartupReport( int top){
+        this.top = top;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation( Class<?> beanClass, String beanName) throws BeansException {
+        if( !reported){
+            started.putIfAbsent( beanName, System.nanoTime());
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization( Object bean, String beanName) throws BeansException {
+        Long start = reported ? null : started.remove( beanName);
+        if( start != null){
+            duration.put( beanName, ( System.nanoTime() - start) / 1_000_000);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent( ApplicationStartedEvent event) {
+        reported = true;
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+
+        String slowest = duration.entrySet().stream()
+                .sorted( Map.Entry.<String, Long>comparingByValue( Comparator.reverseOrder()))
+                .limit( top)
+                .map( e -> e.getKey() + " " + e.getValue() + " мс")
+                .collect( Collectors.joining( ", "));
+        logger.info( "Старт: {} мс с запуска JVM, профили {}, создано бинов {} из {}; дольше всех: {}",
+                ManagementFactory.getRuntimeMXBean().getUptime(), Arrays.toString( context.getEnvironment().getActiveProfiles()),
+                beanFactory.getSingletonCount(), beanFactory.getBeanDefinitionCount(), slowest);
+        started.clear();
+        duration.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.bson.Document;
+
+//
+// Изменение документа коллекции: id и документ целиком после изменения, document = null - документ удален
+//
+@ToString
+public class Change {
+
+    @Getter private final String   id;
+    @Getter private final Document document;
+
+    public Change( String id, Document document){
+        this.id       = id;
+        this.document = document;
+    }
+
+    public boolean isDelete(){
+        return document == null;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import java.util.List;
+
+//
+// Поток изменений одной коллекции. next отдает изменения после сохраненной позиции,
+// commit сохраняет позицию после последнего отданного (когда они применены).
+// close сбрасывает непримененное: следующий next начнет с сохраненной позиции - так повторяется пачка после ошибки
+//
+public interface ChangeFeed extends AutoCloseable {
+
+    // не больше max изменений; ждет первое не дольше maxWait мс, пустой список - изменений нет
+    List<Change> next( int max, long maxWait) throws InterruptedException;
+
+    void commit();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,11 @@
+package ru.pavel2107.otus.hw14.sync;
+
+//
+// CHANGE_STREAM - change stream Mongo (replica set или sharded cluster, Mongo 3.6+), видит и удаления
+// POLLING       - опрос по полю времени изменения (migration.sync.timestamp-field), для одиночного / встроенного Mongo;
+//                 поле заполняет приложение, которое меняет документы (миграция его не пишет, а ее замена
+//                 документа удаляет), удаления не видны
+//
+public enum ChangeFeedType {
+    CHANGE_STREAM, POLLING
+}
@@ -0,0 +1,113 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//
+// Изменения из change stream коллекции, документ целиком (fullDocument = UPDATE_LOOKUP).
+// Позиция - resume token, без сохраненной позиции поток начинается с текущего момента
+//
+public class ChangeStreamFeed implements ChangeFeed {
+
+    private final MongoTemplate mongoTemplate;
+    private final String        collectionName;
+    private final long          awaitTime;
+
+    private MongoCursor<ChangeStreamDocument<Document>> cursor;
+    private BsonDocument token;
+
+    // awaitTime - мс, которые сервер держит пустой getMore
+    public ChangeStreamFeed( MongoTemplate mongoTemplate, String collectionName, long awaitTime){
+        this.mongoTemplate  = mongoTemplate;
+        this.collectionName = collectionName;
+        this.awaitTime      = awaitTime;
+    }
+
+    @Override
+    public List<Change> next( int max, long maxWait) {
+        if( cursor == null){
+            open();
+        }
+
+        List<Change> changes = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + maxWait;
+        while( changes.size() < max){
+            ChangeStreamDocument<Document> event = cursor.tryNext();
+            if( event == null){
+                if( !changes.isEmpty() || System.currentTimeMillis() >= deadline){
+                    break;
+                }
+                continue;
+            }
+
+            token = event.getResumeToken();
+            String id = id( event.getDocumentKey());
+            switch( event.getOperationType()){
+                case INSERT:
+                case UPDATE:
+                case REPLACE:
+                    // null - документ удален раньше, чем прочитан; удаление придет следующим событием
+                    if( event.getFullDocument() != null){
+                        changes.add( new Change( id, event.getFullDocument()));
+                    }
+                    break;
+                case DELETE:
+                    changes.add( new Change( id, null));
+                    break;
+                case INVALIDATE:
+                    throw new IllegalStateException( "Change stream " + collectionName + " закрыт сервером (коллекция удалена или переименована)");
+                default:
+            }
+        }
+        return changes;
+    }
+
+    private void open(){
+        SyncPosition position = mongoTemplate.findById( collectionName, SyncPosition.class);
+        token = position == null || position.getResumeToken() == null ? null : BsonDocument.parse( position.getResumeToken());
+
+        ChangeStreamIterable<Document> stream = mongoTemplate.getCollection( collectionName).watch()
+                .fullDocument( FullDocument.UPDATE_LOOKUP)
+                .maxAwaitTime( awaitTime, TimeUnit.MILLISECONDS);
+        if( token != null){
+            stream = stream.resumeAfter( token);
+        }
+        cursor = stream.iterator();
+    }
+
+    private static String id( BsonDocument key){
+        BsonValue id = key == null ? null : key.get( "_id");
+        return id == null ? null : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    @Override
+    public void commit() {
+        if( token == null){
+            return;
+        }
+        SyncPosition position = new SyncPosition();
+        position.setId( collectionName);
+        position.setResumeToken( token.toJson());
+        position.setUpdated( new Date());
+        mongoTemplate.save( position);
+    }
+
+    @Override
+    public void close() {
+        if( cursor != null){
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+
+//
+// Цикл переноса одной коллекции: ждет первое изменение, добирает остальные в течение window (не больше batchSize),
+// повторные изменения одного id в окне схлопываются в последнее, пачка применяется одной транзакцией,
+// затем позиция потока сохраняется. Пачка, упавшая на данных (id не число, нет жанра / автора книги в H2,
+// значение не влезает в колонку), применяется по одному изменению: не применившиеся - в migration_dead_letters
+// (phase = sync, документ целиком), позиция сохраняется за ними - одно плохое изменение не держит коллекцию.
+// При временной ошибке (H2 или Mongo недоступны) поток закрывается и после паузы читается заново
+// с последней сохраненной позиции - пачка повторяется (применение идемпотентно)
+//
+public class CollectionSync implements Runnable {
+
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    // сколько ждать первое изменение за один заход, мс - чтобы вовремя заметить остановку
+    private static final long IDLE_WAIT = 1000;
+    private static final long MAX_BACKOFF = 30000;
+
+    private final String            collection;
+    private final ChangeFeed        feed;
+    private final JdbcChangeApplier applier;
+    private final MongoTemplate     mongoTemplate;
+    private final long              window;
+    private final int               batchSize;
+
+    private volatile boolean running = true;
+
+    public CollectionSync( String collection, ChangeFeed feed, JdbcChangeApplier applier, MongoTemplate mongoTemplate,
+                           long window, int batchSize){
+        this.collection    = collection;
+        this.feed          = feed;
+        this.applier       = applier;
+        this.mongoTemplate = mongoTemplate;
+        this.window        = window;
+        this.batchSize     = batchSize;
+    }
+
+    public void stop(){
+        running = false;
+    }
+
+    @Override
+    public void run() {
+        long backoff = 500;
+        while( running && !Thread.currentThread().isInterrupted()){
+            try {
+                List<Change> first = feed.next( batchSize, IDLE_WAIT);
+                if( first.isEmpty()){
+                    continue;
+                }
+
+                Map<String, Change> batch = new LinkedHashMap<>();
+                add( batch, first);
+                long deadline = System.currentTimeMillis() + window;
+                long left;
+                while( batch.size() < batchSize && ( left = deadline - System.currentTimeMillis()) > 0){
+                    add( batch, feed.next( batchSize - batch.size(), left));
+                }
+
+                long start = System.nanoTime();
+                int rows = apply( new ArrayList<>( batch.values()));
+                feed.commit();
+                logger.debug( "Sync {}: изменений {}, строк изменено {}, {} мс", collection, batch.size(), rows, ( System.nanoTime() - start) / 1000000);
+                backoff = 500;
+            } catch( InterruptedException e){
+                Thread.currentThread().interrupt();
+            } catch( RuntimeException e){
+                logger.error( "Sync {}: ошибка, повтор через {} мс", collection, backoff, e);
+                feed.close();
+                try {
+                    Thread.sleep( backoff);
+                } catch( InterruptedException interrupted){
+                    Thread.currentThread().interrupt();
+                }
+                backoff = Math.min( backoff * 2, MAX_BACKOFF);
+            }
+        }
+        feed.close();
+    }
+
+    private int apply( List<Change> changes){
+        try {
+            return applier.apply( changes);
+        } catch( RuntimeException e){
+            if( transientError( e)){
+                throw e;
+            }
+            logger.warn( "Sync {}: пачка из {} изменений не применена ({}), применяется по одному", collection, changes.size(), e.toString());
+        }
+
+        int rows = 0;
+        for( Change change : changes){
+            try {
+                rows += applier.apply( Collections.singletonList( change));
+            } catch( RuntimeException e){
+                // пачка повторится целиком, уже примененные изменения применятся снова без изменений
+                if( transientError( e) || !deadLetter( change, e)){
+                    throw e;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static boolean transientError( RuntimeException e){
+        return e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    // false - dead letter не сохранен: изменение не теряется, пачка повторится после паузы
+    private boolean deadLetter( Change change, RuntimeException e){
+        Document letter = new Document( "step", "sync " + collection)
+                .append( "phase",   "sync")
+                .append( "error",   e.getClass().getName())
+                .append( "message", e.getMessage())
+                .append( "item",    change.isDelete() ? new Document( "_id", change.getId()).append( "deleted", true) : change.getDocument())
+                .append( "time",    new Date());
+        logger.warn( "Sync {}: изменение id={} не применено: {}", collection, change.getId(), e.toString());
+        try {
+            mongoTemplate.getCollection( DeadLetterSkipListener.COLLECTION).insertOne( letter);
+            return true;
+        } catch( RuntimeException failed){
+            logger.error( "Sync {}: не удалось сохранить изменение в {}", collection, DeadLetterSkipListener.COLLECTION, failed);
+            return false;
+        }
+    }
+
+    private static void add( Map<String, Change> batch, List<Change> changes){
+        for( Change change : changes){
+            // последнее изменение id - в конец: порядок пачки = порядок последних изменений
+            batch.remove( change.getId());
+            batch.put( change.getId(), change);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+//
+// Применяет пачку изменений одной коллекции к таблице одной транзакцией:
+// merge пачкой (batch) только для строк, которые действительно отличаются от документа, delete - для удаленных.
+// Неизмененные строки не трогаются - иначе last_modified сдвинется, прямая миграция перенесет строку обратно в Mongo,
+// и изменение пойдет по кругу.
+// Комментарии книги (comments = true, только CommentStorage.EMBEDDED) заменяются целиком, если список отличается.
+// Жанр / автор, на которого еще ссылаются книги, не удаляется - предупреждение в лог
+//
+public class JdbcChangeApplier {
+
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    // id в одном in (...)
+    private static final int IN_SIZE = 500;
+
+    private final JdbcTemplate        jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RowMapping          mapping;
+    private final boolean             comments;
+
+    private final String selectSql;
+    private final String mergeSql;
+    private final String selectCommentsSql;
+    private final String insertCommentSql;
+
+    public JdbcChangeApplier( DataSource dataSource, RowMapping mapping, boolean comments){
+        this.jdbcTemplate        = new JdbcTemplate( dataSource);
+        this.transactionTemplate = new TransactionTemplate( new DataSourceTransactionManager( dataSource));
+        this.mapping             = mapping;
+        this.comments            = comments && mapping.hasComments();
+
+        String columns = String.join( ", ", mapping.getColumns());
+        this.selectSql = "select id, " + columns + " from " + mapping.getTable() + " where id in (%s)";
+        this.mergeSql  = "merge into " + mapping.getTable() + "( id, " + columns + ") key( id) values( ?"
+                       + String.join( "", Collections.nCopies( mapping.getColumns().size(), ", ?")) + ")";
+
+        String commentColumns = String.join( ", ", mapping.getCommentColumns());
+        this.selectCommentsSql = "select book_id, " + commentColumns + " from comments where book_id in (%s) order by book_id, id";
+        this.insertCommentSql  = "insert into comments( book_id, " + commentColumns + ") values( ?"
+                               + String.join( "", Collections.nCopies( mapping.getCommentColumns().size(), ", ?")) + ")";
+    }
+
+    //
+    // changes - не больше одного изменения на id (последнее); возвращает число измененных строк таблицы
+    //
+    public int apply( List<Change> changes){
+        Integer applied = transactionTemplate.execute( status -> {
+            Map<Long, Object[]> upserts = new HashMap<>();
+            List<Long> deletes = new ArrayList<>();
+            Map<Long, List<Object[]>> bookComments = new HashMap<>();
+            for( Change change : changes){
+                long id = Long.parseLong( change.getId());
+                if( change.isDelete()){
+                    deletes.add( id);
+                } else {
+                    upserts.put( id, mapping.values( change.getDocument()));
+                    if( comments){
+                        bookComments.put( id, mapping.comments( change.getDocument()));
+                    }
+                }
+            }
+
+            int count = upsert( upserts);
+            if( comments){
+                replaceComments( bookComments);
+            }
+            return count + delete( deletes);
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    private int upsert( Map<Long, Object[]> rows){
+        if( rows.isEmpty()){
+            return 0;
+        }
+
+        Map<Long, Object[]> current = new HashMap<>();
+        int width = mapping.getColumns().size();
+        for( List<Long> ids : split( new ArrayList<>( rows.keySet()))){
+            jdbcTemplate.query( String.format( selectSql, placeholders( ids.size())), rs -> {
+                Object[] values = new Object[ width];
+                for( int i = 0; i < width; i++){
+                    values[ i] = rs.getObject( i + 2);
+                }
+                current.put( rs.getLong( 1), values);
+            }, ids.toArray());
+        }
+
+        List<Object[]> merges = new ArrayList<>();
+        rows.forEach( ( id, values) -> {
+            if( !same( current.get( id), values)){
+                Object[] args = new Object[ width + 1];
+                args[ 0] = id;
+                System.arraycopy( values, 0, args, 1, width);
+                merges.add( args);
+            }
+        });
+        if( !merges.isEmpty()){
+            jdbcTemplate.batchUpdate( mergeSql, merges);
+        }
+        return merges.size();
+    }
+
+    private void replaceComments( Map<Long, List<Object[]>> books){
+        if( books.isEmpty()){
+            return;
+        }
+
+        Map<Long, List<Object[]>> current = new HashMap<>();
+        int width = mapping.getCommentColumns().size();
+        for( List<Long> ids : split( new ArrayList<>( books.keySet()))){
+            jdbcTemplate.query( String.format( selectCommentsSql, placeholders( ids.size())), rs -> {
+                Object[] values = new Object[ width];
+                for( int i = 0; i < width; i++){
+                    values[ i] = rs.getObject( i + 2);
+                }
+                current.computeIfAbsent( rs.getLong( 1), id -> new ArrayList<>()).add( values);
+            }, ids.toArray());
+        }
+
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        books.forEach( ( id, comments) -> {
+            List<Object[]> was = current.getOrDefault( id, Collections.emptyList());
+            if( same( was, comments)){
+                return;
+            }
+            deletes.add( new Object[]{ id});
+            for( Object[] comment : comments){
+                Object[] args = new Object[ width + 1];
+                args[ 0] = id;
+                System.arraycopy( comment, 0, args, 1, width);
+                inserts.add( args);
+            }
+        });
+        if( !deletes.isEmpty()){
+            jdbcTemplate.batchUpdate( "delete from comments where book_id = ?", deletes);
+        }
+        if( !inserts.isEmpty()){
+            jdbcTemplate.batchUpdate( insertCommentSql, inserts);
+        }
+    }
+
+    private int delete( List<Long> ids){
+        if( ids.isEmpty()){
+            return 0;
+        }
+
+        List<Object[]> args = ids.stream().map( id -> new Object[]{ id}).collect( Collectors.toList());
+        if( mapping.hasComments()){
+            jdbcTemplate.batchUpdate( "delete from comments where book_id = ?", args);
+        }
+        String sql = "delete from " + mapping.getTable() + " where id = ?";
+        try {
+            return Arrays.stream( jdbcTemplate.batchUpdate( sql, args)).map( n -> Math.max( n, 0)).sum();
+        } catch( DataIntegrityViolationException e){
+            // на строку ссылаются - удаляем по одной, остальные удаления пачки не теряются
+            int count = 0;
+            for( Long id : ids){
+                try {
+                    count += jdbcTemplate.update( sql, id);
+                } catch( DataIntegrityViolationException referenced){
+                    logger.warn( "Sync {}: {} id={} удален в Mongo, но на него ссылаются - строка оставлена", mapping.getCollection(), mapping.getTable(), id);
+                }
+            }
+            return count;
+        }
+    }
+
+    private static boolean same( List<Object[]> was, List<Object[]> now){
+        if( was.size() != now.size()){
+            return false;
+        }
+        for( int i = 0; i < was.size(); i++){
+            if( !same( was.get( i), now.get( i))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean same( Object[] was, Object[] now){
+        if( was == null){
+            return false;
+        }
+        for( int i = 0; i < was.length; i++){
+            if( !Objects.equals( canonical( was[ i]), canonical( now[ i]))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // значения H2 и документа к одному виду: числа - по значению, даты - по миллисекундам
+    private static Object canonical( Object value){
+        if( value instanceof Number){
+            return new BigDecimal( value.toString()).stripTrailingZeros();
+        }
+        if( value instanceof Date){
+            return ( (Date) value).getTime();
+        }
+        return value == null ? null : value.toString();
+    }
+
+    private static List<List<Long>> split( List<Long> ids){
+        List<List<Long>> parts = new ArrayList<>();
+        for( int i = 0; i < ids.size(); i += IN_SIZE){
+            parts.add( ids.subList( i, Math.min( ids.size(), i + IN_SIZE)));
+        }
+        return parts;
+    }
+
+    private static String placeholders( int n){
+        return String.join( ", ", Collections.nCopies( n, "?"));
+    }
+}
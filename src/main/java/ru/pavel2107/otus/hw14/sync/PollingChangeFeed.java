@@ -0,0 +1,129 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//
+// Изменения опросом: документы с field >= последнего отданного времени, по возрастанию времени.
+// Индекс по field опрос создает сам при открытии (уже есть такой же - ничего не делается), иначе каждый опрос -
+// полный просмотр и сортировка коллекции.
+// Документы с тем же временем, что уже отданы, помнятся по id и пропускаются - документы с одинаковым временем
+// не теряются и не повторяются. Без сохраненной позиции первый опрос отдает всю коллекцию.
+// Поле времени ни у одного класса mongoDB.domain нет и миграция его не пишет: его ставят ($currentDate или
+// $set текущего времени) приложения, которые меняют документы. Прямая миграция заменяет документ целиком
+// и поле удаляет - такой документ пришел из H2, обратно не переносится и снова виден после следующей правки.
+// Если в непустой коллекции поля нет ни у одного документа - предупреждение в лог при открытии
+//
+public class PollingChangeFeed implements ChangeFeed {
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final MongoTemplate mongoTemplate;
+    private final String        collectionName;
+    private final String        field;
+    private final long          pollInterval;
+
+    private boolean     opened;
+    private Date        last;
+    private Set<String> seen = new HashSet<>();
+
+    public PollingChangeFeed( MongoTemplate mongoTemplate, String collectionName, String field, long pollInterval){
+        this.mongoTemplate  = mongoTemplate;
+        this.collectionName = collectionName;
+        this.field          = field;
+        this.pollInterval   = pollInterval;
+    }
+
+    @Override
+    public List<Change> next( int max, long maxWait) throws InterruptedException {
+        if( !opened){
+            open();
+        }
+
+        long deadline = System.currentTimeMillis() + maxWait;
+        while( true){
+            List<Change> changes = poll( max);
+            long left = deadline - System.currentTimeMillis();
+            if( !changes.isEmpty() || left <= 0){
+                return changes;
+            }
+            Thread.sleep( Math.min( pollInterval, left));
+        }
+    }
+
+    private List<Change> poll( int max){
+        List<Change> changes = new ArrayList<>();
+        try( MongoCursor<Document> cursor = mongoTemplate.getCollection( collectionName)
+                .find( last == null ? Filters.type( field, BsonType.DATE_TIME) : Filters.gte( field, last))
+                .sort( Sorts.ascending( field))
+                .limit( max + seen.size())
+                .iterator()){
+            while( cursor.hasNext() && changes.size() < max){
+                Document document = cursor.next();
+                Date time = document.getDate( field);
+                String id = String.valueOf( document.get( "_id"));
+                if( time.equals( last) && seen.contains( id)){
+                    continue;
+                }
+                if( !time.equals( last)){
+                    last = time;
+                    seen = new HashSet<>();
+                }
+                seen.add( id);
+                changes.add( new Change( id, document));
+            }
+        }
+        return changes;
+    }
+
+    private void open(){
+        SyncPosition position = mongoTemplate.findById( collectionName, SyncPosition.class);
+        last = position == null ? null : position.getLastModified();
+        seen = position == null || position.getIdsAtLastModified() == null ? new HashSet<>() : new HashSet<>( position.getIdsAtLastModified());
+        MongoCollection<Document> collection = mongoTemplate.getCollection( collectionName);
+        try {
+            collection.createIndex( Indexes.ascending( field), new IndexOptions().background( true));
+        } catch( MongoCommandException e){
+            // индекс по field уже есть с другим именем или опциями - он и используется
+            logger.info( "Коллекция {}: индекс по {} не создан: {}", collectionName, field, e.getErrorMessage());
+        }
+        if( collection.find( Filters.type( field, BsonType.DATE_TIME)).limit( 1).first() == null && collection.find().limit( 1).first() != null){
+            logger.warn( "Коллекция {}: ни у одного документа нет поля времени {}, опрос не увидит изменений, пока его не заполнят",
+                    collectionName, field);
+        }
+        opened = true;
+    }
+
+    @Override
+    public void commit() {
+        if( last == null){
+            return;
+        }
+        SyncPosition position = new SyncPosition();
+        position.setId( collectionName);
+        position.setLastModified( last);
+        position.setIdsAtLastModified( new ArrayList<>( seen));
+        position.setUpdated( new Date());
+        mongoTemplate.save( position);
+    }
+
+    @Override
+    public void close() {
+        opened = false;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//
+// Обратный перенос Mongo -> H2: поток на каждую коллекцию, стартует вместе с контекстом, останавливается с ним
+//
+public class ReverseSync implements SmartLifecycle {
+
+    private final Logger logger = LoggerFactory.getLogger("Batch");
+
+    private final List<CollectionSync> syncs;
+    private final List<Thread>         threads = new ArrayList<>();
+
+    public ReverseSync( List<CollectionSync> syncs){
+        this.syncs = syncs;
+    }
+
+    @Override
+    public synchronized void start() {
+        for( int i = 0; i < syncs.size(); i++){
+            Thread thread = new Thread( syncs.get( i), "sync-" + i);
+            thread.setDaemon( true);
+            thread.start();
+            threads.add( thread);
+        }
+        logger.info( "Обратный перенос Mongo -> H2 запущен, коллекций {}", syncs.size());
+    }
+
+    @Override
+    public synchronized void stop() {
+        // без interrupt: поток сам замечает остановку за время ожидания изменений и не рвет соединение с Mongo
+        syncs.forEach( CollectionSync::stop);
+        for( Thread thread : threads){
+            try {
+                thread.join( 5000);
+            } catch( InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return !threads.isEmpty();
+    }
+}
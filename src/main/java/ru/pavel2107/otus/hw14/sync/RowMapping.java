@@ -0,0 +1,168 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+//
+// Как документ коллекции ложится в строку таблицы: колонка <- поле документа.
+// Имена полей берутся из mapping context по свойствам Mongo*-классов - те же, что пишет прямая миграция.
+// Автор и жанр книги - @DBRef (BookLayout.DBREF) или вложенный документ с _id (BookLayout.EMBEDDED)
+//
+public class RowMapping {
+
+    private final String collection;
+    private final String table;
+    private final Map<String, Function<Document, Object>> columns = new LinkedHashMap<>();
+    private String commentsField;
+    private final Map<String, Function<Document, Object>> commentColumns = new LinkedHashMap<>();
+
+    private RowMapping( String collection, String table){
+        this.collection = collection;
+        this.table      = table;
+    }
+
+    public static RowMapping of( String collection,
+                                 MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context){
+        switch( collection){
+            case "genres":
+                return new RowMapping( collection, "genre")
+                        .column( "name", field( context, MongoGenre.class, "name"));
+            case "authors":
+                return new RowMapping( collection, "authors")
+                        .column( "name",      field( context, MongoAuthor.class, "name"))
+                        .column( "birthdate", date( field( context, MongoAuthor.class, "birthDate")))
+                        .column( "email",     field( context, MongoAuthor.class, "email"))
+                        .column( "phone",     field( context, MongoAuthor.class, "phone"))
+                        .column( "address",   field( context, MongoAuthor.class, "address"));
+            case "books":
+                RowMapping books = new RowMapping( collection, "books")
+                        .column( "name",      field( context, MongoBook.class, "name"))
+                        .column( "isbn",      field( context, MongoBook.class, "isbn"))
+                        .column( "pub_place", field( context, MongoBook.class, "publicationPlace"))
+                        .column( "pub_year",  field( context, MongoBook.class, "publicationYear"))
+                        .column( "pub_house", field( context, MongoBook.class, "publishingHouse"))
+                        .column( "genre_id",  reference( field( context, MongoBook.class, "genre")))
+                        .column( "author_id", reference( field( context, MongoBook.class, "author")));
+                books.commentsField = name( context, MongoBook.class, "comments");
+                books.commentColumns.put( "name",     field( context, MongoComment.class, "name"));
+                books.commentColumns.put( "datetime", timestamp( field( context, MongoComment.class, "dateTime")));
+                books.commentColumns.put( "comment",  field( context, MongoComment.class, "comment"));
+                return books;
+            default:
+                throw new IllegalArgumentException( "Коллекция " + collection + " не переносится в H2, поддерживаются genres, authors, books");
+        }
+    }
+
+    private RowMapping column( String column, Function<Document, Object> value){
+        columns.put( column, value);
+        return this;
+    }
+
+    private static String name( MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context,
+                                Class<?> type, String property){
+        return context.getRequiredPersistentEntity( type).getRequiredPersistentProperty( property).getFieldName();
+    }
+
+    private static Function<Document, Object> field( MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> context,
+                                                     Class<?> type, String property){
+        String name = name( context, type, property);
+        return document -> document.get( name);
+    }
+
+    private static Function<Document, Object> date( Function<Document, Object> field){
+        return document -> {
+            Object value = field.apply( document);
+            return value instanceof Date ? new java.sql.Date( ( (Date) value).getTime()) : value;
+        };
+    }
+
+    // Date или миллисекунды (CommentTime.EPOCH_MILLIS)
+    private static Function<Document, Object> timestamp( Function<Document, Object> field){
+        return document -> {
+            Object value = field.apply( document);
+            if( value instanceof Date){
+                return new Timestamp( ( (Date) value).getTime());
+            }
+            return value instanceof Long ? new Timestamp( (Long) value) : value;
+        };
+    }
+
+    private static Function<Document, Object> reference( Function<Document, Object> field){
+        return document -> {
+            Object value = field.apply( document);
+            if( value instanceof DBRef){
+                value = ( (DBRef) value).getId();
+            } else if( value instanceof Document){
+                value = ( (Document) value).get( "_id");
+            }
+            return value == null ? null : Long.valueOf( value.toString());
+        };
+    }
+
+    public String getCollection(){
+        return collection;
+    }
+
+    public String getTable(){
+        return table;
+    }
+
+    public List<String> getColumns(){
+        return new ArrayList<>( columns.keySet());
+    }
+
+    public List<String> getCommentColumns(){
+        return new ArrayList<>( commentColumns.keySet());
+    }
+
+    public boolean hasComments(){
+        return commentsField != null;
+    }
+
+    // значения колонок в порядке getColumns, без id
+    public Object[] values( Document document){
+        return values( document, columns);
+    }
+
+    // значения колонок комментариев по порядку в документе, в порядке getCommentColumns
+    @SuppressWarnings( "unchecked")
+    public List<Object[]> comments( Document document){
+        Object value = document.get( commentsField);
+        if( !( value instanceof List)){
+            return Collections.emptyList();
+        }
+        List<Object[]> comments = new ArrayList<>();
+        for( Object comment : (List<Object>) value){
+            if( comment instanceof Document){
+                comments.add( values( (Document) comment, commentColumns));
+            }
+        }
+        return comments;
+    }
+
+    private static Object[] values( Document document, Map<String, Function<Document, Object>> columns){
+        Object[] values = new Object[ columns.size()];
+        int i = 0;
+        for( Function<Document, Object> column : columns.values()){
+            values[ i++] = column.apply( document);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.CommentStorage;
+
+//
+// Обратный перенос изменений Mongo -> H2 (migration.sync.enabled=true), пока приложение работает.
+// Позиции потоков - в коллекции migration_sync, после перезапуска перенос продолжается с них.
+// Книги ссылаются на жанры и авторов: книга с новым жанром может прийти раньше жанра,
+// тогда она не применяется на внешнем ключе и уходит в migration_dead_letters (phase = sync) с документом,
+// остальные изменения пачки применяются; в H2 книга попадет со следующим своим изменением
+//
+@Configuration
+@ConditionalOnProperty( name = "migration.sync.enabled", havingValue = "true")
+public class SyncConfig {
+
+    @Bean
+    public ReverseSync reverseSync( MongoTemplate mongoTemplate, DataSource dataSource,
+                                    @Value( "${migration.sync.feed}") ChangeFeedType feedType,
+                                    @Value( "${migration.sync.collections}") List<String> collections,
+                                    @Value( "${migration.sync.window}") Duration window,
+                                    @Value( "${migration.sync.batch-size}") int batchSize,
+                                    @Value( "${migration.sync.timestamp-field}") String timestampField,
+                                    @Value( "${migration.sync.poll-interval}") Duration pollInterval,
+                                    @Value( "${migration.comments.storage}") CommentStorage commentStorage){
+        List<CollectionSync> syncs = new ArrayList<>();
+        for( String name : collections){
+            String collection = name.trim();
+            RowMapping mapping = RowMapping.of( collection, mongoTemplate.getConverter().getMappingContext());
+            ChangeFeed feed = feedType == ChangeFeedType.CHANGE_STREAM
+                    ? new ChangeStreamFeed( mongoTemplate, collection, pollInterval.toMillis())
+                    : new PollingChangeFeed( mongoTemplate, collection, timestampField, pollInterval.toMillis());
+            // BUCKETED - в книге только последние комментарии, полный список в H2 по ним не восстановить
+            JdbcChangeApplier applier = new JdbcChangeApplier( dataSource, mapping, commentStorage == CommentStorage.EMBEDDED);
+            syncs.add( new CollectionSync( collection, feed, applier, mongoTemplate, window.toMillis(), batchSize));
+        }
+        return new ReverseSync( syncs);
+    }
+}
@@ -0,0 +1,25 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+//
+// До какого изменения коллекция уже перенесена в H2:
+// id - коллекция, resumeToken - change stream (JSON), lastModified и idsAtLastModified - опрос по времени
+// (документы с временем lastModified, уже отданные, - чтобы не пропустить и не повторить документы с тем же временем)
+//
+@Document( collection = "migration_sync")
+public @ToString class SyncPosition {
+
+    @Setter @Getter @Id private String id;
+    @Setter @Getter private String resumeToken;
+    @Setter @Getter private Date lastModified;
+    @Setter @Getter private List<String> idsAtLastModified;
+    @Setter @Getter private Date updated;
+}
@@ -5,10 +5,14 @@ CREATE TABLE authors(
   BIRTHDATE DATE,
   EMAIL VARCHAR(50),
   PHONE VARCHAR(20),
-  ADDRESS VARCHAR(255));
+  ADDRESS VARCHAR(255),
+  LAST_MODIFIED TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL);
+create index authors_last_modified on authors( last_modified);
 
 DROP TABLE IF EXISTS genre;
-CREATE TABLE genre( ID IDENTITY NOT NULL PRIMARY KEY, NAME varChar2(250));
+CREATE TABLE genre( ID IDENTITY NOT NULL PRIMARY KEY, NAME varChar2(250),
+  LAST_MODIFIED TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL);
+create index genre_last_modified on genre( last_modified);
 
 
 DROP TABLE IF EXISTS books;
@@ -20,8 +24,10 @@ create table books(
   PUB_YEAR  NUMBER,
   PUB_HOUSE  varchar(250),
   genre_id     LONG,
-  author_id    LONG
+  author_id    LONG,
+  LAST_MODIFIED TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL
 );
+create index books_last_modified on books( last_modified);
 alter table books add foreign key( genre_id)  references genre(id);
 alter table books add foreign key( author_id) references authors(id);
 
@@ -32,6 +38,13 @@ create table comments(
   NAME varchar(250),
   datetime DATETIME,
   comment varchar(4000),
-  book_id LONG
+  book_id LONG,
+  LAST_MODIFIED TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP NOT NULL
 );
-alter table comments add foreign key( book_id) references books(id);
\ No newline at end of file
+create index comments_last_modified on comments( last_modified);
+alter table comments add foreign key( book_id) references books(id);
+-- удаленный или перенесенный в другую книгу комментарий - изменение прежней книги (инкрементальная миграция)
+create trigger comments_touch_book after delete, update on comments for each row call "ru.pavel2107.otus.hw14.rdbms.trigger.TouchBookTrigger";
+
+-- комментарии книги от новых к старым (CommentStorage.BUCKETED) - без сортировки
+create index comments_book_datetime on comments( book_id, datetime, id);
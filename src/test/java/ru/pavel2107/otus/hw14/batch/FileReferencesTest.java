@@ -0,0 +1,104 @@
+package ru.pavel2107.otus.hw14.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import ru.pavel2107.otus.hw14.batch.cache.FileReferenceLoader;
+import ru.pavel2107.otus.hw14.batch.mapper.AuthorRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.GenreRowMapper;
+import ru.pavel2107.otus.hw14.batch.mapper.RowMappingException;
+import ru.pavel2107.otus.hw14.batch.reader.BookCommentsItemReader;
+import ru.pavel2107.otus.hw14.batch.reader.ReaderSource;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//
+// source=FILE: автор и жанр книги - из выгрузок authors.csv / genre.csv, без базы;
+// книга со ссылкой на отсутствующую строку справочника не пишется с пустым автором / жанром, а пропускается
+//
+class FileReferencesTest {
+
+    private Path dir;
+    private StepSettings settings;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory( "export");
+        csv( "authors", "\"ID\",\"NAME\",\"BIRTHDATE\",\"EMAIL\",\"PHONE\",\"ADDRESS\",\"LAST_MODIFIED\"",
+                        "\"1\",\"author 1\",\"1947-09-21\",,,,\"2019-03-14 12:00:00.0\"",
+                        "\"3\",\"author 3\",,,,,\"2019-03-14 12:00:00.0\"");
+        csv( "genre",   "\"ID\",\"NAME\",\"LAST_MODIFIED\"",
+                        "\"1\",\"genre 1\",\"2019-03-14 12:00:00.0\"");
+        csv( "books",   "\"ID\",\"NAME\",\"ISBN\",\"PUB_PLACE\",\"PUB_YEAR\",\"PUB_HOUSE\",\"GENRE_ID\",\"AUTHOR_ID\",\"LAST_MODIFIED\"",
+                        "\"1\",\"book 1\",,,\"1986\",,\"1\",\"1\",\"2019-03-14 12:00:00.0\"",
+                        "\"2\",\"book 2\",,,,,\"9\",\"1\",\"2019-03-14 12:00:00.0\"",
+                        "\"3\",\"book 3\",,,,,\"1\",\"3\",\"2019-03-14 12:00:00.0\"");
+        csv( "comments", "\"ID\",\"NAME\",\"DATETIME\",\"COMMENT\",\"BOOK_ID\",\"LAST_MODIFIED\"",
+                        "\"1\",\"user\",\"2019-03-14 12:00:00.0\",\"text\",\"2\",\"2019-03-14 12:00:00.0\"",
+                        "\"2\",\"user\",\"2019-03-14 12:00:00.0\",\"text\",\"3\",\"2019-03-14 12:00:00.0\"");
+
+        settings = new StepSettings();
+        settings.setSource( ReaderSource.FILE);
+        settings.setSourceDir( dir.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively( dir);
+    }
+
+    @Test
+    void referencesAreReadFromExport(){
+        try( FileReferenceLoader<MongoAuthor> authors = new FileReferenceLoader<>( settings.file( "authors"), new AuthorRowMapper())){
+            assertEquals( "author 3", authors.apply( 3).getName());
+            assertEquals( LocalDate.of( 1947, 9, 21), authors.apply( 1).getBirthDate());
+            assertNull( authors.apply( 2));
+            assertNull( authors.apply( 4));
+            assertEquals( "author 3", authors.apply( 3).getName());
+        }
+    }
+
+    @Test
+    void bookWithMissingReferenceIsSkipped() throws Exception {
+        FileReferenceLoader<MongoAuthor> authors = new FileReferenceLoader<>( settings.file( "authors"), new AuthorRowMapper());
+        FileReferenceLoader<MongoGenre>  genres  = new FileReferenceLoader<>( settings.file( "genre"), new GenreRowMapper());
+        BookCommentsItemReader reader = BookCommentsItemReader.files( settings.file( "books"), settings.file( "comments"), 0, Long.MAX_VALUE,
+                authors, genres);
+        reader.open( new ExecutionContext());
+        try {
+            MongoBook first = reader.read();
+            assertEquals( "author 1", first.getAuthor().getName());
+            assertEquals( "genre 1", first.getGenre().getName());
+
+            assertThrows( RowMappingException.class, reader::read);
+
+            MongoBook third = reader.read();
+            assertEquals( "3", third.getId());
+            assertEquals( "author 3", third.getAuthor().getName());
+            assertEquals( 1, third.getComments().size());
+            assertNull( reader.read());
+        } finally {
+            reader.close();
+            authors.close();
+            genres.close();
+        }
+    }
+
+    private void csv( String table, String... lines) throws Exception {
+        Files.write( dir.resolve( table + ".csv"), Arrays.asList( lines), StandardCharsets.UTF_8);
+    }
+}
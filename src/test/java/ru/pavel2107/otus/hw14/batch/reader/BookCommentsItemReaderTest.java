@@ -0,0 +1,114 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//
+// Книги с комментариями читаются фиксированным числом запросов, сколько бы книг ни было в диапазоне
+//
+class BookCommentsItemReaderTest {
+
+    @Test
+    void statementCountDoesNotGrowWithBooks() throws Exception {
+        int few  = statements( 5);
+        int many = statements( 500);
+
+        assertEquals( 2, few);
+        assertEquals( few, many);
+    }
+
+    @Test
+    void commentsGoToTheirBook() throws Exception {
+        List<MongoBook> books = read( database( "comments", 3), new AtomicInteger());
+
+        assertEquals( 3, books.size());
+        for( MongoBook book : books){
+            long id = Long.parseLong( book.getId());
+            assertEquals( id % 4, book.getComments().size());
+        }
+    }
+
+    private int statements( int books) throws Exception {
+        AtomicInteger statements = new AtomicInteger();
+        List<MongoBook> read = read( database( "books" + books, books), statements);
+        assertEquals( books, read.size());
+        return statements.get();
+    }
+
+    private List<MongoBook> read( DataSource dataSource, AtomicInteger statements) throws Exception {
+        BookCommentsItemReader reader = new BookCommentsItemReader( counting( dataSource, statements), 0, Long.MAX_VALUE,
+                id -> new MongoAuthor(), id -> new MongoGenre());
+        reader.afterPropertiesSet();
+        reader.open( new ExecutionContext());
+        List<MongoBook> books = new ArrayList<>();
+        MongoBook book;
+        while( ( book = reader.read()) != null){
+            books.add( book);
+        }
+        reader.close();
+        return books;
+    }
+
+    // книги 1..books, у книги id - id % 4 комментариев
+    private static DataSource database( String name, int books) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL( "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        try( Connection connection = dataSource.getConnection()){
+            ScriptUtils.executeSqlScript( connection, new ClassPathResource( "schema.sql"));
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate( dataSource);
+        jdbcTemplate.update( "insert into genre( id, name) values( 1, 'genre')");
+        jdbcTemplate.update( "insert into authors( id, name) values( 1, 'author')");
+        for( long id = 1; id <= books; id++){
+            jdbcTemplate.update( "insert into books( id, name, genre_id, author_id) values( ?, ?, 1, 1)", id, "book" + id);
+            for( int i = 0; i < id % 4; i++){
+                jdbcTemplate.update( "insert into comments( name, datetime, comment, book_id) values( 'user', current_timestamp, 'text', ?)", id);
+            }
+        }
+        return dataSource;
+    }
+
+    // считает prepareStatement / createStatement / prepareCall всех соединений
+    private static DataSource counting( DataSource dataSource, AtomicInteger statements){
+        return (DataSource) Proxy.newProxyInstance( DataSource.class.getClassLoader(), new Class<?>[]{ DataSource.class}, ( proxy, method, args) -> {
+            Object result = invoke( dataSource, method, args);
+            if( result instanceof Connection){
+                Connection connection = (Connection) result;
+                return Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[]{ Connection.class}, ( p, m, a) -> {
+                    if( m.getName().equals( "prepareStatement") || m.getName().equals( "createStatement") || m.getName().equals( "prepareCall")){
+                        statements.incrementAndGet();
+                    }
+                    return invoke( connection, m, a);
+                });
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke( Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke( target, args);
+        } catch( InvocationTargetException e){
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.pavel2107.otus.hw14.batch.reader;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.batch.mapper.RowMappingException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//
+// Строка с ошибкой разбора отдается ошибкой один раз, чтение продолжается со следующей строки -
+// на любой позиции в странице, в том числе последней
+//
+class KeysetPagingItemReaderTest {
+
+    @Test
+    void badRowFailsOnce(){
+        assertEquals( Arrays.asList( "1", "error 2", "3", "error 4", "5", "6", "7"), readAll( "keyset", 3));
+    }
+
+    @Test
+    void badRowsAtPageEnd(){
+        assertEquals( Arrays.asList( "1", "error 2", "3", "error 4", "5", "6", "7"), readAll( "keysetPageEnd", 4));
+    }
+
+    private static List<String> readAll( String name, int pageSize){
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL( "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate( dataSource);
+        jdbcTemplate.execute( "create table rows( id long primary key, name varchar(10))");
+        for( long id = 1; id <= 7; id++){
+            jdbcTemplate.update( "insert into rows( id, name) values( ?, ?)", id, id % 2 == 0 && id < 6 ? null : "row");
+        }
+
+        KeysetPagingItemReader<String> reader = new KeysetPagingItemReader<>( dataSource, "select * from rows where id between ? and ?",
+                Arrays.asList( 1, 7), new String[]{ "id"}, ( rs, rowNum) -> {
+                    if( rs.getString( "name") == null){
+                        throw new RowMappingException( "id=" + rs.getLong( "id"), new IllegalStateException( "name is null"));
+                    }
+                    return rs.getString( "id");
+                }, pageSize);
+        reader.open( new ExecutionContext());
+        List<String> read = new ArrayList<>();
+        while( true){
+            try {
+                String row = reader.read();
+                if( row == null){
+                    break;
+                }
+                read.add( row);
+            } catch( RowMappingException e){
+                read.add( "error " + e.getRow().substring( 3));
+            }
+            if( read.size() > 20){
+                break;
+            }
+        }
+        reader.close();
+        return read;
+    }
+}
@@ -0,0 +1,115 @@
+package ru.pavel2107.otus.hw14.batch.remote;
+
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mapping.MappingException;
+
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+import ru.pavel2107.otus.hw14.batch.writer.MongoDocumentWriteException;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+//
+// На проводе - только классы из списка ChunkCodec: пачка книг и ответы worker'а проходят,
+// остальные классы и proxy отклоняются, исключение не из списка уходит текстом того же рода
+//
+class ChunkCodecTest {
+
+    @Test
+    void booksPass() throws Exception {
+        ChunkRequest received = roundTrip( new ChunkRequest( "stepBookWorker", 7, Collections.singletonList( book())), ChunkRequest.class);
+
+        MongoBook book = (MongoBook) received.getItems().get( 0);
+        assertEquals( LocalDate.of( 1947, 9, 21), book.getAuthor().getBirthDate());
+        assertEquals( LocalDateTime.of( 2019, 3, 14, 12, 0), book.getComments().get( 0).getDateTime());
+        assertEquals( 1986, (int) book.getPublicationYear());
+    }
+
+    @Test
+    void documentErrorsPass() throws Exception {
+        MongoDocumentWriteException error = new MongoDocumentWriteException( Collections.singletonList( book()),
+                Collections.singletonList( new BulkWriteError( 121, "validation", new BsonDocument(), 0)));
+
+        ChunkReply reply = roundTrip( ChunkReply.failed( error), ChunkReply.class);
+
+        MongoDocumentWriteException received = (MongoDocumentWriteException) reply.getError();
+        assertArrayEquals( new int[]{ 121}, received.getCodes());
+        assertEquals( "1", ( (MongoBook) received.getItems().get( 0)).getId());
+    }
+
+    @Test
+    void otherClassesAreRejected(){
+        assertThrows( InvalidClassException.class, () -> roundTrip( new HashMap<>(), Object.class));
+    }
+
+    @Test
+    void proxiesAreRejected(){
+        Object proxy = Proxy.newProxyInstance( getClass().getClassLoader(), new Class<?>[]{ Serializable.class, Runnable.class},
+                new NoOpHandler());
+
+        assertThrows( InvalidClassException.class, () -> roundTrip( proxy, Object.class));
+    }
+
+    @Test
+    void unlistedErrorsGoAsTextOfTheSameKind() throws Exception {
+        MongoSocketReadException socket = new MongoSocketReadException( "reset", new ServerAddress());
+        Throwable transientError = roundTrip( ChunkReply.failed( socket), ChunkReply.class).getError();
+        Throwable badItem = roundTrip( ChunkReply.failed( new MappingException( "mapping", socket)), ChunkReply.class).getError();
+        Throwable other = roundTrip( ChunkReply.failed( new UnsupportedOperationException( "other")), ChunkReply.class).getError();
+
+        assertSame( DataAccessResourceFailureException.class, transientError.getClass());
+        assertEquals( socket.toString(), transientError.getMessage());
+        assertSame( MappingException.class, badItem.getClass());
+        assertSame( IllegalStateException.class, other.getClass());
+    }
+
+    private static class NoOpHandler implements InvocationHandler, Serializable {
+        @Override
+        public Object invoke( Object proxy, Method method, Object[] args){
+            return null;
+        }
+    }
+
+    private static <T> T roundTrip( Object message, Class<T> type) throws Exception {
+        return ChunkCodec.fromBytes( ChunkCodec.toBytes( message), type);
+    }
+
+    private static MongoBook book(){
+        MongoAuthor author = new MongoAuthor();
+        author.setId( "1");
+        author.setBirthDate( LocalDate.of( 1947, 9, 21));
+        MongoGenre genre = new MongoGenre();
+        genre.setId( "1");
+        MongoComment comment = new MongoComment();
+        comment.setDateTime( LocalDateTime.of( 2019, 3, 14, 12, 0));
+
+        MongoBook book = new MongoBook();
+        book.setId( "1");
+        book.setAuthor( author);
+        book.setGenre( genre);
+        book.setPublicationYear( 1986);
+        book.setComments( new ArrayList<>( Collections.singletonList( comment)));
+        return book;
+    }
+}
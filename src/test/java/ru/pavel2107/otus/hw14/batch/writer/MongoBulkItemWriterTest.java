@@ -0,0 +1,160 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.CollectionCallback;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+//
+// Ошибки отдельных документов - пропускаемое исключение с не записанными документами,
+// duplicate key по _id при повторе записи в режиме INSERT - успешная запись, по другому индексу или в UPSERT - нет
+//
+class MongoBulkItemWriterTest {
+
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int VALIDATION    = 121;
+
+    // ответы bulkWrite по порядку вызовов: null - успех, иначе исключение
+    private final Deque<RuntimeException> replies = new ArrayDeque<>();
+
+    private MongoTemplate                   mongoTemplate;
+    private MongoBulkItemWriter<MongoGenre> writer;
+
+    @BeforeEach
+    @SuppressWarnings( "unchecked")
+    void setUp(){
+        MongoCollection<Document> collection = mock( MongoCollection.class);
+        when( collection.bulkWrite( anyList(), any())).thenAnswer( invocation -> {
+            RuntimeException reply = replies.poll();
+            if( reply != null){
+                throw reply;
+            }
+            return BulkWriteResult.unacknowledged();
+        });
+
+        mongoTemplate = mock( MongoTemplate.class);
+        when( mongoTemplate.getCollectionName( MongoGenre.class)).thenReturn( "genres");
+        when( mongoTemplate.getConverter()).thenReturn( new MappingMongoConverter( NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        when( mongoTemplate.execute( eq( "genres"), any( CollectionCallback.class)))
+                .thenAnswer( invocation -> invocation.<CollectionCallback<?>>getArgument( 1).doInCollection( collection));
+
+        writer = new MongoBulkItemWriter<>( mongoTemplate, MongoGenre.class, MongoWriteMode.INSERT);
+    }
+
+    @Test
+    void failedDocumentsAreThrownAsSkippable(){
+        List<MongoGenre> chunk = Arrays.asList( genre( "1"), genre( "2"), genre( "3"));
+        replies.add( bulkError( error( VALIDATION, 1)));
+
+        MongoDocumentWriteException e = assertThrows( MongoDocumentWriteException.class, () -> writer.write( chunk));
+
+        assertEquals( Collections.singletonList( chunk.get( 1)), e.getItems());
+        assertArrayEquals( new int[]{ VALIDATION}, e.getCodes());
+    }
+
+    @Test
+    void duplicateKeyOnRetryIsWritten(){
+        List<MongoGenre> chunk = Arrays.asList( genre( "1"), genre( "2"));
+        replies.add( bulkError( error( VALIDATION, 1)));
+        assertThrows( MongoDocumentWriteException.class, () -> writer.write( chunk));
+
+        // шаг повторяет пачку по одной записи: первый документ уже записан
+        replies.add( bulkError( error( DUPLICATE_KEY, 0)));
+        writer.write( Collections.singletonList( chunk.get( 0)));
+    }
+
+    @Test
+    void duplicateKeyAfterTransientErrorIsWritten(){
+        List<MongoGenre> chunk = Arrays.asList( genre( "1"), genre( "2"));
+        replies.add( new MongoSocketReadException( "reset", new ServerAddress()));
+        assertThrows( MongoSocketReadException.class, () -> writer.write( chunk));
+
+        replies.add( bulkError( error( DUPLICATE_KEY, 0)));
+        writer.write( chunk);
+    }
+
+    @Test
+    void secondaryIndexDuplicateOnRetryIsNotWritten(){
+        List<MongoGenre> chunk = Arrays.asList( genre( "1"), genre( "2"));
+        replies.add( new MongoSocketReadException( "reset", new ServerAddress()));
+        assertThrows( MongoSocketReadException.class, () -> writer.write( chunk));
+
+        replies.add( bulkError( secondaryDuplicate( 0)));
+        MongoDocumentWriteException e = assertThrows( MongoDocumentWriteException.class, () -> writer.write( chunk));
+
+        assertEquals( Collections.singletonList( chunk.get( 0)), e.getItems());
+    }
+
+    @Test
+    void duplicateKeyOnUpsertIsNotWritten(){
+        MongoBulkItemWriter<MongoGenre> upsert = new MongoBulkItemWriter<>( mongoTemplate, MongoGenre.class, MongoWriteMode.UPSERT);
+        List<MongoGenre> chunk = Collections.singletonList( genre( "1"));
+        replies.add( new MongoSocketReadException( "reset", new ServerAddress()));
+        assertThrows( MongoSocketReadException.class, () -> upsert.write( chunk));
+
+        replies.add( bulkError( error( DUPLICATE_KEY, 0)));
+        assertThrows( MongoDocumentWriteException.class, () -> upsert.write( chunk));
+    }
+
+    @Test
+    void duplicateKeyOfOtherRunIsNotWritten(){
+        replies.add( bulkError( error( DUPLICATE_KEY, 0)));
+
+        MongoDocumentWriteException e = assertThrows( MongoDocumentWriteException.class,
+                () -> writer.write( Collections.singletonList( genre( "1"))));
+        assertEquals( DUPLICATE_KEY, e.getCode());
+    }
+
+    private static MongoGenre genre( String id){
+        MongoGenre genre = new MongoGenre();
+        genre.setId( id);
+        genre.setName( "genre " + id);
+        return genre;
+    }
+
+    private static BulkWriteError error( int code, int index){
+        String message = code == DUPLICATE_KEY ? "E11000 duplicate key error collection: test.genres index: _id_ dup key: { : \"1\" }"
+                                               : "error " + code;
+        return new BulkWriteError( code, message, new BsonDocument(), index);
+    }
+
+    private static BulkWriteError secondaryDuplicate( int index){
+        BsonDocument details = new BsonDocument( "keyPattern", new BsonDocument( "name", new BsonInt32( 1)));
+        return new BulkWriteError( DUPLICATE_KEY, "E11000 duplicate key error collection: test.genres index: name_1 dup key: { : \"genre 1\" }",
+                details, index);
+    }
+
+    private static MongoBulkWriteException bulkError( BulkWriteError error){
+        return new MongoBulkWriteException( BulkWriteResult.unacknowledged(), Collections.singletonList( error), null, new ServerAddress());
+    }
+}
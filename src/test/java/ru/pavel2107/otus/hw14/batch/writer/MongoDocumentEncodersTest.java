@@ -0,0 +1,193 @@
+package ru.pavel2107.otus.hw14.batch.writer;
+
+import com.mongodb.MongoClient;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mapping.model.PropertyNameFieldNamingStrategy;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoAuthor;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoComment;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoCommentBucket;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoEmbeddedBook;
+import ru.pavel2107.otus.hw14.mongoDB.domain.MongoGenre;
+import ru.pavel2107.otus.hw14.mongoDB.mapping.CommentTime;
+import ru.pavel2107.otus.hw14.mongoDB.mapping.CompactFieldNamingStrategy;
+import ru.pavel2107.otus.hw14.mongoDB.mapping.MongoMappingConfig;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+//
+// MongoDocumentEncoders пишет те же байты BSON, что и MappingMongoConverter:
+// все типы документов, полные и с пустыми полями, при всех вариантах имен полей и времени комментария
+//
+class MongoDocumentEncodersTest {
+
+    private static final Codec<Document> CODEC = MongoClient.getDefaultCodecRegistry().get( Document.class);
+
+    private static final List<FieldNamingStrategy> NAMINGS = Arrays.asList(
+            PropertyNameFieldNamingStrategy.INSTANCE, new CompactFieldNamingStrategy());
+
+    @Test
+    void genre(){
+        parity( MongoGenre.class, Arrays.asList( genre( "1"), genre( "5c8a1d5b0190b214360dc031"), new MongoGenre()));
+    }
+
+    @Test
+    void author(){
+        MongoAuthor empty = new MongoAuthor();
+        empty.setId( "2");
+        parity( MongoAuthor.class, Arrays.asList( author( "1"), author( "5c8a1d5b0190b214360dc032"), empty));
+    }
+
+    @Test
+    void book(){
+        MongoBook full = new MongoBook();
+        fill( full);
+        full.setAuthor( author( "1"));
+        full.setGenre( genre( "5c8a1d5b0190b214360dc031"));
+        MongoBook empty = new MongoBook();
+        empty.setId( "11");
+
+        parity( MongoBook.class, Arrays.asList( full, empty));
+    }
+
+    @Test
+    void embeddedBook(){
+        MongoEmbeddedBook full = new MongoEmbeddedBook();
+        fill( full);
+        full.setAuthor( author( "1"));
+        full.setGenre( genre( "2"));
+        // проекция вложенного автора - только id и имя
+        MongoEmbeddedBook projected = new MongoEmbeddedBook();
+        fill( projected);
+        MongoAuthor author = new MongoAuthor();
+        author.setId( "5c8a1d5b0190b214360dc032");
+        author.setName( "author");
+        projected.setAuthor( author);
+        projected.setCommentCount( 120);
+        MongoEmbeddedBook empty = new MongoEmbeddedBook();
+        empty.setId( "11");
+
+        parity( MongoEmbeddedBook.class, Arrays.asList( full, projected, empty));
+    }
+
+    @Test
+    void bucket(){
+        MongoCommentBucket bucket = new MongoCommentBucket();
+        bucket.setId( "10:0");
+        bucket.setBookId( "10");
+        bucket.setBucket( 0);
+        bucket.setCount( 3);
+        bucket.setComments( comments());
+        bucket.setLast( true);
+        MongoCommentBucket empty = new MongoCommentBucket();
+        empty.setId( "10:1");
+        empty.setComments( Collections.emptyList());
+
+        parity( MongoCommentBucket.class, Arrays.asList( bucket, empty));
+    }
+
+    private static <T> void parity( Class<T> type, List<T> items){
+        for( FieldNamingStrategy naming : NAMINGS){
+            for( CommentTime commentTime : CommentTime.values()){
+                MappingMongoConverter converter = converter( naming, commentTime);
+                MongoDocumentEncoder<T> encoder = MongoDocumentEncoders.forType( type, converter);
+                for( T item : items){
+                    Document expected = new Document();
+                    converter.write( item, expected);
+                    Document actual = encoder.encode( item);
+
+                    assertArrayEquals( bytes( expected), bytes( actual), () -> type.getSimpleName() + ", "
+                            + naming.getClass().getSimpleName() + ", " + commentTime + ":\n"
+                            + "converter: " + expected.toJson( CODEC) + "\n"
+                            + "encoder:   " + actual.toJson( CODEC));
+                }
+            }
+        }
+    }
+
+    // converter как в приложении: имена полей по naming, преобразования MongoMappingConfig
+    private static MappingMongoConverter converter( FieldNamingStrategy naming, CommentTime commentTime){
+        MongoCustomConversions conversions = new MongoMappingConfig().mongoCustomConversions( commentTime);
+        MongoMappingContext context = new MongoMappingContext();
+        context.setFieldNamingStrategy( naming);
+        context.setSimpleTypeHolder( conversions.getSimpleTypeHolder());
+        context.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter( NoOpDbRefResolver.INSTANCE, context);
+        converter.setCustomConversions( conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    private static byte[] bytes( Document document){
+        RawBsonDocument raw = new RawBsonDocument( document, CODEC);
+        byte[] bytes = new byte[ raw.getByteBuffer().remaining()];
+        raw.getByteBuffer().get( bytes);
+        return bytes;
+    }
+
+    private static MongoGenre genre( String id){
+        MongoGenre genre = new MongoGenre();
+        genre.setId( id);
+        genre.setName( "genre " + id);
+        return genre;
+    }
+
+    private static MongoAuthor author( String id){
+        MongoAuthor author = new MongoAuthor();
+        author.setId( id);
+        author.setName( "author " + id);
+        author.setBirthDate( LocalDate.of( 1947, 9, 21));
+        author.setEmail( "author@mail.ru");
+        author.setPhone( "11111111");
+        author.setAddress( "no info");
+        return author;
+    }
+
+    private static void fill( MongoBook book){
+        book.setId( "10");
+        book.setName( "book");
+        book.setPublishingHouse( "house");
+        book.setPublicationYear( 1986);
+        book.setPublicationPlace( "place");
+        book.setIsbn( "978-5-17-000000-0");
+        book.setComments( comments());
+    }
+
+    private static void fill( MongoEmbeddedBook book){
+        book.setId( "5c8a1d5b0190b214360dc033");
+        book.setName( "book");
+        book.setPublishingHouse( "house");
+        book.setPublicationYear( 1986);
+        book.setIsbn( "978-5-17-000000-0");
+        book.setComments( comments());
+    }
+
+    private static List<MongoComment> comments(){
+        List<MongoComment> comments = new ArrayList<>();
+        for( int i = 0; i < 3; i++){
+            MongoComment comment = new MongoComment();
+            comment.setName( "user " + i);
+            comment.setDateTime( LocalDateTime.of( 2019, 3, 14, 12, i, 30, 123_000_000));
+            comment.setComment( i == 1 ? null : "comment " + i);
+            comments.add( comment);
+        }
+        return comments;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.pavel2107.otus.hw14.rdbms.trigger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//
+// Удаление и перенос комментария обновляют last_modified прежней книги, правка текста - нет
+//
+class TouchBookTriggerTest {
+
+    private static final Timestamp OLD = Timestamp.valueOf( "2000-01-01 00:00:00");
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL( "jdbc:h2:mem:touch;DB_CLOSE_DELAY=-1");
+        try( Connection connection = dataSource.getConnection()){
+            ScriptUtils.executeSqlScript( connection, new ClassPathResource( "schema.sql"));
+        }
+        jdbcTemplate = new JdbcTemplate( dataSource);
+        jdbcTemplate.update( "insert into books( id, name, last_modified) values( 1, 'one', ?)", OLD);
+        jdbcTemplate.update( "insert into books( id, name, last_modified) values( 2, 'two', ?)", OLD);
+        jdbcTemplate.update( "insert into comments( id, comment, book_id) values( 10, 'text', 1)");
+    }
+
+    @Test
+    void deleteTouchesBook(){
+        jdbcTemplate.update( "delete from comments where id = 10");
+
+        assertTrue( lastModified( 1).after( OLD));
+        assertEquals( OLD, lastModified( 2));
+    }
+
+    @Test
+    void moveTouchesPreviousBook(){
+        jdbcTemplate.update( "update comments set book_id = 2 where id = 10");
+
+        assertTrue( lastModified( 1).after( OLD));
+    }
+
+    @Test
+    void editDoesNotTouchBook(){
+        jdbcTemplate.update( "update comments set comment = 'edited' where id = 10");
+
+        assertEquals( OLD, lastModified( 1));
+    }
+
+    private Timestamp lastModified( long book){
+        return jdbcTemplate.queryForObject( "select last_modified from books where id = ?", Timestamp.class, book);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.pavel2107.otus.hw14.sync;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ru.pavel2107.otus.hw14.batch.listener.DeadLetterSkipListener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//
+// Плохое изменение не держит коллекцию: пачка применяется по одному, не применившееся - в dead letters,
+// позиция сохраняется за ним. Временная ошибка - пачка повторяется, позиция не сохраняется
+//
+class CollectionSyncTest {
+
+    private final List<List<String>> applied = new ArrayList<>();
+    private final List<Document>     letters = new ArrayList<>();
+
+    private ChangeFeed        feed;
+    private JdbcChangeApplier applier;
+    private MongoTemplate     mongoTemplate;
+    private CollectionSync    sync;
+
+    @BeforeEach
+    @SuppressWarnings( "unchecked")
+    void setUp(){
+        feed    = mock( ChangeFeed.class);
+        applier = mock( JdbcChangeApplier.class);
+        MongoCollection<Document> deadLetters = mock( MongoCollection.class);
+        doAnswer( invocation -> letters.add( invocation.getArgument( 0))).when( deadLetters).insertOne( any());
+        mongoTemplate = mock( MongoTemplate.class);
+        when( mongoTemplate.getCollection( DeadLetterSkipListener.COLLECTION)).thenReturn( deadLetters);
+        sync = new CollectionSync( "books", feed, applier, mongoTemplate, 0, 100);
+    }
+
+    @Test
+    void badChangeGoesToDeadLetters() throws Exception {
+        feedOnce( change( "1"), change( "5c8a1d5b0190b214360dc033"), change( "3"));
+        when( applier.apply( anyList())).thenAnswer( invocation -> {
+            List<Change> changes = invocation.getArgument( 0);
+            if( changes.stream().anyMatch( change -> change.getId().length() > 10)){
+                throw new NumberFormatException( "For input string");
+            }
+            changes.forEach( change -> applied.add( Collections.singletonList( change.getId())));
+            return changes.size();
+        });
+
+        sync.run();
+
+        assertEquals( Arrays.asList( Collections.singletonList( "1"), Collections.singletonList( "3")), applied);
+        assertEquals( 1, letters.size());
+        assertEquals( "5c8a1d5b0190b214360dc033", ( (Document) letters.get( 0).get( "item")).get( "_id"));
+        assertEquals( "sync", letters.get( 0).get( "phase"));
+        verify( feed).commit();
+    }
+
+    @Test
+    void foreignKeyViolationDoesNotBlockOthers() throws Exception {
+        feedOnce( change( "1"), change( "2"));
+        when( applier.apply( anyList())).thenAnswer( invocation -> {
+            List<Change> changes = invocation.getArgument( 0);
+            if( changes.stream().anyMatch( change -> change.getId().equals( "2"))){
+                throw new DataIntegrityViolationException( "genre_id");
+            }
+            return changes.size();
+        });
+
+        sync.run();
+
+        assertEquals( 1, letters.size());
+        verify( feed).commit();
+    }
+
+    @Test
+    void transientErrorRepeatsBatch() throws Exception {
+        feedOnce( change( "1"));
+        when( applier.apply( anyList())).thenThrow( new TransientDataAccessResourceException( "H2"));
+
+        sync.run();
+
+        assertEquals( 0, letters.size());
+        verify( feed, never()).commit();
+        verify( feed, times( 2)).close();
+    }
+
+    // одна пачка, затем поток останавливается
+    private void feedOnce( Change... changes) throws Exception {
+        when( feed.next( anyInt(), anyLong())).thenReturn( Arrays.asList( changes)).thenAnswer( invocation -> {
+            sync.stop();
+            return Collections.emptyList();
+        });
+    }
+
+    private static Change change( String id){
+        return new Change( id, new Document( "_id", id));
+    }
+}